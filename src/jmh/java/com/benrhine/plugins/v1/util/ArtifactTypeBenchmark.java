@@ -0,0 +1,27 @@
+package com.benrhine.plugins.v1.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * ArtifactTypeBenchmark: Cost of validating the artifact type, the first and last supported types and an unknown one.
+ * ------------------------------------------------------------------------------------------------------------------ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArtifactTypeBenchmark {
+
+    @Param({"LOCAL", "EXPERIMENTAL", "NIGHTLY"})
+    private String artifactType;
+
+    @Benchmark
+    public boolean isSupportedArtifactType() {
+        return ExtensionHelpers.isSupportedArtifactType(artifactType);
+    }
+}
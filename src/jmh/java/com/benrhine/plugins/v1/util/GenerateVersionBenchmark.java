@@ -0,0 +1,85 @@
+package com.benrhine.plugins.v1.util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * GenerateVersionBenchmark: Cost of generating the full version from the version properties, this runs for every
+ * project at configuration time. The remote path prints its warnings on every call, standard out is swapped for a
+ * discarding stream so the benchmark measures the plugin and not the terminal. The build number ENV VAR is expected to
+ * be unset on the benchmark machine which exercises the "no build number" branch.
+ * ------------------------------------------------------------------------------------------------------------------ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GenerateVersionBenchmark {
+    private Properties prop;
+    private SemanticVersion localVersion;
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+        prop = new OrderedProperties();
+        prop.setProperty("major", "1");
+        prop.setProperty("minor", "22");
+        prop.setProperty("patch", "333");
+        prop.setProperty("artifact-type", "LOCAL");
+        localVersion = ExtensionHelpers.getLocalVersion(prop);
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(final int b) {
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public String localFromProperties() {
+        return ExtensionHelpers.generateVersion(prop, false, "SNAPSHOT", false, false, null).toString();
+    }
+
+    @Benchmark
+    public String localReleaseFromProperties() {
+        return ExtensionHelpers.generateVersion(prop, false, "RELEASE", false, false, null).toString();
+    }
+
+    @Benchmark
+    public String localFromVersion() {
+        return ExtensionHelpers.generateVersion(localVersion, false, "SNAPSHOT", false, false, null).toString();
+    }
+
+    @Benchmark
+    public String remoteFromProperties() {
+        return ExtensionHelpers.generateVersion(prop, true, "RELEASE", true, true, "BUILD_RUN_NUMBER").toString();
+    }
+
+    @Benchmark
+    public String remoteWithoutEnvVarName() {
+        return ExtensionHelpers.generateVersion(prop, true, "SNAPSHOT", false, false, null).toString();
+    }
+
+    @Benchmark
+    public SemanticVersion parseVersion() {
+        return SemanticVersion.parse("1.22.333.4444-SNAPSHOT");
+    }
+}
@@ -0,0 +1,80 @@
+package com.benrhine.plugins.v1.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * OrderedPropertiesBenchmark: Cost of loading and storing version properties files of growing size, and of only
+ * scanning them for the version keys. The version keys are placed at the end of the file as they would be in a large
+ * `gradle.properties`.
+ * ------------------------------------------------------------------------------------------------------------------ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderedPropertiesBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    private int entries;
+
+    private byte[] content;
+    private Properties loaded;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("# Generated by OrderedPropertiesBenchmark\n");
+        for (int i = 0; i < entries - 4; i++) {
+            builder.append("org.example.property.").append(i).append('=').append("value-").append(i).append('\n');
+        }
+        builder.append("major=1\nminor=2\npatch=3\nartifact-type=LOCAL\n");
+        content = builder.toString().getBytes("ISO-8859-1");
+        loaded = new OrderedProperties();
+        loaded.load(new ByteArrayInputStream(content));
+        file = File.createTempFile("benchmark", ".properties");
+        Files.write(file.toPath(), content);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Properties load() throws IOException {
+        final Properties prop = new OrderedProperties();
+        prop.load(new ByteArrayInputStream(content));
+        return prop;
+    }
+
+    @Benchmark
+    public byte[] store() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(content.length + 64);
+        loaded.store(output, null);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public Properties getLocalProperties() throws IOException {
+        return ExtensionHelpers.getLocalProperties(file.getPath());
+    }
+
+    @Benchmark
+    public Properties scan() throws IOException {
+        return VersionPropertiesScanner.scan(file);
+    }
+}
@@ -0,0 +1,415 @@
+package com.benrhine.plugins.v1;
+
+import java.io.Serializable;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * SemanticVersion: Immutable value type of a version as generated by this plugin.
+ * <p>
+ * MAJOR.MINOR.PATCH[.BUILD_NUMBER][-PRE_RELEASE] e.g. 1.2.3, 1.2.3-SNAPSHOT, 1.2.3.45 or 1.2.3.45-RELEASE
+ * <p>
+ * The components are plain ints, parsing is a single pass over the characters (no regex, no split) and the string form
+ * is only built once. A build number that is not a plain number, e.g. `20240101.3` on Azure Pipelines, is kept as given
+ * (see {@link #getBuild()}). Versions are ordered by SemVer precedence: major, minor and patch numerically, then the build
+ * number (a version without one sorts first, builds are compared identifier by identifier) and finally a version with a
+ * pre-release (the artifact type) sorts before the same version without one, pre-releases being compared identifier by
+ * identifier.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class SemanticVersion implements Comparable<SemanticVersion>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Value of the build number when the version does not include one
+     */
+    public static final int NO_BUILD_NUMBER = -1;
+
+    private final int major;
+    private final int minor;
+    private final int patch;
+    private final int buildNumber;
+    private final String build;
+    private final String preRelease;
+    private transient String string;
+
+    /**
+     * SemanticVersion: Create a version.
+     *
+     * @param major int
+     * @param minor int
+     * @param patch int
+     * @param buildNumber int or {@link #NO_BUILD_NUMBER}
+     * @param preRelease String or null
+     */
+    public SemanticVersion(final int major, final int minor, final int patch, final int buildNumber, final String preRelease) {
+        this(major, minor, patch, buildNumber, null, preRelease);
+    }
+
+    private SemanticVersion(final int major, final int minor, final int patch, final int buildNumber, final String build,
+                            final String preRelease) {
+        if (major < 0 || minor < 0 || patch < 0) {
+            throw new IllegalArgumentException("Version numbers must not be negative: " + major + "." + minor + "." + patch);
+        }
+        if (buildNumber < NO_BUILD_NUMBER) {
+            throw new IllegalArgumentException("Build number must not be negative: " + buildNumber);
+        }
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.buildNumber = buildNumber;
+        this.build = build;
+        this.preRelease = preRelease == null || preRelease.isEmpty() ? null : preRelease;
+    }
+
+    /**
+     * of: Create a version without build number and pre-release.
+     *
+     * @param major int
+     * @param minor int
+     * @param patch int
+     * @return SemanticVersion
+     */
+    public static SemanticVersion of(final int major, final int minor, final int patch) {
+        return new SemanticVersion(major, minor, patch, NO_BUILD_NUMBER, null);
+    }
+
+    /**
+     * parse: Parse a version in the format generated by this plugin.
+     *
+     * @param version CharSequence
+     * @return SemanticVersion
+     * @throws IllegalArgumentException if the version can not be parsed
+     */
+    public static SemanticVersion parse(final CharSequence version) {
+        final int length = version.length();
+        final int[] numbers = {0, 0, 0};
+        int component = 0;
+        int position = 0;
+
+        while (true) {
+            if (position == length || !isDigit(version.charAt(position))) {
+                throw invalid(version);
+            }
+            long value = 0;
+
+            while (position < length && isDigit(version.charAt(position))) {
+                value = value * 10 + (version.charAt(position++) - '0');
+
+                if (value > Integer.MAX_VALUE) {
+                    throw invalid(version);
+                }
+            }
+            numbers[component++] = (int) value;
+
+            if (component == numbers.length || position == length || version.charAt(position) != '.') {
+                break;
+            }
+            position++;
+        }
+        if (component < 3) {
+            throw invalid(version);
+        }
+        String build = null;
+
+        if (position < length && version.charAt(position) == '.') {
+            // The build runs up to the '-' separating the pre-release
+            final int start = ++position;
+
+            while (position < length && version.charAt(position) != '-') {
+                position++;
+            }
+            build = version.subSequence(start, position).toString();
+            if (!isBuild(build)) {
+                throw invalid(version);
+            }
+        }
+        String preRelease = null;
+
+        if (position < length) {
+            // Skip the '-' separating the pre-release
+            if (version.charAt(position++) != '-' || position == length) {
+                throw invalid(version);
+            }
+            preRelease = version.subSequence(position, length).toString();
+        }
+        final SemanticVersion parsed = new SemanticVersion(numbers[0], numbers[1], numbers[2], NO_BUILD_NUMBER, preRelease);
+        return build != null ? parsed.withBuild(build) : parsed;
+    }
+
+    public int getMajor() {
+        return major;
+    }
+
+    public int getMinor() {
+        return minor;
+    }
+
+    public int getPatch() {
+        return patch;
+    }
+
+    /**
+     * getBuildNumber: The build number or {@link #NO_BUILD_NUMBER}, also if the build number is not a plain number.
+     *
+     * @return int
+     */
+    public int getBuildNumber() {
+        return buildNumber;
+    }
+
+    /**
+     * getBuild: The build number as it appears in the version, also if it is not a plain number.
+     *
+     * @return String or null if the version has no build number
+     */
+    public String getBuild() {
+        return build != null ? build : buildNumber != NO_BUILD_NUMBER ? Integer.toString(buildNumber) : null;
+    }
+
+    public boolean hasBuildNumber() {
+        return buildNumber != NO_BUILD_NUMBER || build != null;
+    }
+
+    /**
+     * getPreRelease: The pre-release (artifact type) or null.
+     *
+     * @return String
+     */
+    public String getPreRelease() {
+        return preRelease;
+    }
+
+    public boolean isPreRelease() {
+        return preRelease != null;
+    }
+
+    public SemanticVersion withMajor(final int major) {
+        return new SemanticVersion(major, minor, patch, buildNumber, build, preRelease);
+    }
+
+    public SemanticVersion withMinor(final int minor) {
+        return new SemanticVersion(major, minor, patch, buildNumber, build, preRelease);
+    }
+
+    public SemanticVersion withPatch(final int patch) {
+        return new SemanticVersion(major, minor, patch, buildNumber, build, preRelease);
+    }
+
+    public SemanticVersion withBuildNumber(final int buildNumber) {
+        return new SemanticVersion(major, minor, patch, buildNumber, null, preRelease);
+    }
+
+    /**
+     * withBuild: Set the build number as given, e.g. read from a CI ENV VAR. A plain number is kept as an int, anything
+     * else is kept verbatim.
+     *
+     * @param build String or null to remove the build number
+     * @return SemanticVersion
+     * @throws IllegalArgumentException if the build number is not made of letters, digits, '.' and '_'
+     */
+    public SemanticVersion withBuild(final String build) {
+        if (build == null) {
+            return withBuildNumber(NO_BUILD_NUMBER);
+        }
+        if (!isBuild(build)) {
+            throw new IllegalArgumentException("Build number must only contain letters, digits, '.' and '_': " + build);
+        }
+        // Only a number that prints the same is kept as an int, e.g. `007` stays as given
+        if (isNumeric(build, 0, build.length()) && build.length() <= 9 && (build.length() == 1 || build.charAt(0) != '0')) {
+            return withBuildNumber(Integer.parseInt(build));
+        }
+        return new SemanticVersion(major, minor, patch, NO_BUILD_NUMBER, build, preRelease);
+    }
+
+    public SemanticVersion withPreRelease(final String preRelease) {
+        return new SemanticVersion(major, minor, patch, buildNumber, build, preRelease);
+    }
+
+    /**
+     * compareTo: Compare by SemVer precedence.
+     *
+     * @param other SemanticVersion
+     * @return int
+     */
+    @Override
+    public int compareTo(final SemanticVersion other) {
+        int result = Integer.compare(major, other.major);
+        if (result == 0) {
+            result = Integer.compare(minor, other.minor);
+        }
+        if (result == 0) {
+            result = Integer.compare(patch, other.patch);
+        }
+        if (result == 0) {
+            result = build == null && other.build == null ? Integer.compare(buildNumber, other.buildNumber) :
+                    compareBuild(getBuild(), other.getBuild());
+        }
+        if (result == 0) {
+            result = comparePreRelease(preRelease, other.preRelease);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SemanticVersion)) {
+            return false;
+        }
+        final SemanticVersion other = (SemanticVersion) o;
+        return major == other.major && minor == other.minor && patch == other.patch && buildNumber == other.buildNumber &&
+                (build == null ? other.build == null : build.equals(other.build)) &&
+                (preRelease == null ? other.preRelease == null : preRelease.equals(other.preRelease));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = major;
+        result = 31 * result + minor;
+        result = 31 * result + patch;
+        result = 31 * result + buildNumber;
+        result = 31 * result + (build == null ? 0 : build.hashCode());
+        result = 31 * result + (preRelease == null ? 0 : preRelease.hashCode());
+        return result;
+    }
+
+    /**
+     * toString: The version string, built once and cached.
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        String result = string;
+
+        if (result == null) {
+            final StringBuilder builder = new StringBuilder(24).append(major).append('.').append(minor).append('.').append(patch);
+
+            if (build != null) {
+                builder.append('.').append(build);
+            } else if (buildNumber != NO_BUILD_NUMBER) {
+                builder.append('.').append(buildNumber);
+            }
+            if (preRelease != null) {
+                builder.append('-').append(preRelease);
+            }
+            result = builder.toString();
+            string = result;
+        }
+        return result;
+    }
+
+    /**
+     * comparePreRelease: A version without a pre-release has a higher precedence, otherwise the dot separated
+     * identifiers are compared one by one: numeric identifiers numerically, other identifiers lexically, and numeric
+     * identifiers sort before the others. If all shared identifiers are equal the longer pre-release is higher.
+     */
+    private static int comparePreRelease(final String left, final String right) {
+        if (left == null || right == null) {
+            return left == null ? (right == null ? 0 : 1) : -1;
+        }
+        return compareIdentifiers(left, right);
+    }
+
+    /**
+     * compareBuild: A version without a build number has a lower precedence, otherwise the builds are compared like
+     * pre-releases.
+     */
+    private static int compareBuild(final String left, final String right) {
+        if (left == null || right == null) {
+            return left == null ? (right == null ? 0 : -1) : 1;
+        }
+        return compareIdentifiers(left, right);
+    }
+
+    private static int compareIdentifiers(final String left, final String right) {
+        int leftStart = 0;
+        int rightStart = 0;
+
+        while (leftStart <= left.length() && rightStart <= right.length()) {
+            int leftEnd = left.indexOf('.', leftStart);
+            int rightEnd = right.indexOf('.', rightStart);
+            leftEnd = leftEnd < 0 ? left.length() : leftEnd;
+            rightEnd = rightEnd < 0 ? right.length() : rightEnd;
+            final int result = compareIdentifier(left, leftStart, leftEnd, right, rightStart, rightEnd);
+
+            if (result != 0) {
+                return result;
+            }
+            leftStart = leftEnd + 1;
+            rightStart = rightEnd + 1;
+        }
+        return Boolean.compare(leftStart <= left.length(), rightStart <= right.length());
+    }
+
+    private static int compareIdentifier(final String left, final int leftStart, final int leftEnd,
+                                         final String right, final int rightStart, final int rightEnd) {
+        final boolean leftNumeric = isNumeric(left, leftStart, leftEnd);
+        final boolean rightNumeric = isNumeric(right, rightStart, rightEnd);
+
+        if (leftNumeric && rightNumeric) {
+            // Compare by length first (ignoring leading zeros) so arbitrarily long numbers work without parsing
+            int leftFrom = leftStart;
+            int rightFrom = rightStart;
+            while (leftFrom < leftEnd - 1 && left.charAt(leftFrom) == '0') {
+                leftFrom++;
+            }
+            while (rightFrom < rightEnd - 1 && right.charAt(rightFrom) == '0') {
+                rightFrom++;
+            }
+            final int result = Integer.compare(leftEnd - leftFrom, rightEnd - rightFrom);
+            return result != 0 ? result : compareChars(left, leftFrom, leftEnd, right, rightFrom, rightEnd);
+        }
+        if (leftNumeric != rightNumeric) {
+            return leftNumeric ? -1 : 1;
+        }
+        return compareChars(left, leftStart, leftEnd, right, rightStart, rightEnd);
+    }
+
+    private static int compareChars(final String left, final int leftStart, final int leftEnd,
+                                    final String right, final int rightStart, final int rightEnd) {
+        final int length = Math.min(leftEnd - leftStart, rightEnd - rightStart);
+
+        for (int i = 0; i < length; i++) {
+            final int result = Character.compare(left.charAt(leftStart + i), right.charAt(rightStart + i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(leftEnd - leftStart, rightEnd - rightStart);
+    }
+
+    private static boolean isNumeric(final String value, final int start, final int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBuild(final String build) {
+        if (build.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < build.length(); i++) {
+            final char c = build.charAt(i);
+
+            if (!isDigit(c) && !(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && c != '.' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException invalid(final CharSequence version) {
+        return new IllegalArgumentException("Invalid version '" + version + "' expected MAJOR.MINOR.PATCH[.BUILD_NUMBER][-PRE_RELEASE]");
+    }
+}
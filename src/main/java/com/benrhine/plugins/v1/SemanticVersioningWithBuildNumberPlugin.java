@@ -1,24 +1,47 @@
 package com.benrhine.plugins.v1;
 
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.generateVersion;
+import static com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension.BUILD_NUMBER_SOURCE_ENV;
+import static com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension.BUILD_NUMBER_SOURCE_SERVER;
 import static com.benrhine.plugins.v1.util.ExtensionHelpers.generateVersionWithArtifactType;
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.getExtensionDefinedRemoteBuild;
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalProperties;
 import static com.benrhine.plugins.v1.util.ExtensionHelpers.loadLocalPropertiesToProjectProperties;
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.writeLocalProperties;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.resolveVersionFile;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
 import java.util.Properties;
+import javax.inject.Inject;
+import javax.lang.model.SourceVersion;
+import com.benrhine.plugins.v1.buildnumber.BuildNumberCounter;
+import com.benrhine.plugins.v1.buildnumber.BuildNumberProvider;
+import com.benrhine.plugins.v1.buildnumber.LeasedBuildNumberProvider;
+import com.benrhine.plugins.v1.providers.BuildNumberStateValueSource;
+import com.benrhine.plugins.v1.providers.LazyVersion;
+import com.benrhine.plugins.v1.providers.VersionValueSource;
+import com.benrhine.plugins.v1.services.VersionFileService;
+import com.benrhine.plugins.v1.services.VersionMetrics;
+import com.benrhine.plugins.v1.tasks.AutoBumpVersionTask;
+import com.benrhine.plugins.v1.tasks.BumpVersionsTask;
+import com.benrhine.plugins.v1.tasks.ComputeVersionTask;
 import com.benrhine.plugins.v1.tasks.DecrementMajorVersionTask;
 import com.benrhine.plugins.v1.tasks.DecrementMinorVersionTask;
 import com.benrhine.plugins.v1.tasks.DecrementPatchVersionTask;
+import com.benrhine.plugins.v1.tasks.GenerateVersionSourcesTask;
 import com.benrhine.plugins.v1.tasks.IncrementMajorVersionTask;
 import com.benrhine.plugins.v1.tasks.IncrementMinorVersionTask;
 import com.benrhine.plugins.v1.tasks.IncrementPatchVersionTask;
 import com.benrhine.plugins.v1.tasks.PrintVersionTask;
-import groovy.lang.Closure;
+import com.benrhine.plugins.v1.tasks.base.VersionTask;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.build.event.BuildEventsListenerRegistry;
 
 /** --------------------------------------------------------------------------------------------------------------------
  * SemanticVersioningWithBuildNumberPlugin: Plugin that supports semantic versioning with a build number. Can be used
@@ -32,12 +55,28 @@ import org.gradle.api.Project;
 public final class SemanticVersioningWithBuildNumberPlugin implements Plugin<Project> {
     static final String VERSION_CONFIG = "versionConfig";
     static final String PRINT_VERSION = "printVersion";
+    static final String COMPUTE_VERSION = "computeVersion";
+    static final String GENERATE_VERSION_SOURCES = "generateVersionSources";
     static final String INCREMENT_MAJOR_VERSION = "incrementMajorVersion";
     static final String INCREMENT_MINOR_VERSION = "incrementMinorVersion";
     static final String INCREMENT_PATCH_VERSION = "incrementPatchVersion";
     static final String DECREMENT_MAJOR_VERSION = "decrementMajorVersion";
     static final String DECREMENT_MINOR_VERSION = "decrementMinorVersion";
     static final String DECREMENT_PATCH_VERSION = "decrementPatchVersion";
+    static final String BUMP_VERSIONS = "bumpVersions";
+    static final String AUTO_BUMP_VERSION = "autoBumpVersion";
+
+    private final BuildEventsListenerRegistry buildEvents;
+
+    /**
+     * SemanticVersioningWithBuildNumberPlugin:
+     *
+     * @param buildEvents BuildEventsListenerRegistry used to discard the version changes of a failed build
+     */
+    @Inject
+    public SemanticVersioningWithBuildNumberPlugin(final BuildEventsListenerRegistry buildEvents) {
+        this.buildEvents = buildEvents;
+    }
 
     /**
      * apply: Invoke the plugin to be applied on a given project.
@@ -45,9 +84,21 @@ public final class SemanticVersioningWithBuildNumberPlugin implements Plugin<Pro
      * @param project Project
      */
     @Override
+    @SuppressWarnings("try") // The timer is not referenced in the block
     public void apply(final Project project) {
         // Initialize `build.gradle` extension closure
         final SemanticVersioningWithBuildNumberPluginExtension extension = project.getExtensions().create(VERSION_CONFIG, SemanticVersioningWithBuildNumberPluginExtension.class);
+        // Every project in the build shares a single parsed snapshot of each version properties file
+        final Provider<VersionFileService> versionFileService = VersionFileService.register(project.getGradle(),
+                project.getRootDir(), project.getProviders());
+        // Only the root directory and path are used to find the root project, the root project itself is never
+        // accessed so projects can be configured in isolation
+        final File rootDir = project.getRootDir();
+        final boolean rootProject = Project.PATH_SEPARATOR.equals(project.getPath());
+        // The root project hands its own build directory to the service, before it is used, for the timing report
+        if (rootProject) {
+            VersionFileService.setReportDirectory(project.getGradle(), project.getLayout().getBuildDirectory());
+        }
         // Initialize tasks included with the plugin
         project.getTasks().register(INCREMENT_MAJOR_VERSION, IncrementMajorVersionTask.class);
         project.getTasks().register(INCREMENT_MINOR_VERSION, IncrementMinorVersionTask.class);
@@ -55,34 +106,258 @@ public final class SemanticVersioningWithBuildNumberPlugin implements Plugin<Pro
         project.getTasks().register(DECREMENT_MAJOR_VERSION, DecrementMajorVersionTask.class);
         project.getTasks().register(DECREMENT_MINOR_VERSION, DecrementMinorVersionTask.class);
         project.getTasks().register(DECREMENT_PATCH_VERSION, DecrementPatchVersionTask.class);
-        project.getTasks().register(PRINT_VERSION, PrintVersionTask.class);
-        // Apply plugin to project post initialization - without this it will not set the version correctly on initialization
-        project.getGradle().afterProject(new Closure<Void>(project) {
-            public void doCall(final Project project) {
-                try {
-                    // Retrieve the `version.properties` file. This can be either at the default location of the project
-                    // root OR at a custom path location specified by the `build.gradle` extension block
-                    final Properties prop = getLocalProperties(project);
-                    // Move the locally read properties to the project properties
-                    loadLocalPropertiesToProjectProperties(project, prop);
-                    // Determine if this is a remote build (is this a CI build)
-                    final boolean isRemoteBuild = getExtensionDefinedRemoteBuild(project, prop);
-                    // Generate the full project version
-                    generateVersion(project, isRemoteBuild);
-                    // artifactType is checked and set to project properties above, make sure it gets set into properties
-                    // and stored back to the `version.properties` file.
-                    if (project.hasProperty("artifact-type")) {
-                        prop.setProperty("artifact-type", project.getProperties().get("artifact-type").toString());
+        project.getTasks().register(AUTO_BUMP_VERSION, AutoBumpVersionTask.class, task -> {
+            task.getSourceDirectories().from(project.file("src/main"));
+            task.getStateDirectory().convention(project.getLayout().dir(project.provider(() -> new File(rootDir, ".gradle/semantic-versioning"))));
+            task.getModuleName().convention(rootProject ? "root" : project.getPath().substring(1).replace(':', '_'));
+        });
+        // The batch bump covers every module of the build and so only exists once, in the root project. The modules
+        // register their version file with the build service themselves (see below). The registry is read by a plain
+        // provider rather than mapped from the service provider, so the modules are fixed once every project is
+        // configured and stored with the task in the configuration cache, a reused entry does not configure the
+        // projects again and would otherwise find the registry of the new service empty.
+        if (rootProject) {
+            project.getTasks().register(BUMP_VERSIONS, BumpVersionsTask.class, task -> {
+                task.getModules().convention(project.provider(() -> versionFileService.get().getModules()));
+                task.getLevel().convention("patch");
+                task.getMaxParallelFiles().convention(8);
+            });
+        }
+        // The version changes of the tasks are only written if no task fails
+        buildEvents.onTaskCompletion(versionFileService);
+        // Phase timings of this project, reported when the build finishes
+        final String projectPath = project.getPath();
+        final Provider<VersionMetrics.Recorder> metrics = versionFileService.map(service -> service.getMetrics().forProject(projectPath));
+        // Everything the version depends on is wired in lazily from the extension properties so it is only resolved
+        // once the build script has configured the `versionConfig` block
+        extension.getVersionFile().convention(project.getLayout().file(extension.getCustomVersionPropertiesPath()
+                .map(path -> resolveVersionFile(rootDir, path))));
+        final Provider<RegularFile> versionFile = extension.getVersionFile();
+        // A remote build has to be requested with `-Premote-build`. The Gradle property is read through the providers
+        // rather than the project, a project does not look up properties of its parent project.
+        final Provider<Boolean> remoteBuildRequested = project.getProviders().gradleProperty("remote-build").map(value -> true).orElse(false);
+        final Provider<Boolean> remoteBuild = project.provider(() -> {
+            try (VersionMetrics.Timer timer = metrics.get().start(VersionMetrics.Phase.GET_EXTENSION_DEFINED_REMOTE_BUILD)) {
+                return extension.getRemoteBuild().get() && remoteBuildRequested.get();
+            }
+        });
+        final Provider<Boolean> includeReleaseTag = extension.getIncludeReleaseTag();
+        final Provider<Boolean> includeBuildNumber = extension.getIncludeBuildNumber();
+        final Provider<String> ciBuildNumberEnvVarName = extension.getCiBuildNumberEnvVarName();
+        final Provider<Boolean> commitDistanceBuildNumber = extension.getCommitDistanceBuildNumber();
+        final Provider<String> artifactType = extension.getArtifactType();
+        // With the `local-counter` and `server` build number sources one build number is allocated per remote build by
+        // the build service and shared by every project and task, a local build never uses up a number
+        final Provider<String> buildNumberSource = extension.getEffectiveBuildNumberSource();
+        final Provider<String> buildNumberServerUrl = extension.getBuildNumberServerUrl();
+        final File gradleUserHome = project.getGradle().getGradleUserHomeDir();
+        // Named after the root directory rather than the root project, which is not accessed (see above)
+        final Provider<String> buildNumberCounter = extension.getBuildNumberCounter().orElse(rootDir.getName());
+        final Provider<String> counterState = project.getProviders().of(BuildNumberStateValueSource.class, spec ->
+                spec.getParameters().getStateFile().fileProvider(buildNumberSource.zip(buildNumberCounter, (source, counterName) ->
+                        BUILD_NUMBER_SOURCE_SERVER.equals(source) ? LeasedBuildNumberProvider.leaseFile(gradleUserHome, counterName) :
+                                BuildNumberCounter.counterFile(gradleUserHome, counterName))));
+        final Provider<Integer> allocatedBuildNumber = remoteBuild.flatMap(remote -> {
+            final String source = buildNumberSource.get();
+
+            if (!remote || BUILD_NUMBER_SOURCE_ENV.equals(source)) {
+                return project.provider(() -> null);
+            }
+            final String counterName = buildNumberCounter.get();
+
+            return project.provider(() -> {
+                // Read before allocating, the allocation changes the state so the configuration cache entry of a build
+                // with an allocated build number is never reused
+                counterState.getOrNull();
+                return versionFileService.get().allocateBuildNumber(source + "|" + counterName + "|" + buildNumberServerUrl.getOrNull(),
+                        () -> createBuildNumberProvider(source, gradleUserHome, counterName, buildNumberServerUrl.getOrNull(),
+                                extension.getBuildNumberLeaseSize().get()));
+            });
+        });
+        final Provider<String> versionSource = extension.getEffectiveVersionSource();
+        final Provider<Directory> rootDirectory = project.getLayout().dir(project.provider(() -> rootDir));
+
+        project.getTasks().withType(VersionTask.class).configureEach(task -> {
+            task.getVersionFile().convention(versionFile);
+            task.getRemoteBuild().convention(remoteBuild);
+            task.getIncludeReleaseTag().convention(includeReleaseTag);
+            task.getIncludeBuildNumber().convention(includeBuildNumber);
+            task.getCiBuildNumberEnvVarName().convention(ciBuildNumberEnvVarName);
+            task.getCommitDistanceBuildNumber().convention(commitDistanceBuildNumber);
+            task.getAllocatedBuildNumber().convention(allocatedBuildNumber);
+            task.getArtifactType().convention(artifactType);
+            task.getLockTimeoutSeconds().convention(extension.getLockTimeoutSeconds());
+            task.getVersionSource().convention(versionSource);
+            task.getRootDirectory().convention(rootDirectory);
+            task.getVersionFileService().convention(versionFileService);
+            task.usesService(versionFileService);
+        });
+        // The computed version is a task output so tasks consuming it can be up-to-date. Only a remote build includes
+        // the build number, a local build stays up-to-date when e.g. a new number is allocated.
+        final Provider<String> buildNumber = remoteBuild.flatMap(remote -> remote ?
+                allocatedBuildNumber.map(String::valueOf)
+                        .orElse(ciBuildNumberEnvVarName.flatMap(project.getProviders()::environmentVariable)) :
+                project.provider(() -> null));
+        final TaskProvider<ComputeVersionTask> computeVersion = project.getTasks().register(COMPUTE_VERSION, ComputeVersionTask.class, task -> {
+            task.getBuildNumberSource().convention(buildNumberSource);
+            task.getBuildNumber().convention(buildNumber);
+            task.getOutputFile().convention(project.getLayout().getBuildDirectory().file("semantic-versioning/version.txt"));
+            // Reflect a version changed in the same invocation, e.g. `./gradlew incrementPatchVersion printVersion`
+            task.mustRunAfter(INCREMENT_MAJOR_VERSION, INCREMENT_MINOR_VERSION, INCREMENT_PATCH_VERSION,
+                    DECREMENT_MAJOR_VERSION, DECREMENT_MINOR_VERSION, DECREMENT_PATCH_VERSION, AUTO_BUMP_VERSION);
+            if (rootProject) {
+                task.mustRunAfter(BUMP_VERSIONS);
+            }
+        });
+        project.getTasks().register(PRINT_VERSION, PrintVersionTask.class, task ->
+                task.getComputedVersionFile().convention(computeVersion.flatMap(ComputeVersionTask::getOutputFile)));
+        final TaskProvider<GenerateVersionSourcesTask> generateVersionSources = project.getTasks().register(GENERATE_VERSION_SOURCES,
+                GenerateVersionSourcesTask.class, task -> {
+                    task.getComputedVersionFile().convention(computeVersion.flatMap(ComputeVersionTask::getOutputFile));
+                    task.getPackageName().convention(project.provider(() -> getVersionClassPackage(project.getGroup(), project.getName())));
+                    task.getClassName().convention("BuildVersion");
+                    task.getOutputDirectory().convention(project.getLayout().getBuildDirectory().dir("generated/sources/semantic-versioning/java/main"));
+                });
+        // The version file and build number ENV VAR are read inside a ValueSource so Gradle can track them as
+        // configuration cache inputs
+        final Provider<String> valueSourceVersion = project.getProviders().of(VersionValueSource.class, spec -> {
+            final VersionValueSource.Parameters parameters = spec.getParameters();
+            parameters.getVersionFile().set(versionFile);
+            parameters.getRemoteBuild().set(remoteBuild);
+            parameters.getIncludeReleaseTag().set(includeReleaseTag);
+            parameters.getIncludeBuildNumber().set(includeBuildNumber);
+            parameters.getCiBuildNumberEnvVarName().set(ciBuildNumberEnvVarName);
+            parameters.getCommitDistanceBuildNumber().set(commitDistanceBuildNumber);
+            parameters.getAllocatedBuildNumber().set(allocatedBuildNumber);
+            parameters.getArtifactType().set(artifactType);
+            parameters.getVersionSource().set(versionSource);
+            parameters.getRootDirectory().set(rootDir);
+        });
+        // Projects resolving the version from the same file and configuration share the computed version
+        final Provider<String> versionKey = project.provider(() -> versionFile.get().getAsFile().getAbsolutePath() +
+                "|" + remoteBuild.get() + "|" + includeReleaseTag.get() + "|" + includeBuildNumber.get() + "|" +
+                ciBuildNumberEnvVarName.getOrNull() + "|" + commitDistanceBuildNumber.get() + "|" + buildNumberSource.get() + "|" +
+                buildNumberServerUrl.getOrNull() + "|" +
+                artifactType.getOrNull() + "|" + versionSource.getOrNull());
+        final Provider<String> version = versionKey
+                .map(key -> {
+                    try (VersionMetrics.Timer timer = metrics.get().start(VersionMetrics.Phase.GENERATE_VERSION)) {
+                        return versionFileService.get().getVersion(key, valueSourceVersion);
+                    }
+                })
+                .orElse(project.provider(() -> {
+                    try (VersionMetrics.Timer timer = metrics.get().start(VersionMetrics.Phase.GENERATE_VERSION)) {
+                        return generateVersionWithArtifactType(project);
+                    }
+                }));
+        // The version is only computed the first time something asks for it
+        final LazyVersion lazyVersion = new LazyVersion(version);
+        project.setVersion(lazyVersion);
+        extension.initVersion(project.provider(lazyVersion::getSemanticVersion));
+        // Load the version properties into the project properties once the `versionConfig` block has been configured
+        project.afterEvaluate(evaluated -> {
+            // The generated version class is compiled with the `main` sources, which then depend on the version
+            if (extension.getGenerateVersionSources().get()) {
+                project.getPluginManager().withPlugin("java", java -> project.getExtensions().getByType(SourceSetContainer.class)
+                        .getByName(SourceSet.MAIN_SOURCE_SET_NAME).getJava()
+                        .srcDir(generateVersionSources.flatMap(GenerateVersionSourcesTask::getOutputDirectory)));
+            }
+            // Retrieve the `version.properties` file. This can be either at the default location of the project
+            // root OR at a custom path location specified by the `build.gradle` extension block
+            final File file = versionFile.get().getAsFile();
+            versionFileService.get().registerModule(projectPath, file);
+
+            try {
+                if (extension.isGitTagVersionSource() && !file.isFile()) {
+                    // Major, minor and patch come from the git tags, there is nothing to load or store
+                    return;
+                }
+                final Properties prop;
+                try (VersionMetrics.Timer timer = metrics.get().start(VersionMetrics.Phase.GET_LOCAL_PROPERTIES)) {
+                    prop = versionFileService.get().getSnapshot(file);
+                }
+                // Move the locally read properties to the project properties
+                if (!extension.isGitTagVersionSource()) {
+                    try (VersionMetrics.Timer timer = metrics.get().start(VersionMetrics.Phase.LOAD_LOCAL_PROPERTIES_TO_PROJECT_PROPERTIES)) {
+                        loadLocalPropertiesToProjectProperties(project, prop);
                     }
-                    // Save `version.properties` to the root project folder OR to the location specified in the
-                    // `build.gradle` extension block
-                    writeLocalProperties(project, prop);
+                }
+                // The extension defined artifact type always wins, make sure it gets set into properties and stored
+                // back to the `version.properties` file (root project folder OR the location specified in the
+                // `build.gradle` extension block) once the build finishes. In isolated projects mode only the
+                // explicit bump tasks write the version file.
+                final String resolvedArtifactType = artifactType.getOrNull();
+                if (resolvedArtifactType != null && !resolvedArtifactType.isEmpty()) {
+                    project.setProperty("artifact-type", resolvedArtifactType);
 
-                } catch (final IOException ex) {
-                    ex.printStackTrace();
-                    project.setProperty("version", generateVersionWithArtifactType(project));
+                    if (!extension.getIsolatedProjects().get() && !resolvedArtifactType.equals(prop.getProperty("artifact-type"))) {
+                        versionFileService.get().setProperty(file, "artifact-type", resolvedArtifactType);
+                    }
                 }
+
+            } catch (final IOException ex) {
+                ex.printStackTrace();
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * createBuildNumberProvider: The provider allocating from the given build number source, the local build number
+     * counter or the build number server.
+     *
+     * @return BuildNumberProvider
+     */
+    private static BuildNumberProvider createBuildNumberProvider(final String source, final File gradleUserHome, final String counterName,
+                                                                 final String serverUrl, final int leaseSize) {
+        if (BUILD_NUMBER_SOURCE_SERVER.equals(source)) {
+            if (serverUrl == null) {
+                throw new IllegalArgumentException("buildNumberServerUrl must be set to use the build number server");
+            }
+            return new LeasedBuildNumberProvider(URI.create(serverUrl), counterName, leaseSize,
+                    LeasedBuildNumberProvider.leaseFile(gradleUserHome, counterName));
+        }
+        return new BuildNumberCounter(BuildNumberCounter.counterFile(gradleUserHome, counterName));
+    }
+
+    /**
+     * getVersionClassPackage: The default package of the generated version class, the project group followed by the
+     * project name, e.g. `com.example.app`. Modules of the same group each get their own class, so an application
+     * depending on several of them reads the version of the right one. Characters that can not be used in a package
+     * name are replaced, e.g. `com.My-Company` and `my-app` give `com.my_company.my_app`.
+     *
+     * @param group Object
+     * @param projectName String
+     * @return String
+     */
+    static String getVersionClassPackage(final Object group, final String projectName) {
+        final StringBuilder name = new StringBuilder();
+
+        for (final String segment : (String.valueOf(group) + "." + projectName).split("\\.")) {
+            if (!segment.isEmpty()) {
+                if (name.length() > 0) {
+                    name.append('.');
+                }
+                name.append(toPackageSegment(segment));
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * toPackageSegment: A valid, lower case package name segment derived from the given name.
+     */
+    private static String toPackageSegment(final String name) {
+        final StringBuilder segment = new StringBuilder();
+
+        for (final char c : name.toLowerCase(Locale.ROOT).toCharArray()) {
+            segment.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (!Character.isJavaIdentifierStart(segment.charAt(0))) {
+            segment.insert(0, '_');
+        }
+        if (SourceVersion.isKeyword(segment)) {
+            segment.append('_');
+        }
+        return segment.toString();
+    }
+}
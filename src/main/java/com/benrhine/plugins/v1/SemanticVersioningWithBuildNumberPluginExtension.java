@@ -1,131 +1,368 @@
 package com.benrhine.plugins.v1;
 
+import javax.inject.Inject;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+
 /** --------------------------------------------------------------------------------------------------------------------
  * SemanticVersioningWithBuildNumberPluginExtension: Extension class in support of plugin configuration.
  * <p>
  * versionConfig {
  *     remoteBuild = true
  *     ciBuildNumberEnvVarName = "BUILD_RUN_NUMBER" //BITBUCKET_BUILD_NUMBER
+ *     commitDistanceBuildNumber = true
+ *     buildNumberSource = "env" // "local-counter", "server"
+ *     buildNumberServerUrl = "http://build-numbers.example.com:8080/"
+ *     buildNumberLeaseSize = 100
+ *     buildNumberCounter = "my-build" // default the name of the root directory
  *     artifactType = "SNAPSHOT"
  *     includeReleaseTag = true
  *     includeBuildNumber = true
  *     customVersionPropertiesPath = "$projectDir/src/main/resources/version.properties"
+ *     lockTimeoutSeconds = 30
+ *     versionSource = "properties" // "git-tag"
+ *     generateVersionSources = true
+ *     isolatedProjects = true
  * }
+ * <p>
+ * Every value is a lazy property. A value that is not set in the block falls back to the Gradle property of the same
+ * name prefixed with `versionConfig.`, e.g. `-PversionConfig.artifactType=SNAPSHOT` or an entry in `gradle.properties`,
+ * and then to the default. A value is final once it has been read, i.e. once the version was computed.
+ * <p>
+ * The resulting version is available as `versionConfig.version`, a Provider of {@link SemanticVersion}.
  * ------------------------------------------------------------------------------------------------------------------ */
-public class SemanticVersioningWithBuildNumberPluginExtension {
+public abstract class SemanticVersioningWithBuildNumberPluginExtension {
+    /**
+     * Read major, minor and patch from the version properties file
+     */
+    public static final String VERSION_SOURCE_PROPERTIES = "properties";
+    /**
+     * Derive major, minor and patch from the newest SemVer tag reachable from HEAD
+     */
+    public static final String VERSION_SOURCE_GIT_TAG = "git-tag";
+    /**
+     * Read the build number from the `ciBuildNumberEnvVarName` ENV VAR
+     */
+    public static final String BUILD_NUMBER_SOURCE_ENV = "env";
+    /**
+     * Allocate the build number from a counter under the Gradle user home
+     */
+    public static final String BUILD_NUMBER_SOURCE_LOCAL_COUNTER = "local-counter";
+    /**
+     * Allocate the build number from blocks leased from the build number server at `buildNumberServerUrl`
+     */
+    public static final String BUILD_NUMBER_SOURCE_SERVER = "server";
+    /**
+     * The prefix of the Gradle properties the values default to, e.g. `versionConfig.remoteBuild`
+     */
+    public static final String GRADLE_PROPERTY_PREFIX = "versionConfig.";
+    /**
+     * The Gradle and system property enabling isolated projects, the default of `isolatedProjects`
+     */
+    static final String ISOLATED_PROJECTS_PROPERTY = "org.gradle.unsafe.isolated-projects";
 
-    private boolean remoteBuild = false;
-    private boolean includeReleaseTag = false;
-    private boolean includeBuildNumber = false;
-    private String ciBuildNumberEnvVarName = null;
-    private String artifactType = "LOCAL";
-    private String customVersionPropertiesPath = "gradle.properties";
+    private Provider<SemanticVersion> version = null;
 
     /**
-     * isRemoteBuild: Check if the build is performed remotely i.e. is this a CI build.
+     * SemanticVersioningWithBuildNumberPluginExtension: Set the conventions of every value.
      *
-     * @return boolean
+     * @param providers ProviderFactory
      */
-    public boolean isRemoteBuild() {
-        return this.remoteBuild;
+    @Inject
+    public SemanticVersioningWithBuildNumberPluginExtension(final ProviderFactory providers) {
+        getRemoteBuild().convention(booleanProperty(providers, "remoteBuild").orElse(false));
+        getIncludeReleaseTag().convention(booleanProperty(providers, "includeReleaseTag").orElse(false));
+        getIncludeBuildNumber().convention(booleanProperty(providers, "includeBuildNumber").orElse(false));
+        getCiBuildNumberEnvVarName().convention(stringProperty(providers, "ciBuildNumberEnvVarName"));
+        getCommitDistanceBuildNumber().convention(booleanProperty(providers, "commitDistanceBuildNumber").orElse(false));
+        getBuildNumberSource().convention(stringProperty(providers, "buildNumberSource").orElse(BUILD_NUMBER_SOURCE_ENV));
+        getBuildNumberServerUrl().convention(stringProperty(providers, "buildNumberServerUrl"));
+        getBuildNumberLeaseSize().convention(intProperty(providers, "buildNumberLeaseSize").orElse(100));
+        getBuildNumberCounter().convention(stringProperty(providers, "buildNumberCounter"));
+        getArtifactType().convention(stringProperty(providers, "artifactType").orElse("LOCAL"));
+        getCustomVersionPropertiesPath().convention(stringProperty(providers, "customVersionPropertiesPath").orElse("gradle.properties"));
+        getLockTimeoutSeconds().convention(intProperty(providers, "lockTimeoutSeconds").orElse(30));
+        getVersionSource().convention(stringProperty(providers, "versionSource").orElse(VERSION_SOURCE_PROPERTIES));
+        getGenerateVersionSources().convention(booleanProperty(providers, "generateVersionSources").orElse(false));
+        getIsolatedProjects().convention(booleanProperty(providers, "isolatedProjects")
+                .orElse(providers.systemProperty(ISOLATED_PROJECTS_PROPERTY).map(Boolean::parseBoolean))
+                .orElse(providers.gradleProperty(ISOLATED_PROJECTS_PROPERTY).map(Boolean::parseBoolean))
+                .orElse(false));
+
+        getRemoteBuild().finalizeValueOnRead();
+        getIncludeReleaseTag().finalizeValueOnRead();
+        getIncludeBuildNumber().finalizeValueOnRead();
+        getCiBuildNumberEnvVarName().finalizeValueOnRead();
+        getCommitDistanceBuildNumber().finalizeValueOnRead();
+        getBuildNumberSource().finalizeValueOnRead();
+        getBuildNumberServerUrl().finalizeValueOnRead();
+        getBuildNumberLeaseSize().finalizeValueOnRead();
+        getBuildNumberCounter().finalizeValueOnRead();
+        getArtifactType().finalizeValueOnRead();
+        getCustomVersionPropertiesPath().finalizeValueOnRead();
+        getVersionFile().finalizeValueOnRead();
+        getLockTimeoutSeconds().finalizeValueOnRead();
+        getVersionSource().finalizeValueOnRead();
+        getGenerateVersionSources().finalizeValueOnRead();
+        getIsolatedProjects().finalizeValueOnRead();
     }
 
     /**
-     * setRemoteBuild: Set if remote build.
+     * getRemoteBuild: Is the build performed remotely i.e. is this a CI build? Only applies when the build is run with
+     * `-Premote-build`.
      *
-     * @param remoteBuild boolean
+     * @return Property
      */
-    public void setRemoteBuild(final boolean remoteBuild) {
-        this.remoteBuild = remoteBuild;
-    }
+    public abstract Property<Boolean> getRemoteBuild();
 
     /**
-     * isIncludeReleaseTag: Do you want to include the word RELEASE on your release build.
+     * getIncludeReleaseTag: Do you want to include the word RELEASE on your release build.
      *
-     * @return boolean
+     * @return Property
+     */
+    public abstract Property<Boolean> getIncludeReleaseTag();
+
+    /**
+     * getIncludeBuildNumber: Do you want to include the build number in your release?
+     *
+     * @return Property
+     */
+    public abstract Property<Boolean> getIncludeBuildNumber();
+
+    /**
+     * getCiBuildNumberEnvVarName: The ENV VAR name of your CI/CD predefined build number variable.
+     *
+     * @return Property
+     */
+    public abstract Property<String> getCiBuildNumberEnvVarName();
+
+    /**
+     * getCommitDistanceBuildNumber: Use the number of commits since the tag of the base version as the build number
+     * when the build number ENV VAR is not set.
+     *
+     * @return Property
+     */
+    public abstract Property<Boolean> getCommitDistanceBuildNumber();
+
+    /**
+     * getBuildNumberSource: Where the build number comes from, `env`, `local-counter` or `server`.
+     *
+     * @return Property
+     */
+    public abstract Property<String> getBuildNumberSource();
+
+    /**
+     * getBuildNumberServerUrl: The base URL of the build number server used by the `server` build number source.
+     *
+     * @return Property
+     */
+    public abstract Property<String> getBuildNumberServerUrl();
+
+    /**
+     * getBuildNumberLeaseSize: How many build numbers are leased from the build number server at a time.
+     *
+     * @return Property
+     */
+    public abstract Property<Integer> getBuildNumberLeaseSize();
+
+    /**
+     * getBuildNumberCounter: The name of the counter the `local-counter` and `server` build number sources allocate
+     * from, by default the name of the root directory (the name of the root project with the settings plugin).
+     *
+     * @return Property
+     */
+    public abstract Property<String> getBuildNumberCounter();
+
+    /**
+     * getArtifactType: The artifact type of the build, e.g. `SNAPSHOT`.
+     *
+     * @return Property
+     */
+    public abstract Property<String> getArtifactType();
+
+    /**
+     * getCustomVersionPropertiesPath: The path of the version properties file, relative to the root project directory
+     * unless absolute.
+     *
+     * @return Property
+     */
+    public abstract Property<String> getCustomVersionPropertiesPath();
+
+    /**
+     * getVersionFile: The version properties file, by default {@link #getCustomVersionPropertiesPath()} resolved
+     * against the root project directory.
+     *
+     * @return RegularFileProperty
+     */
+    public abstract RegularFileProperty getVersionFile();
+
+    /**
+     * getLockTimeoutSeconds: How long a version task waits for another build to finish updating the version file.
+     *
+     * @return Property
+     */
+    public abstract Property<Integer> getLockTimeoutSeconds();
+
+    /**
+     * getVersionSource: Where major, minor and patch come from, `properties` or `git-tag`.
+     *
+     * @return Property
      */
-    public boolean isIncludeReleaseTag() {
-        return includeReleaseTag;
+    public abstract Property<String> getVersionSource();
+
+    /**
+     * getGenerateVersionSources: Add a class holding the version as constants to the `main` source set.
+     *
+     * @return Property
+     */
+    public abstract Property<Boolean> getGenerateVersionSources();
+
+    /**
+     * getIsolatedProjects: Support Gradle's isolated projects, the version file is then only written by the explicit
+     * bump tasks and never while the project is configured. Defaults to true if isolated projects are enabled.
+     *
+     * @return Property
+     */
+    public abstract Property<Boolean> getIsolatedProjects();
+
+    /**
+     * getEffectiveVersionSource: The version source, failing on read if it is not supported.
+     *
+     * @return Provider
+     */
+    public Provider<String> getEffectiveVersionSource() {
+        return getVersionSource().map(SemanticVersioningWithBuildNumberPluginExtension::checkVersionSource);
     }
 
     /**
-     * setIncludeReleaseTag: Set if you want to include the release tag.
+     * getEffectiveBuildNumberSource: The build number source, failing on read if it is not supported.
      *
-     * @param includeReleaseTag boolean
+     * @return Provider
      */
-    public void setIncludeReleaseTag(final boolean includeReleaseTag) {
-        this.includeReleaseTag = includeReleaseTag;
+    public Provider<String> getEffectiveBuildNumberSource() {
+        return getBuildNumberSource().map(SemanticVersioningWithBuildNumberPluginExtension::checkBuildNumberSource);
     }
 
     /**
-     * isIncludeBuildNumber: Do you want to include the build number in your release?
+     * isLocalCounterBuildNumberSource:
      *
      * @return boolean
      */
-    public boolean isIncludeBuildNumber() {
-        return includeBuildNumber;
+    public boolean isLocalCounterBuildNumberSource() {
+        return BUILD_NUMBER_SOURCE_LOCAL_COUNTER.equals(getEffectiveBuildNumberSource().get());
     }
 
     /**
-     * setIncludeBuildNumber: Set if you want to include the build number.
+     * isAllocatedBuildNumberSource: Is the build number allocated by the plugin (`local-counter` or `server`) rather
+     * than read from the ENV VAR?
      *
-     * @param includeBuildNumber boolean
+     * @return boolean
      */
-    public void setIncludeBuildNumber(final boolean includeBuildNumber) {
-        this.includeBuildNumber = includeBuildNumber;
+    public boolean isAllocatedBuildNumberSource() {
+        return !BUILD_NUMBER_SOURCE_ENV.equals(getEffectiveBuildNumberSource().get());
     }
 
     /**
-     * getCiBuildNumberEnvVarName: Return the ENV VAR name that was set to attempt to get the build number.
+     * isGitTagVersionSource:
      *
-     * @return String
+     * @return boolean
      */
-    public String getCiBuildNumberEnvVarName() {
-        return this.ciBuildNumberEnvVarName;
+    public boolean isGitTagVersionSource() {
+        return VERSION_SOURCE_GIT_TAG.equals(getEffectiveVersionSource().get());
     }
 
     /**
-     * setCiBuildNumberEnvVarName: Set the ENV VAR name to your CI/CD predefined variable.
+     * getVersion: The version of the project including build number and artifact type, the same version as
+     * `project.version`. It is computed on first use and then remembered, and can be used as a task input, e.g.
+     * `inputs.property('version', versionConfig.version.map { it.toString() })`.
      *
-     * @param ciBuildNumberEnvVarName String
+     * @return Provider
      */
-    public void setCiBuildNumberEnvVarName(final String ciBuildNumberEnvVarName) {
-        this.ciBuildNumberEnvVarName = ciBuildNumberEnvVarName;
+    public Provider<SemanticVersion> getVersion() {
+        if (this.version == null) {
+            throw new IllegalStateException("The version is only available from the versionConfig block of a project");
+        }
+        return this.version;
     }
 
     /**
-     * getArtifactType: What artifact type is set?
+     * initVersion: Set the provider of the project version, done by the plugin.
      *
-     * @return String
+     * @param version Provider
      */
-    public String getArtifactType() {
-        return artifactType;
+    void initVersion(final Provider<SemanticVersion> version) {
+        this.version = version;
     }
 
     /**
-     * setArtifactType: Set the artifact type of the build.
+     * copyFrom: Initialize this extension with the values of another extension, used to hand the build wide
+     * configuration from the settings plugin down to every project. The values of the other extension become the
+     * conventions of this one, anything set in a project `versionConfig` block overrides them.
      *
-     * @param artifactType String
+     * @param other SemanticVersioningWithBuildNumberPluginExtension
      */
-    public void setArtifactType(final String artifactType) {
-        this.artifactType = artifactType.toUpperCase();
+    void copyFrom(final SemanticVersioningWithBuildNumberPluginExtension other) {
+        getRemoteBuild().convention(other.getRemoteBuild());
+        getIncludeReleaseTag().convention(other.getIncludeReleaseTag());
+        getIncludeBuildNumber().convention(other.getIncludeBuildNumber());
+        getCiBuildNumberEnvVarName().convention(other.getCiBuildNumberEnvVarName());
+        getCommitDistanceBuildNumber().convention(other.getCommitDistanceBuildNumber());
+        getBuildNumberSource().convention(other.getBuildNumberSource());
+        getBuildNumberServerUrl().convention(other.getBuildNumberServerUrl());
+        getBuildNumberLeaseSize().convention(other.getBuildNumberLeaseSize());
+        getBuildNumberCounter().convention(other.getBuildNumberCounter());
+        getArtifactType().convention(other.getArtifactType());
+        getCustomVersionPropertiesPath().convention(other.getCustomVersionPropertiesPath());
+        // Without an explicit file every project resolves its own `customVersionPropertiesPath`
+        if (other.getVersionFile().isPresent()) {
+            getVersionFile().convention(other.getVersionFile());
+        }
+        getLockTimeoutSeconds().convention(other.getLockTimeoutSeconds());
+        getVersionSource().convention(other.getVersionSource());
+        getGenerateVersionSources().convention(other.getGenerateVersionSources());
+        getIsolatedProjects().convention(other.getIsolatedProjects());
     }
 
     /**
-     * getCustomVersionPropertiesPath: Return the custom path to properties file.
+     * checkVersionSource: Fail if the version source is not supported.
      *
+     * @param versionSource String
      * @return String
      */
-    public String getCustomVersionPropertiesPath() {
-        return this.customVersionPropertiesPath;
+    static String checkVersionSource(final String versionSource) {
+        if (!VERSION_SOURCE_PROPERTIES.equals(versionSource) && !VERSION_SOURCE_GIT_TAG.equals(versionSource)) {
+            throw new IllegalArgumentException("Unsupported version source '" + versionSource + "', expected '" +
+                    VERSION_SOURCE_PROPERTIES + "' or '" + VERSION_SOURCE_GIT_TAG + "'");
+        }
+        return versionSource;
     }
 
     /**
-     * setCustomVersionPropertiesPath: Set if you want to use a non default properties file.
+     * checkBuildNumberSource: Fail if the build number source is not supported.
      *
-     * @param customVersionPropertiesPath String
+     * @param buildNumberSource String
+     * @return String
      */
-    public void setCustomVersionPropertiesPath(final String customVersionPropertiesPath) {
-        this.customVersionPropertiesPath = customVersionPropertiesPath;
+    static String checkBuildNumberSource(final String buildNumberSource) {
+        if (!BUILD_NUMBER_SOURCE_ENV.equals(buildNumberSource) && !BUILD_NUMBER_SOURCE_LOCAL_COUNTER.equals(buildNumberSource) &&
+                !BUILD_NUMBER_SOURCE_SERVER.equals(buildNumberSource)) {
+            throw new IllegalArgumentException("Unsupported build number source '" + buildNumberSource + "', expected '" +
+                    BUILD_NUMBER_SOURCE_ENV + "', '" + BUILD_NUMBER_SOURCE_LOCAL_COUNTER + "' or '" + BUILD_NUMBER_SOURCE_SERVER + "'");
+        }
+        return buildNumberSource;
+    }
+
+    private static Provider<String> stringProperty(final ProviderFactory providers, final String name) {
+        return providers.gradleProperty(GRADLE_PROPERTY_PREFIX + name);
+    }
+
+    private static Provider<Boolean> booleanProperty(final ProviderFactory providers, final String name) {
+        return stringProperty(providers, name).map(value -> Boolean.parseBoolean(value.trim()));
+    }
+
+    private static Provider<Integer> intProperty(final ProviderFactory providers, final String name) {
+        return stringProperty(providers, name).map(value -> Integer.valueOf(value.trim()));
     }
 }
@@ -0,0 +1,46 @@
+package com.benrhine.plugins.v1;
+
+import static com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPlugin.VERSION_CONFIG;
+import static com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension.GRADLE_PROPERTY_PREFIX;
+
+import com.benrhine.plugins.v1.services.VersionFileService;
+import org.gradle.api.Plugin;
+import org.gradle.api.initialization.Settings;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * SemanticVersioningWithBuildNumberSettingsPlugin: Settings plugin that configures versioning once for the entire build.
+ * The `versionConfig` block in `settings.gradle` is the build wide configuration, the project plugin is applied to
+ * every project with that configuration and the version source is read a single time for the whole build by the shared
+ * {@link VersionFileService}. Because every project shares the same version source the version is computed once for the whole build. A project can
+ * still override any value in its own `versionConfig` block.
+ * <p>
+ * plugins {
+ *     id 'com.benrhine.semantic-versioning-with-build-number-settings' version 'X.X.X'
+ * }
+ * versionConfig {
+ *     artifactType = "SNAPSHOT"
+ * }
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class SemanticVersioningWithBuildNumberSettingsPlugin implements Plugin<Settings> {
+
+    /**
+     * apply: Invoke the plugin to be applied on the build settings.
+     *
+     * @param settings Settings
+     */
+    @Override
+    public void apply(final Settings settings) {
+        // Initialize `settings.gradle` extension closure
+        final SemanticVersioningWithBuildNumberPluginExtension extension = settings.getExtensions().create(VERSION_CONFIG, SemanticVersioningWithBuildNumberPluginExtension.class);
+        // The settings know the name of the root project, the projects only know the name of the root directory
+        extension.getBuildNumberCounter().convention(settings.getProviders().gradleProperty(GRADLE_PROPERTY_PREFIX + "buildNumberCounter")
+                .orElse(settings.getProviders().provider(() -> settings.getRootProject().getName())));
+        // The version source is not read here, the shared service must not be created before the root project has
+        // handed it its build directory (see VersionFileService#setReportDirectory). The first project reads it.
+        // Apply the project plugin to every project, initialized with the build wide configuration
+        settings.getGradle().beforeProject(project -> {
+            project.getPluginManager().apply(SemanticVersioningWithBuildNumberPlugin.class);
+            project.getExtensions().getByType(SemanticVersioningWithBuildNumberPluginExtension.class).copyFrom(extension);
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * BuildNumberCounter: Persistent build number counter kept in a small memory mapped file, used by the `local-counter`
+ * build number source on agents that do not expose a CI build number. The file holds a magic number followed by the last
+ * allocated build number. Every allocation increments the mapped value while holding a `FileChannel` lock on the
+ * counter region, so parallel Gradle processes on the same agent each get a unique number, threads of the same process
+ * are coordinated through an in memory lock.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class BuildNumberCounter implements BuildNumberProvider {
+    private static final long MAGIC = 0x5356424e434e5452L; // SVBNCNTR
+    private static final int SIZE = 16;
+    private static final Map<String, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final File file;
+
+    /**
+     * BuildNumberCounter: Build number provider allocating from the given counter file.
+     *
+     * @param file File the counter file, created if it does not exist yet
+     */
+    public BuildNumberCounter(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * nextBuildNumber: Allocate the next build number of this counter.
+     *
+     * @return int
+     * @throws IOException an Exception
+     */
+    @Override
+    public int nextBuildNumber() throws IOException {
+        return next(file);
+    }
+
+    /**
+     * next: Allocate the next build number of the given counter, the first allocated number is 1.
+     *
+     * @param file File the counter file, created if it does not exist yet
+     * @return int
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The lock is not referenced in the block
+    public static int next(final File file) throws IOException {
+        final File absolute = file.getAbsoluteFile();
+        final ReentrantLock processLock = PROCESS_LOCKS.computeIfAbsent(absolute.getPath(), path -> new ReentrantLock());
+        Files.createDirectories(absolute.getParentFile().toPath());
+        processLock.lock();
+
+        try (FileChannel channel = FileChannel.open(absolute.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+             FileLock lock = channel.lock(0, SIZE, false)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            final long magic = buffer.getLong(0);
+            long current = buffer.getLong(8);
+
+            if (magic != MAGIC) {
+                if (magic != 0 || current != 0) {
+                    throw new IOException("Not a build number counter file: " + absolute);
+                }
+                // New file, the mapping extended it with zeros
+                buffer.putLong(0, MAGIC);
+            }
+            if (current < 0 || current >= Integer.MAX_VALUE) {
+                throw new IOException("Build number counter " + absolute + " is out of range: " + current);
+            }
+            current++;
+            buffer.putLong(8, current);
+            buffer.force();
+            return (int) current;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    /**
+     * counterFile: The counter file of the given counter name under the Gradle user home.
+     *
+     * @param gradleUserHome File
+     * @param name String e.g. the name of the root project
+     * @return File
+     */
+    public static File counterFile(final File gradleUserHome, final String name) {
+        return stateFile(gradleUserHome, name, ".counter");
+    }
+
+    /**
+     * stateFile: A file of the given counter name in the build number directory under the Gradle user home.
+     */
+    static File stateFile(final File gradleUserHome, final String name, final String extension) {
+        return new File(gradleUserHome, "semantic-versioning/build-numbers/" + name.replaceAll("[^A-Za-z0-9._-]", "_") + extension);
+    }
+}
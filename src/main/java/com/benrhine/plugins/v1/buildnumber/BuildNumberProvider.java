@@ -0,0 +1,19 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import java.io.IOException;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * BuildNumberProvider: Source of unique build numbers for builds that do not take the build number from an ENV VAR.
+ * Implementations: {@link BuildNumberCounter} (a counter local to the agent) and {@link LeasedBuildNumberProvider}
+ * (blocks of numbers leased from a {@link BuildNumberServer} shared by every agent).
+ * ------------------------------------------------------------------------------------------------------------------ */
+public interface BuildNumberProvider {
+
+    /**
+     * nextBuildNumber: Allocate the next build number, no number is ever handed out twice.
+     *
+     * @return int a positive build number
+     * @throws IOException an Exception if no build number could be allocated
+     */
+    int nextBuildNumber() throws IOException;
+}
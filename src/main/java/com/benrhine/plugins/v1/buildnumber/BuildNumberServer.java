@@ -0,0 +1,341 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import com.benrhine.plugins.v1.util.AtomicFiles;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * BuildNumberServer: Small embeddable reference implementation of the build number lease protocol used by
+ * {@link LeasedBuildNumberProvider}, built on the JDK HTTP server. Every counter (usually one per root project) hands
+ * out blocks of numbers, agents lease a block and allocate from it locally, so only one request is made per block and
+ * not one per build.
+ * <p>
+ * Protocol, all responses are `text/plain` `key=value` lines:
+ * <pre>
+ * POST /counters/{counter}/leases?size=100
+ *     200: lease=&lt;id&gt; start=101 end=200 expires=&lt;epoch millis&gt; (the block may be smaller than requested)
+ * POST /counters/{counter}/leases/{lease}/release?next=151
+ *     204: the unused numbers `next` to `end` are returned and handed out again with a following lease
+ *     404: the lease is unknown or expired
+ * </pre>
+ * Expired leases are reclaimed whenever a counter is used: the lease is dropped so it can no longer be released into.
+ * Numbers of a lease that was not released before it expired are never handed out again, the agent may have used them
+ * before it went away.
+ * <p>
+ * The next fresh number and the released blocks of every counter are kept in an optional state file, written atomically
+ * on every change, so a restarted server never hands out a number twice. Active leases are not kept, after a restart
+ * they can no longer be released.
+ * <p>
+ * To run it standalone: `java -cp semantic-versioning-with-build-number.jar
+ * com.benrhine.plugins.v1.buildnumber.BuildNumberServer [port] [state file]`
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class BuildNumberServer implements AutoCloseable {
+    public static final long DEFAULT_LEASE_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final int MAX_LEASE_SIZE = 10_000;
+    private static final String CONTEXT = "/counters/";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final File stateFile;
+    private final long leaseTtlMillis;
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+
+    private BuildNumberServer(final HttpServer server, final ExecutorService executor, final File stateFile,
+                              final long leaseTtlMillis) {
+        this.server = server;
+        this.executor = executor;
+        this.stateFile = stateFile;
+        this.leaseTtlMillis = leaseTtlMillis;
+    }
+
+    /**
+     * start: Start a server.
+     *
+     * @param address InetSocketAddress port 0 picks a free port
+     * @param stateFile File to keep the counters in, may be null to only keep them in memory
+     * @param leaseTtlMillis long how long a lease is valid
+     * @return BuildNumberServer to be closed to stop the server
+     * @throws IOException an Exception
+     */
+    public static BuildNumberServer start(final InetSocketAddress address, final File stateFile, final long leaseTtlMillis)
+            throws IOException {
+        final HttpServer httpServer = HttpServer.create(address, 0);
+        final ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+            final Thread thread = new Thread(runnable, "build-number-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final BuildNumberServer server = new BuildNumberServer(httpServer, executor, stateFile, leaseTtlMillis);
+        server.load();
+        httpServer.createContext(CONTEXT, server::handle);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        return server;
+    }
+
+    /**
+     * main: Run the server standalone until the process is stopped.
+     *
+     * @param args String[] optional port (default 8080) and state file
+     * @throws IOException an Exception
+     * @throws InterruptedException an Exception
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        final File stateFile = args.length > 1 ? new File(args[1]) : null;
+        final BuildNumberServer server = start(new InetSocketAddress(port), stateFile, DEFAULT_LEASE_TTL_MILLIS);
+        System.out.println("Build number server listening on " + server.getUri());
+        // The request threads are daemon threads so an embedded server never keeps a build alive
+        Thread.currentThread().join();
+    }
+
+    /**
+     * getUri: The base URI of the server, the value of `buildNumberServerUrl`.
+     *
+     * @return URI
+     */
+    public URI getUri() {
+        final InetSocketAddress address = server.getAddress();
+        final InetAddress host = address.getAddress();
+        final String name = host == null || host.isAnyLocalAddress() ? "localhost" : host.getHostAddress();
+        return URI.create("http://" + (name.contains(":") ? "[" + name + "]" : name) + ":" + address.getPort() + "/");
+    }
+
+    /**
+     * close: Stop the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * lease: Lease a block of numbers of the given counter.
+     *
+     * @param name String the counter
+     * @param size int the requested number of build numbers
+     * @return Lease
+     * @throws IOException an Exception if the state could not be written
+     */
+    synchronized Lease lease(final String name, final int size) throws IOException {
+        final long now = System.currentTimeMillis();
+        final Counter counter = counter(name, now);
+        final long start;
+        final long end;
+
+        if (!counter.free.isEmpty()) {
+            // Numbers released by other agents first
+            final long[] range = counter.free.remove(0);
+            start = range[0];
+            end = Math.min(range[1], start + size - 1);
+
+            if (end < range[1]) {
+                counter.free.add(0, new long[] {end + 1, range[1]});
+            }
+        } else {
+            start = counter.next;
+            end = start + size - 1;
+            counter.next = end + 1;
+        }
+        final Lease lease = new Lease(UUID.randomUUID().toString(), start, end, now + leaseTtlMillis);
+        counter.leases.put(lease.getId(), lease);
+        save();
+        return lease;
+    }
+
+    /**
+     * release: Return the unused numbers of a lease.
+     *
+     * @param name String the counter
+     * @param id String the lease
+     * @param next long the first unused number of the lease, one past the end if every number was used
+     * @return boolean false if the lease is unknown or expired
+     * @throws IOException an Exception if the state could not be written
+     */
+    synchronized boolean release(final String name, final String id, final long next) throws IOException {
+        final Counter counter = counter(name, System.currentTimeMillis());
+        final Lease lease = counter.leases.get(id);
+
+        if (lease == null) {
+            return false;
+        }
+        if (next < lease.getStart() || next > lease.getEnd() + 1) {
+            throw new IllegalArgumentException("next " + next + " is outside of the lease " + lease.getStart() + "-" + lease.getEnd());
+        }
+        counter.leases.remove(id);
+
+        if (next <= lease.getEnd()) {
+            counter.free.add(new long[] {next, lease.getEnd()});
+            save();
+        }
+        return true;
+    }
+
+    private Counter counter(final String name, final long now) {
+        final Counter counter = counters.computeIfAbsent(name, k -> new Counter());
+        final Iterator<Lease> leases = counter.leases.values().iterator();
+
+        while (leases.hasNext()) {
+            if (leases.next().getExpiresAt() <= now) {
+                leases.remove();
+            }
+        }
+        return counter;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final String[] path = exchange.getRequestURI().getPath().substring(CONTEXT.length()).split("/");
+            final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "error=Only POST is supported\n");
+            } else if (path.length < 2 || !isValidName(path[0]) || !"leases".equals(path[1])) {
+                respond(exchange, 404, "error=Unknown resource\n");
+            } else if (path.length == 2) {
+                final long size = number(query, "size");
+
+                if (size < 1 || size > MAX_LEASE_SIZE) {
+                    respond(exchange, 400, "error=size must be between 1 and " + MAX_LEASE_SIZE + "\n");
+                } else {
+                    respond(exchange, 200, Lease.format(lease(path[0], (int) size).toMap()));
+                }
+            } else if (path.length == 4 && "release".equals(path[3])) {
+                if (release(path[0], path[2], number(query, "next"))) {
+                    respond(exchange, 204, null);
+                } else {
+                    respond(exchange, 404, "error=Unknown or expired lease\n");
+                }
+            } else {
+                respond(exchange, 404, "error=Unknown resource\n");
+            }
+        } catch (final IllegalArgumentException ex) {
+            respond(exchange, 400, "error=" + ex.getMessage() + "\n");
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+            respond(exchange, 500, "error=" + ex.getMessage() + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(final String query) throws UnsupportedEncodingException {
+        final Map<String, String> values = new LinkedHashMap<>();
+
+        if (query != null) {
+            for (final String pair : query.split("&")) {
+                final int separator = pair.indexOf('=');
+
+                if (separator > 0) {
+                    values.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static long number(final Map<String, String> query, final String key) {
+        try {
+            return Long.parseLong(query.get(key));
+        } catch (final NumberFormatException ex) {
+            throw new IllegalArgumentException("Expected a number for '" + key + "' but was '" + query.get(key) + "'", ex);
+        }
+    }
+
+    static boolean isValidName(final String name) {
+        return name.matches("[A-Za-z0-9._-]+");
+    }
+
+    /**
+     * load: Read the counters from the state file, `<counter>.next=<n>` and `<counter>.free=<start>-<end>,...`.
+     */
+    private void load() throws IOException {
+        if (stateFile == null || !stateFile.isFile()) {
+            return;
+        }
+        final Map<String, String> values = Lease.parse(new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8));
+
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            final String key = entry.getKey();
+
+            if (key.endsWith(".next")) {
+                counters.computeIfAbsent(key.substring(0, key.length() - ".next".length()), k -> new Counter()).next =
+                        Lease.getLong(values, key);
+            } else if (key.endsWith(".free") && !entry.getValue().isEmpty()) {
+                final Counter counter = counters.computeIfAbsent(key.substring(0, key.length() - ".free".length()), k -> new Counter());
+
+                for (final String range : entry.getValue().split(",")) {
+                    final String[] bounds = range.split("-");
+                    counter.free.add(new long[] {Long.parseLong(bounds[0]), Long.parseLong(bounds[1])});
+                }
+            }
+        }
+    }
+
+    private void save() throws IOException {
+        if (stateFile == null) {
+            return;
+        }
+        final Map<String, String> values = new LinkedHashMap<>();
+
+        for (final Map.Entry<String, Counter> entry : counters.entrySet()) {
+            final StringBuilder free = new StringBuilder();
+
+            for (final long[] range : entry.getValue().free) {
+                free.append(free.length() == 0 ? "" : ",").append(range[0]).append('-').append(range[1]);
+            }
+            values.put(entry.getKey() + ".next", Long.toString(entry.getValue().next));
+            values.put(entry.getKey() + ".free", free.toString());
+        }
+        final File parent = stateFile.getAbsoluteFile().getParentFile();
+
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        AtomicFiles.write(stateFile.toPath(), Lease.format(values).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Counter: The next fresh number, the released blocks and the active leases of one counter.
+     */
+    private static final class Counter {
+        private long next = 1;
+        private final List<long[]> free = new ArrayList<>();
+        private final Map<String, Lease> leases = new LinkedHashMap<>();
+    }
+}
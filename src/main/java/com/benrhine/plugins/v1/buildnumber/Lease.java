@@ -0,0 +1,131 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * Lease: A block of build numbers `start` to `end` (inclusive) handed to one agent until it expires. Leases are sent
+ * over the wire and cached by the agent as `key=value` lines.
+ * ------------------------------------------------------------------------------------------------------------------ */
+final class Lease {
+    static final String ID = "lease";
+    static final String START = "start";
+    static final String END = "end";
+    static final String EXPIRES = "expires";
+
+    private final String id;
+    private final long start;
+    private final long end;
+    private final long expiresAt;
+
+    Lease(final String id, final long start, final long end, final long expiresAt) {
+        this.id = id;
+        this.start = start;
+        this.end = end;
+        this.expiresAt = expiresAt;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * toMap: The lease as `key=value` pairs.
+     *
+     * @return Map
+     */
+    Map<String, String> toMap() {
+        final Map<String, String> values = new LinkedHashMap<>();
+        values.put(ID, id);
+        values.put(START, Long.toString(start));
+        values.put(END, Long.toString(end));
+        values.put(EXPIRES, Long.toString(expiresAt));
+        return values;
+    }
+
+    /**
+     * fromMap: Read a lease from `key=value` pairs.
+     *
+     * @param values Map
+     * @return Lease
+     * @throws IOException an Exception if a value is missing or the range is empty
+     */
+    static Lease fromMap(final Map<String, String> values) throws IOException {
+        final String id = values.get(ID);
+
+        if (id == null || id.isEmpty()) {
+            throw new IOException("Lease without an id: " + values);
+        }
+        final Lease lease = new Lease(id, getLong(values, START), getLong(values, END), getLong(values, EXPIRES));
+
+        if (lease.start < 1 || lease.end < lease.start) {
+            throw new IOException("Invalid lease range " + lease.start + "-" + lease.end);
+        }
+        return lease;
+    }
+
+    /**
+     * format: Format `key=value` pairs one per line.
+     *
+     * @param values Map
+     * @return String
+     */
+    static String format(final Map<String, String> values) {
+        final StringBuilder builder = new StringBuilder();
+
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            builder.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * parse: Parse `key=value` lines, blank lines and `#` comments are skipped.
+     *
+     * @param text String
+     * @return Map
+     */
+    static Map<String, String> parse(final String text) {
+        final Map<String, String> values = new LinkedHashMap<>();
+
+        for (final String line : text.split("\r?\n")) {
+            final int separator = line.indexOf('=');
+
+            if (separator > 0 && !line.startsWith("#")) {
+                values.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * getLong: A required number of the given pairs.
+     *
+     * @param values Map
+     * @param key String
+     * @return long
+     * @throws IOException an Exception if the value is missing or not a number
+     */
+    static long getLong(final Map<String, String> values, final String key) throws IOException {
+        final String value = values.get(key);
+
+        try {
+            return Long.parseLong(value);
+        } catch (final NumberFormatException ex) {
+            throw new IOException("Expected a number for '" + key + "' but was '" + value + "'", ex);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import com.benrhine.plugins.v1.util.AtomicFiles;
+import com.benrhine.plugins.v1.util.VersionFileLock;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * LeasedBuildNumberProvider: Build numbers that are unique across every agent, allocated from blocks leased from a
+ * {@link BuildNumberServer}. The current lease is cached in a file under the Gradle user home, so a block of e.g. 100
+ * numbers serves the next 100 builds of the agent without a request. The cache file is only read and updated while
+ * holding its lock, parallel builds on the same agent never take the same number.
+ * <p>
+ * A lease is only used until shortly before it expires, then its unused numbers are released back to the server and a
+ * new lease is requested.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class LeasedBuildNumberProvider implements BuildNumberProvider {
+    private static final int TIMEOUT_MILLIS = 10_000;
+    private static final long LOCK_TIMEOUT_MILLIS = 30_000;
+    private static final long MAX_EXPIRY_MARGIN_MILLIS = 30_000;
+    private static final String NEXT = "next";
+    private static final String LEASED = "leased";
+    private static final String SERVER = "server";
+
+    private final URI server;
+    private final String counter;
+    private final int leaseSize;
+    private final File leaseFile;
+
+    /**
+     * LeasedBuildNumberProvider:
+     *
+     * @param server URI the base URI of the build number server
+     * @param counter String the counter to lease from, e.g. the name of the root project
+     * @param leaseSize int how many numbers to lease at a time
+     * @param leaseFile File where the current lease is cached, see {@link #leaseFile(File, String)}
+     */
+    public LeasedBuildNumberProvider(final URI server, final String counter, final int leaseSize, final File leaseFile) {
+        if (!BuildNumberServer.isValidName(counter)) {
+            throw new IllegalArgumentException("Invalid build number counter name '" + counter + "'");
+        }
+        if (leaseSize < 1 || leaseSize > BuildNumberServer.MAX_LEASE_SIZE) {
+            throw new IllegalArgumentException("The lease size must be between 1 and " + BuildNumberServer.MAX_LEASE_SIZE);
+        }
+        this.server = server.getPath().endsWith("/") ? server : URI.create(server + "/");
+        this.counter = counter;
+        this.leaseSize = leaseSize;
+        this.leaseFile = leaseFile.getAbsoluteFile();
+    }
+
+    /**
+     * leaseFile: The lease cache file of the given counter under the Gradle user home.
+     *
+     * @param gradleUserHome File
+     * @param counter String
+     * @return File
+     */
+    public static File leaseFile(final File gradleUserHome, final String counter) {
+        return BuildNumberCounter.stateFile(gradleUserHome, counter, ".lease");
+    }
+
+    /**
+     * nextBuildNumber: Take the next number of the cached lease, leasing a new block when it is used up or about to
+     * expire.
+     *
+     * @return int
+     * @throws IOException an Exception if a new lease was needed and the server could not be reached
+     */
+    @Override
+    @SuppressWarnings("try") // The lock is not referenced in the block
+    public int nextBuildNumber() throws IOException {
+        Files.createDirectories(leaseFile.getParentFile().toPath());
+
+        try (VersionFileLock lock = VersionFileLock.acquire(leaseFile, LOCK_TIMEOUT_MILLIS)) {
+            final long now = System.currentTimeMillis();
+            final Map<String, String> cached = readCache();
+            Lease lease = null;
+            long next = 0;
+
+            if (cached != null) {
+                lease = Lease.fromMap(cached);
+                next = Lease.getLong(cached, NEXT);
+                final long margin = Math.min(MAX_EXPIRY_MARGIN_MILLIS, (lease.getExpiresAt() - Lease.getLong(cached, LEASED)) / 10);
+
+                if (next > lease.getEnd() || now >= lease.getExpiresAt() - margin) {
+                    if (next <= lease.getEnd() && now < lease.getExpiresAt()) {
+                        release(lease, next);
+                    }
+                    lease = null;
+                }
+            }
+            if (lease == null) {
+                lease = requestLease();
+                next = lease.getStart();
+            }
+            if (next > Integer.MAX_VALUE) {
+                throw new IOException("Build number " + next + " of counter " + counter + " is out of range");
+            }
+            writeCache(lease, next + 1, cached != null && lease.getId().equals(cached.get(Lease.ID)) ?
+                    Lease.getLong(cached, LEASED) : now);
+            return (int) next;
+        }
+    }
+
+    private Map<String, String> readCache() throws IOException {
+        if (!leaseFile.isFile()) {
+            return null;
+        }
+        final Map<String, String> cached = Lease.parse(new String(Files.readAllBytes(leaseFile.toPath()), StandardCharsets.UTF_8));
+
+        try {
+            // A lease of another server is of no use, e.g. after `buildNumberServerUrl` was changed
+            Lease.fromMap(cached);
+            Lease.getLong(cached, NEXT);
+            Lease.getLong(cached, LEASED);
+            return server.toString().equals(cached.get(SERVER)) ? cached : null;
+        } catch (final IOException ex) {
+            System.out.println("Warning: Ignoring the unreadable build number lease " + leaseFile + " - " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(final Lease lease, final long next, final long leased) throws IOException {
+        final Map<String, String> values = lease.toMap();
+        values.put(NEXT, Long.toString(next));
+        values.put(LEASED, Long.toString(leased));
+        values.put(SERVER, server.toString());
+        AtomicFiles.write(leaseFile.toPath(), Lease.format(values).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Lease requestLease() throws IOException {
+        final HttpURLConnection connection = post("counters/" + counter + "/leases?size=" + leaseSize);
+
+        try {
+            final int status = connection.getResponseCode();
+
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Build number server " + server + " refused the lease (" + status + "): " +
+                        read(connection.getErrorStream()).trim());
+            }
+            return Lease.fromMap(Lease.parse(read(connection.getInputStream())));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * release: Return the unused numbers of a lease that is about to expire, failing to do so only leaves a gap.
+     */
+    private void release(final Lease lease, final long next) {
+        try {
+            final HttpURLConnection connection = post("counters/" + counter + "/leases/" +
+                    URLEncoder.encode(lease.getId(), "UTF-8") + "/release?next=" + next);
+
+            try {
+                final int status = connection.getResponseCode();
+
+                if (status != HttpURLConnection.HTTP_NO_CONTENT && status != HttpURLConnection.HTTP_NOT_FOUND) {
+                    System.out.println("Warning: Build number server " + server + " did not release lease " + lease.getId() +
+                            " (" + status + ")");
+                }
+            } finally {
+                connection.disconnect();
+            }
+        } catch (final IOException ex) {
+            System.out.println("Warning: Could not release build number lease " + lease.getId() + " - " + ex.getMessage());
+        }
+    }
+
+    private HttpURLConnection post(final String path) throws IOException {
+        final URL url = server.resolve(path).toURL();
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(0);
+        connection.getOutputStream().close();
+        return connection;
+    }
+
+    private static String read(final InputStream input) throws IOException {
+        if (input == null) {
+            return "";
+        }
+        try (InputStream in = input) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.benrhine.plugins.v1.git;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * Commit: The parts of a git commit needed to walk the history, its parents and committer time.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class Commit {
+    private static final String[] NO_PARENTS = new String[0];
+
+    private final String id;
+    private final String[] parents;
+    private final long commitTime;
+
+    Commit(final String id, final String[] parents, final long commitTime) {
+        this.id = id;
+        this.parents = parents;
+        this.commitTime = commitTime;
+    }
+
+    /**
+     * parse: Parse the headers of a commit object, the message is never looked at.
+     *
+     * @param id String
+     * @param data byte[] the inflated commit object
+     * @return Commit
+     * @throws IOException an Exception
+     */
+    static Commit parse(final String id, final byte[] data) throws IOException {
+        List<String> parents = null;
+        long commitTime = 0;
+        int position = 0;
+
+        while (position < data.length && data[position] != '\n') {
+            int end = position;
+            while (end < data.length && data[end] != '\n') {
+                end++;
+            }
+            if (startsWith(data, position, "parent ")) {
+                if (parents == null) {
+                    parents = new ArrayList<>(2);
+                }
+                parents.add(new String(data, position + 7, 40, StandardCharsets.US_ASCII));
+            } else if (startsWith(data, position, "committer ")) {
+                commitTime = parseCommitTime(data, position, end);
+            }
+            position = end + 1;
+        }
+        return new Commit(id, parents == null ? NO_PARENTS : parents.toArray(new String[0]), commitTime);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String[] getParents() {
+        return parents;
+    }
+
+    /**
+     * getCommitTime: Committer time in seconds since the epoch.
+     *
+     * @return long
+     */
+    public long getCommitTime() {
+        return commitTime;
+    }
+
+    /**
+     * parseCommitTime: The committer line ends with `<email> <seconds> <timezone>`.
+     */
+    private static long parseCommitTime(final byte[] data, final int start, final int end) throws IOException {
+        int position = end - 1;
+
+        // Skip the time zone
+        while (position > start && data[position] != ' ') {
+            position--;
+        }
+        final int timeEnd = position;
+        position--;
+        while (position > start && data[position] != ' ') {
+            position--;
+        }
+        long time = 0;
+        for (int i = position + 1; i < timeEnd; i++) {
+            final int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Malformed committer line");
+            }
+            time = time * 10 + digit;
+        }
+        return time;
+    }
+
+    private static boolean startsWith(final byte[] data, final int position, final String prefix) {
+        if (position + prefix.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[position + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
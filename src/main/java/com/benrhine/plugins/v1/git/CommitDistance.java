@@ -0,0 +1,229 @@
+package com.benrhine.plugins.v1.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import com.benrhine.plugins.v1.SemanticVersion;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * CommitDistance: The number of commits since the tag of a base version, the same count as
+ * `git rev-list --count <tag>..HEAD`, read straight from the `.git` object store. When the version is not tagged every
+ * commit reachable from HEAD is counted.
+ * <p>
+ * Counts are cached per HEAD commit. When HEAD moves forward only the new commits are walked and added to the count of
+ * the previous HEAD, so a long history is walked once per daemon instead of once per build.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class CommitDistance {
+    private static final int MAX_CACHED_HEADS = 256;
+    private static final Map<File, Distances> DISTANCES = new ConcurrentHashMap<>();
+
+    private CommitDistance() {
+    }
+
+    /**
+     * count: Count the commits since the tag of the given base version.
+     *
+     * @param dir File any directory inside the git repository
+     * @param baseVersion SemanticVersion only `major.minor.patch` is used to find the tag
+     * @return int the number of commits or {@link SemanticVersion#NO_BUILD_NUMBER} if the directory is not inside a git
+     * repository or nothing is committed yet
+     * @throws IOException an Exception
+     */
+    public static int count(final File dir, final SemanticVersion baseVersion) throws IOException {
+        final GitRepository repository = GitRepository.find(dir);
+
+        if (repository == null) {
+            return SemanticVersion.NO_BUILD_NUMBER;
+        }
+        final String head = repository.resolveHead();
+
+        if (head == null) {
+            return SemanticVersion.NO_BUILD_NUMBER;
+        }
+        final long stamp = repository.getTagsStamp();
+        final GitTagVersion.TagIndex cachedIndex = GitTagVersion.getCachedTagIndex(repository, stamp);
+
+        if (cachedIndex != null) {
+            final Distances cached = DISTANCES.get(repository.getCommonDir());
+
+            if (cached != null && Objects.equals(cached.tagCommit, cachedIndex.findCommit(baseVersion))) {
+                final Integer count = cached.get(head);
+
+                if (count != null) {
+                    return count;
+                }
+            }
+        }
+        final ObjectDatabase database = new ObjectDatabase(repository.getObjectsDir());
+
+        try {
+            final String tagCommit = GitTagVersion.getTagIndex(repository, database, stamp).findCommit(baseVersion);
+            Distances distances = DISTANCES.get(repository.getCommonDir());
+
+            if (distances == null || !Objects.equals(distances.tagCommit, tagCommit)) {
+                distances = new Distances(tagCommit);
+                DISTANCES.put(repository.getCommonDir(), distances);
+            }
+            if (new File(repository.getCommonDir(), "shallow").isFile()) {
+                System.out.println("Warning: Shallow git clone - the commit distance only counts the fetched history");
+            }
+            final int count = count(database, head, tagCommit, distances);
+            distances.put(head, count);
+            return count;
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * count: Count incrementally from the last counted HEAD if it is an ancestor of HEAD, otherwise walk everything
+     * since the tag.
+     */
+    private static int count(final ObjectDatabase database, final String head, final String tagCommit,
+                             final Distances distances) throws IOException {
+        final Map.Entry<String, Integer> previous = distances.last();
+
+        if (previous != null) {
+            final Walk walk = walk(database, head, tagCommit, previous.getKey());
+
+            if (walk.reachedPrevious) {
+                return previous.getValue() + walk.count;
+            }
+        }
+        return walk(database, head, tagCommit, null).count;
+    }
+
+    /**
+     * walk: Count the commits reachable from HEAD but not from the tag or the previous HEAD. Both sides are walked
+     * together newest commit first, commits reached from the boundaries are uninteresting and the walk stops as soon
+     * as only uninteresting commits are left.
+     *
+     * @param database ObjectDatabase
+     * @param head String
+     * @param tagCommit String or null to count every commit
+     * @param previousHead String or null
+     * @return Walk
+     */
+    static Walk walk(final ObjectDatabase database, final String head, final String tagCommit,
+                     final String previousHead) throws IOException {
+        final Walk walk = new Walk();
+        final Map<String, Integer> states = new HashMap<>();
+        final PriorityQueue<Commit> queue = new PriorityQueue<>((a, b) -> Long.compare(b.getCommitTime(), a.getCommitTime()));
+
+        for (final String boundary : new String[] {tagCommit, previousHead}) {
+            if (boundary != null && !states.containsKey(boundary)) {
+                enqueue(database, queue, boundary);
+                states.put(boundary, Walk.UNINTERESTING);
+            }
+        }
+        if (states.containsKey(head)) {
+            walk.reachedPrevious = head.equals(previousHead);
+            return walk;
+        }
+        states.put(head, 0);
+        int interesting = enqueue(database, queue, head) ? 1 : 0;
+
+        while (interesting > 0 && !queue.isEmpty()) {
+            final Commit commit = queue.poll();
+            final int state = states.get(commit.getId()) | Walk.DONE;
+            final boolean uninteresting = (state & Walk.UNINTERESTING) != 0;
+            states.put(commit.getId(), state);
+
+            if (!uninteresting) {
+                interesting--;
+                walk.count++;
+            }
+            for (final String parent : commit.getParents()) {
+                final Integer parentState = states.get(parent);
+
+                if (parentState == null) {
+                    // Parents beyond the boundary of a shallow clone are simply not there
+                    final boolean queued = enqueue(database, queue, parent);
+                    states.put(parent, (uninteresting ? Walk.UNINTERESTING : 0) | (queued ? 0 : Walk.DONE));
+
+                    if (queued && !uninteresting) {
+                        interesting++;
+                    }
+                } else if (uninteresting && (parentState & Walk.UNINTERESTING) == 0) {
+                    states.put(parent, parentState | Walk.UNINTERESTING);
+
+                    if ((parentState & Walk.DONE) == 0) {
+                        interesting--;
+                    }
+                } else if (!uninteresting && parent.equals(previousHead)) {
+                    walk.reachedPrevious = true;
+                }
+            }
+        }
+        return walk;
+    }
+
+    private static boolean enqueue(final ObjectDatabase database, final PriorityQueue<Commit> queue, final String id) throws IOException {
+        final Commit commit = database.readCommit(id);
+
+        if (commit == null) {
+            return false;
+        }
+        queue.add(commit);
+        return true;
+    }
+
+    /**
+     * Walk: Result of a walk.
+     */
+    static final class Walk {
+        private static final int UNINTERESTING = 1;
+        private static final int DONE = 2;
+
+        private int count;
+        private boolean reachedPrevious;
+
+        int getCount() {
+            return count;
+        }
+
+        boolean isReachedPrevious() {
+            return reachedPrevious;
+        }
+    }
+
+    /**
+     * Distances: Counted HEAD commits since one tag, most recently counted last.
+     */
+    private static final class Distances {
+        private final String tagCommit;
+        private final Map<String, Integer> counts = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Integer> eldest) {
+                return size() > MAX_CACHED_HEADS;
+            }
+        };
+
+        private Distances(final String tagCommit) {
+            this.tagCommit = tagCommit;
+        }
+
+        private synchronized Integer get(final String head) {
+            return counts.get(head);
+        }
+
+        private synchronized void put(final String head, final int count) {
+            counts.put(head, count);
+        }
+
+        private synchronized Map.Entry<String, Integer> last() {
+            Map.Entry<String, Integer> last = null;
+
+            for (final Map.Entry<String, Integer> entry : counts.entrySet()) {
+                last = entry;
+            }
+            return last == null ? null : new AbstractMap.SimpleImmutableEntry<>(last);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.benrhine.plugins.v1.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * GitRepository: Read only access to the refs of a git repository straight from the files in `.git` (HEAD, loose refs
+ * and `packed-refs`) without starting a `git` process. Linked worktrees and submodules (a `.git` file pointing at the
+ * actual git directory) are supported.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class GitRepository {
+    private static final String TAGS = "refs/tags/";
+
+    private final File gitDir;
+    private final File commonDir;
+
+    private GitRepository(final File gitDir, final File commonDir) {
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+    }
+
+    /**
+     * find: Find the repository the given directory belongs to by walking up to the first `.git`.
+     *
+     * @param dir File
+     * @return GitRepository or null if the directory is not inside a git repository
+     * @throws IOException an Exception
+     */
+    public static GitRepository find(final File dir) throws IOException {
+        for (File current = dir.getAbsoluteFile(); current != null; current = current.getParentFile()) {
+            final File dotGit = new File(current, ".git");
+
+            if (dotGit.isDirectory()) {
+                return open(dotGit);
+            }
+            if (dotGit.isFile()) {
+                // Worktree or submodule: `gitdir: <path>`
+                final String content = readFirstLine(dotGit);
+
+                if (content != null && content.startsWith("gitdir:")) {
+                    final File target = new File(content.substring("gitdir:".length()).trim());
+                    return open(target.isAbsolute() ? target : new File(current, target.getPath()));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static GitRepository open(final File gitDir) throws IOException {
+        final File canonical = gitDir.getCanonicalFile();
+        final File commonDirFile = new File(canonical, "commondir");
+        File commonDir = canonical;
+
+        if (commonDirFile.isFile()) {
+            final String path = readFirstLine(commonDirFile);
+
+            if (path != null && !path.isEmpty()) {
+                final File common = new File(path);
+                commonDir = (common.isAbsolute() ? common : new File(canonical, path)).getCanonicalFile();
+            }
+        }
+        return new GitRepository(canonical, commonDir);
+    }
+
+    /**
+     * getGitDir: The git directory holding HEAD.
+     *
+     * @return File
+     */
+    public File getGitDir() {
+        return gitDir;
+    }
+
+    /**
+     * getCommonDir: The git directory holding the shared refs and objects, different from the git directory for a
+     * linked worktree.
+     *
+     * @return File
+     */
+    public File getCommonDir() {
+        return commonDir;
+    }
+
+    /**
+     * getObjectsDir:
+     *
+     * @return File
+     */
+    public File getObjectsDir() {
+        return new File(commonDir, "objects");
+    }
+
+    /**
+     * resolveHead: The commit id HEAD points at.
+     *
+     * @return String or null on an unborn branch
+     * @throws IOException an Exception
+     */
+    public String resolveHead() throws IOException {
+        return resolve("HEAD");
+    }
+
+    /**
+     * resolve: Resolve a ref (following symbolic refs) to an object id.
+     *
+     * @param name String e.g. `HEAD` or `refs/heads/main`
+     * @return String or null if the ref does not exist
+     * @throws IOException an Exception
+     */
+    public String resolve(final String name) throws IOException {
+        String ref = name;
+
+        for (int depth = 0; depth < 8; depth++) {
+            final String value = readLooseRef(ref);
+
+            if (value == null) {
+                return findPackedRef(ref);
+            }
+            if (!value.startsWith("ref:")) {
+                return value;
+            }
+            ref = value.substring("ref:".length()).trim();
+        }
+        throw new IOException("Symbolic ref chain too long: " + name);
+    }
+
+    /**
+     * readTags: Read every tag, loose tags take precedence over packed ones.
+     *
+     * @return List of tags
+     * @throws IOException an Exception
+     */
+    public List<Tag> readTags() throws IOException {
+        final Map<String, Tag> tags = new LinkedHashMap<>();
+        final File packedRefs = new File(commonDir, "packed-refs");
+
+        if (packedRefs.isFile()) {
+            Tag last = null;
+
+            for (final String line : Files.readAllLines(packedRefs.toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("^") && last != null) {
+                    // Peeled value of the previous annotated tag
+                    last = new Tag(last.getName(), last.getObjectId(), line.substring(1).trim());
+                    tags.put(last.getName(), last);
+                } else if (line.length() > 41 && line.charAt(40) == ' ' && line.startsWith(TAGS, 41)) {
+                    last = new Tag(line.substring(41).trim(), line.substring(0, 40), null);
+                    tags.put(last.getName(), last);
+                } else {
+                    last = null;
+                }
+            }
+        }
+        final List<File> looseTags = new ArrayList<>();
+        listFiles(new File(commonDir, TAGS), looseTags);
+        final int prefix = commonDir.getPath().length() + 1;
+
+        for (final File file : looseTags) {
+            final String name = file.getPath().substring(prefix).replace(File.separatorChar, '/');
+            final String value = readFirstLine(file);
+
+            if (value != null && value.length() == 40) {
+                tags.put(name, new Tag(name, value, null));
+            }
+        }
+        return new ArrayList<>(tags.values());
+    }
+
+    /**
+     * getTagsStamp: Cheap fingerprint of the tag refs, built from the size and modification time of `packed-refs` and
+     * of every loose tag file and directory. It changes whenever a tag is added, moved or deleted without reading any
+     * of the tags.
+     *
+     * @return long
+     */
+    public long getTagsStamp() {
+        final File packedRefs = new File(commonDir, "packed-refs");
+        long stamp = 17;
+        stamp = stamp * 31 + packedRefs.lastModified();
+        stamp = stamp * 31 + packedRefs.length();
+        return stampTree(new File(commonDir, TAGS), stamp);
+    }
+
+    private static long stampTree(final File dir, final long seed) {
+        long stamp = seed * 31 + dir.lastModified();
+        final File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (final File file : files) {
+                if (file.isDirectory()) {
+                    stamp = stampTree(file, stamp);
+                } else {
+                    stamp = stamp * 31 + file.getName().hashCode();
+                    stamp = stamp * 31 + file.lastModified();
+                }
+            }
+        }
+        return stamp;
+    }
+
+    private String readLooseRef(final String ref) throws IOException {
+        // HEAD and other pseudo refs live in the (worktree) git directory, everything under refs/ is shared
+        File file = new File(gitDir, ref);
+
+        if (!file.isFile() && !gitDir.equals(commonDir)) {
+            file = new File(commonDir, ref);
+        }
+        return file.isFile() ? readFirstLine(file) : null;
+    }
+
+    private String findPackedRef(final String ref) throws IOException {
+        final File packedRefs = new File(commonDir, "packed-refs");
+
+        if (!packedRefs.isFile()) {
+            return null;
+        }
+        for (final String line : Files.readAllLines(packedRefs.toPath(), StandardCharsets.UTF_8)) {
+            if (line.length() > 41 && line.charAt(40) == ' ' && line.regionMatches(41, ref, 0, ref.length()) &&
+                    line.length() == 41 + ref.length()) {
+                return line.substring(0, 40);
+            }
+        }
+        return null;
+    }
+
+    private static void listFiles(final File dir, final List<File> files) {
+        final File[] children = dir.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                if (child.isDirectory()) {
+                    listFiles(child, files);
+                } else {
+                    files.add(child);
+                }
+            }
+        }
+    }
+
+    private static String readFirstLine(final File file) throws IOException {
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        return lines.isEmpty() ? null : lines.get(0).trim();
+    }
+
+    /**
+     * Tag: A tag ref, the object id is the annotated tag object or directly the tagged commit.
+     */
+    public static final class Tag {
+        private final String name;
+        private final String objectId;
+        private final String peeledId;
+
+        Tag(final String name, final String objectId, final String peeledId) {
+            this.name = name;
+            this.objectId = objectId;
+            this.peeledId = peeledId;
+        }
+
+        /**
+         * getName: The full ref name e.g. `refs/tags/v1.2.3`.
+         *
+         * @return String
+         */
+        public String getName() {
+            return name;
+        }
+
+        public String getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * getPeeledId: The tagged commit if known from `packed-refs`, otherwise null.
+         *
+         * @return String
+         */
+        public String getPeeledId() {
+            return peeledId;
+        }
+
+        /**
+         * getShortName: The tag name without `refs/tags/`.
+         *
+         * @return String
+         */
+        public String getShortName() {
+            return name.substring(TAGS.length());
+        }
+    }
+}
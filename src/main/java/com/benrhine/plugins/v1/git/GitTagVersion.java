@@ -0,0 +1,281 @@
+package com.benrhine.plugins.v1.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.benrhine.plugins.v1.SemanticVersion;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * GitTagVersion: The base version derived from the newest SemVer tag (`1.2.3` or `v1.2.3`) reachable from HEAD. The
+ * refs and objects are read straight from the `.git` directory, no `git` process is started.
+ * <p>
+ * The tag index (tagged commit to version) is cached per repository for as long as the tag refs are unchanged, see
+ * {@link GitRepository#getTagsStamp()}, and the resolved version is cached for the most recent HEAD commits on top of
+ * that. A build with many projects, or a following build in the same daemon, therefore only stats the ref files.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class GitTagVersion {
+    private static final int MAX_CACHED_HEADS = 256;
+    private static final Map<File, TagIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final SemanticVersion version;
+    private final String tagName;
+    private final String tagCommitId;
+    private final String headId;
+
+    GitTagVersion(final SemanticVersion version, final String tagName, final String tagCommitId, final String headId) {
+        this.version = version;
+        this.tagName = tagName;
+        this.tagCommitId = tagCommitId;
+        this.headId = headId;
+    }
+
+    /**
+     * resolve: Resolve the base version of the repository the given directory belongs to.
+     *
+     * @param dir File
+     * @return GitTagVersion or null if the directory is not inside a git repository
+     * @throws IOException an Exception
+     */
+    public static GitTagVersion resolve(final File dir) throws IOException {
+        final GitRepository repository = GitRepository.find(dir);
+
+        if (repository == null) {
+            return null;
+        }
+        final String head = repository.resolveHead();
+
+        if (head == null) {
+            // Unborn branch, nothing is committed yet
+            return new GitTagVersion(SemanticVersion.of(0, 0, 0), null, null, null);
+        }
+        final long stamp = repository.getTagsStamp();
+        final TagIndex cached = getCachedTagIndex(repository, stamp);
+
+        if (cached != null) {
+            final GitTagVersion result = cached.getResult(head);
+
+            if (result != null) {
+                return result;
+            }
+        }
+        final ObjectDatabase database = new ObjectDatabase(repository.getObjectsDir());
+
+        try {
+            final TagIndex index = cached != null ? cached : getTagIndex(repository, database, stamp);
+            final GitTagVersion result = findNearestTag(database, index, head);
+            index.putResult(head, result);
+            return result;
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * getCachedTagIndex: The cached tag index of the repository if the tag refs did not change since it was built.
+     *
+     * @param repository GitRepository
+     * @param stamp long see {@link GitRepository#getTagsStamp()}
+     * @return TagIndex or null
+     */
+    static TagIndex getCachedTagIndex(final GitRepository repository, final long stamp) {
+        final TagIndex cached = INDEXES.get(repository.getCommonDir());
+        return cached != null && cached.stamp == stamp ? cached : null;
+    }
+
+    /**
+     * getTagIndex: The tag index of the repository, rebuilt if the tag refs changed since it was cached.
+     *
+     * @param repository GitRepository
+     * @param database ObjectDatabase used to peel annotated tags
+     * @param stamp long see {@link GitRepository#getTagsStamp()}
+     * @return TagIndex
+     * @throws IOException an Exception
+     */
+    static TagIndex getTagIndex(final GitRepository repository, final ObjectDatabase database, final long stamp) throws IOException {
+        TagIndex index = getCachedTagIndex(repository, stamp);
+
+        if (index == null) {
+            index = TagIndex.build(repository, database, stamp);
+            INDEXES.put(repository.getCommonDir(), index);
+        }
+        return index;
+    }
+
+    /**
+     * findNearestTag: Walk the history from HEAD, newest commit first, until a tagged commit is reached.
+     */
+    private static GitTagVersion findNearestTag(final ObjectDatabase database, final TagIndex index, final String head) throws IOException {
+        final PriorityQueue<Commit> queue = new PriorityQueue<>((a, b) -> Long.compare(b.getCommitTime(), a.getCommitTime()));
+        final Set<String> seen = new HashSet<>();
+        seen.add(head);
+        final Commit start = database.readCommit(head);
+
+        if (start != null) {
+            queue.add(start);
+        }
+        while (!queue.isEmpty()) {
+            final Commit commit = queue.poll();
+            final Tagged tagged = index.tags.get(commit.getId());
+
+            if (tagged != null) {
+                return new GitTagVersion(tagged.version, tagged.name, commit.getId(), head);
+            }
+            for (final String parent : commit.getParents()) {
+                if (seen.add(parent)) {
+                    // Parents beyond the boundary of a shallow clone are simply not there
+                    final Commit next = database.readCommit(parent);
+
+                    if (next != null) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        System.out.println("Warning: No SemVer tag reachable from HEAD - defaulting version to 0.0.0");
+        return new GitTagVersion(SemanticVersion.of(0, 0, 0), null, null, head);
+    }
+
+    /**
+     * parseTag: Parse a tag name in the form `1.2.3` or `v1.2.3`.
+     *
+     * @param name String the short tag name
+     * @return SemanticVersion or null if the tag is not a release version
+     */
+    static SemanticVersion parseTag(final String name) {
+        final String value = name.startsWith("v") || name.startsWith("V") ? name.substring(1) : name;
+
+        if (value.isEmpty() || !Character.isDigit(value.charAt(0))) {
+            return null;
+        }
+        try {
+            final SemanticVersion version = SemanticVersion.parse(value);
+            return version.hasBuildNumber() || version.isPreRelease() ? null : version;
+        } catch (final IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * getVersion: The `major.minor.patch` of the tag, 0.0.0 when no tag is reachable.
+     *
+     * @return SemanticVersion
+     */
+    public SemanticVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * getTagName: The short name of the tag the version was taken from.
+     *
+     * @return String or null when no tag is reachable
+     */
+    public String getTagName() {
+        return tagName;
+    }
+
+    /**
+     * getTagCommitId: The commit the tag points at.
+     *
+     * @return String or null when no tag is reachable
+     */
+    public String getTagCommitId() {
+        return tagCommitId;
+    }
+
+    /**
+     * getHeadId: The commit HEAD pointed at when the version was resolved.
+     *
+     * @return String or null on an unborn branch
+     */
+    public String getHeadId() {
+        return headId;
+    }
+
+    /**
+     * Tagged: The highest release version tagged on a commit.
+     */
+    private static final class Tagged {
+        private final String name;
+        private final SemanticVersion version;
+
+        private Tagged(final String name, final SemanticVersion version) {
+            this.name = name;
+            this.version = version;
+        }
+    }
+
+    /**
+     * TagIndex: Tagged commits of a repository, valid for as long as the tag refs stamp is unchanged, and the versions
+     * resolved for the most recently used HEAD commits.
+     */
+    static final class TagIndex {
+        private final long stamp;
+        private final Map<String, Tagged> tags;
+        private final Map<String, GitTagVersion> results = new LinkedHashMap<String, GitTagVersion>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, GitTagVersion> eldest) {
+                return size() > MAX_CACHED_HEADS;
+            }
+        };
+
+        private TagIndex(final long stamp, final Map<String, Tagged> tags) {
+            this.stamp = stamp;
+            this.tags = tags;
+        }
+
+        private synchronized GitTagVersion getResult(final String head) {
+            return results.get(head);
+        }
+
+        private synchronized void putResult(final String head, final GitTagVersion result) {
+            results.put(head, result);
+        }
+
+        /**
+         * findCommit: The commit tagged with the given `major.minor.patch`.
+         *
+         * @param version SemanticVersion the pre-release and build number are ignored
+         * @return String or null if the version is not tagged
+         */
+        String findCommit(final SemanticVersion version) {
+            final SemanticVersion release = SemanticVersion.of(version.getMajor(), version.getMinor(), version.getPatch());
+
+            for (final Map.Entry<String, Tagged> entry : tags.entrySet()) {
+                if (entry.getValue().version.equals(release)) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+
+        private static TagIndex build(final GitRepository repository, final ObjectDatabase database, final long stamp) throws IOException {
+            final Map<String, Tagged> tags = new HashMap<>();
+
+            for (final GitRepository.Tag tag : repository.readTags()) {
+                final SemanticVersion version = parseTag(tag.getShortName());
+
+                if (version == null) {
+                    continue;
+                }
+                final String commitId = tag.getPeeledId() != null ? tag.getPeeledId() : database.peel(tag.getObjectId());
+
+                if (commitId == null) {
+                    continue;
+                }
+                final Tagged existing = tags.get(commitId);
+
+                if (existing == null || existing.version.compareTo(version) < 0) {
+                    tags.put(commitId, new Tagged(tag.getShortName(), version));
+                }
+            }
+            return new TagIndex(stamp, Collections.unmodifiableMap(tags));
+        }
+    }
+}
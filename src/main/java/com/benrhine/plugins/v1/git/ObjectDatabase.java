@@ -0,0 +1,282 @@
+package com.benrhine.plugins.v1.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * ObjectDatabase: Read only access to the objects of a git repository (`.git/objects`), both loose objects and packs,
+ * including the alternate object directories. Packs are discovered lazily and the list is refreshed when the pack
+ * directory changes (e.g. after `git gc`), the loaded pack indexes are kept for the lifetime of the database.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class ObjectDatabase {
+    private static final int MAX_ALTERNATES_DEPTH = 5;
+
+    private final File objectsDir;
+    private final File packDir;
+    private final List<ObjectDatabase> alternates;
+    private final Map<String, PackFile> packs = new LinkedHashMap<>();
+    private volatile List<PackFile> packList = Collections.emptyList();
+    private volatile long packDirModified = Long.MIN_VALUE;
+
+    ObjectDatabase(final File objectsDir) throws IOException {
+        this(objectsDir, 0);
+    }
+
+    private ObjectDatabase(final File objectsDir, final int depth) throws IOException {
+        this.objectsDir = objectsDir;
+        this.packDir = new File(objectsDir, "pack");
+        this.alternates = new ArrayList<>();
+        final File alternatesFile = new File(objectsDir, "info/alternates");
+
+        if (depth < MAX_ALTERNATES_DEPTH && alternatesFile.isFile()) {
+            for (final String line : Files.readAllLines(alternatesFile.toPath(), StandardCharsets.UTF_8)) {
+                final String path = line.trim();
+
+                if (!path.isEmpty() && !path.startsWith("#")) {
+                    final File alternate = new File(path);
+                    alternates.add(new ObjectDatabase(alternate.isAbsolute() ? alternate : new File(objectsDir, path), depth + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * read: Read the object with the given id.
+     *
+     * @param id String the 40 character hex object id
+     * @return RawObject or null if the object does not exist (e.g. beyond the boundary of a shallow clone)
+     * @throws IOException an Exception
+     */
+    RawObject read(final String id) throws IOException {
+        return read(fromHex(id));
+    }
+
+    /**
+     * read: Read the object with the given id.
+     *
+     * @param id byte[] the 20 byte object id
+     * @return RawObject or null if the object does not exist
+     * @throws IOException an Exception
+     */
+    RawObject read(final byte[] id) throws IOException {
+        RawObject object = readFromPacks(id, false);
+
+        if (object == null) {
+            object = readLoose(toHex(id));
+        }
+        if (object == null) {
+            // The object may have been packed since the pack directory was last scanned
+            object = readFromPacks(id, true);
+        }
+        for (int i = 0; object == null && i < alternates.size(); i++) {
+            object = alternates.get(i).read(id);
+        }
+        return object;
+    }
+
+    /**
+     * readCommit: Read and parse the commit with the given id.
+     *
+     * @param id String
+     * @return Commit or null if the commit does not exist
+     * @throws IOException an Exception
+     */
+    public Commit readCommit(final String id) throws IOException {
+        final RawObject object = read(id);
+
+        if (object == null) {
+            return null;
+        }
+        if (object.getType() != RawObject.COMMIT) {
+            throw new IOException("Not a commit: " + id);
+        }
+        return Commit.parse(id, object.getData());
+    }
+
+    /**
+     * peel: Follow annotated tags until reaching a non tag object.
+     *
+     * @param id String
+     * @return String the id of the tagged object or null if an object in the chain does not exist
+     * @throws IOException an Exception
+     */
+    public String peel(final String id) throws IOException {
+        String current = id;
+
+        for (int depth = 0; depth < 16; depth++) {
+            final RawObject object = read(current);
+
+            if (object == null) {
+                return null;
+            }
+            if (object.getType() != RawObject.TAG) {
+                return object.getType() == RawObject.COMMIT ? current : null;
+            }
+            current = tagTarget(object.getData());
+        }
+        throw new IOException("Tag chain too long: " + id);
+    }
+
+    /**
+     * close: Release the open pack files.
+     */
+    public synchronized void close() {
+        for (final PackFile pack : packs.values()) {
+            try {
+                pack.close();
+            } catch (final IOException ex) {
+                // Nothing left to do, the pack is only read
+            }
+        }
+        for (final ObjectDatabase alternate : alternates) {
+            alternate.close();
+        }
+    }
+
+    private RawObject readFromPacks(final byte[] id, final boolean rescan) throws IOException {
+        if (rescan && !scanPacks()) {
+            return null;
+        }
+        if (!rescan && packDirModified == Long.MIN_VALUE) {
+            scanPacks();
+        }
+        for (final PackFile pack : packList) {
+            final RawObject object = pack.read(id, this);
+
+            if (object != null) {
+                return object;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * scanPacks: Load the indexes of packs that appeared since the last scan.
+     *
+     * @return boolean true if the pack directory changed
+     */
+    private synchronized boolean scanPacks() throws IOException {
+        final long modified = packDir.lastModified();
+
+        if (modified == packDirModified) {
+            return false;
+        }
+        packDirModified = modified;
+        final File[] indexes = packDir.listFiles((dir, name) -> name.endsWith(".idx"));
+        final Map<String, PackFile> removed = new LinkedHashMap<>(packs);
+
+        if (indexes != null) {
+            for (final File idx : indexes) {
+                removed.remove(idx.getName());
+                if (!packs.containsKey(idx.getName())) {
+                    try {
+                        packs.put(idx.getName(), PackFile.open(idx));
+                    } catch (final IOException ex) {
+                        System.out.println("Warning: Skipping unreadable git pack " + idx + " - " + ex.getMessage());
+                    }
+                }
+            }
+        }
+        // Packs that were removed (e.g. repacked by `git gc`)
+        for (final Map.Entry<String, PackFile> entry : removed.entrySet()) {
+            packs.remove(entry.getKey());
+            try {
+                entry.getValue().close();
+            } catch (final IOException ex) {
+                // Nothing left to do, the pack is only read
+            }
+        }
+        packList = Collections.unmodifiableList(new ArrayList<>(packs.values()));
+        return true;
+    }
+
+    private RawObject readLoose(final String id) throws IOException {
+        final File file = new File(objectsDir, id.substring(0, 2) + File.separator + id.substring(2));
+
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream input = new InflaterInputStream(Files.newInputStream(file.toPath()))) {
+            final ByteArrayOutputStream header = new ByteArrayOutputStream(32);
+            int c;
+
+            while ((c = input.read()) > 0) {
+                header.write(c);
+            }
+            final String text = header.toString("US-ASCII");
+            final int space = text.indexOf(' ');
+            final int size = Integer.parseInt(text.substring(space + 1));
+            final byte[] data = new byte[size];
+            int read = 0;
+
+            while (read < size) {
+                final int count = input.read(data, read, size - read);
+                if (count < 0) {
+                    throw new IOException("Truncated git object " + file);
+                }
+                read += count;
+            }
+            return new RawObject(typeOf(text.substring(0, space)), data);
+        }
+    }
+
+    private static int typeOf(final String type) throws IOException {
+        switch (type) {
+            case "commit":
+                return RawObject.COMMIT;
+            case "tree":
+                return RawObject.TREE;
+            case "blob":
+                return RawObject.BLOB;
+            case "tag":
+                return RawObject.TAG;
+            default:
+                throw new IOException("Unknown git object type: " + type);
+        }
+    }
+
+    /**
+     * tagTarget: The `object` header of an annotated tag.
+     */
+    private static String tagTarget(final byte[] data) throws IOException {
+        if (data.length < 47 || data[0] != 'o' || data[6] != ' ') {
+            throw new IOException("Malformed tag object");
+        }
+        return new String(data, 7, 40, StandardCharsets.US_ASCII);
+    }
+
+    static String toHex(final byte[] id) {
+        final char[] hex = new char[id.length * 2];
+        for (int i = 0; i < id.length; i++) {
+            hex[i * 2] = Character.forDigit((id[i] >> 4) & 0xf, 16);
+            hex[i * 2 + 1] = Character.forDigit(id[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    static byte[] fromHex(final String id) throws IOException {
+        if (id.length() != 40) {
+            throw new IOException("Invalid git object id: " + id);
+        }
+        final byte[] bytes = new byte[20];
+        for (int i = 0; i < 20; i++) {
+            final int high = Character.digit(id.charAt(i * 2), 16);
+            final int low = Character.digit(id.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("Invalid git object id: " + id);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
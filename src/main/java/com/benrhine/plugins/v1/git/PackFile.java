@@ -0,0 +1,309 @@
+package com.benrhine.plugins.v1.git;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * PackFile: Read only access to a git pack through its version 2 index. The index is loaded into memory once, objects
+ * are located with the fan-out table and a binary search and read with positional reads, so a pack can be shared
+ * between threads. Deltified objects (OFS_DELTA and REF_DELTA) are resolved against their base.
+ * ------------------------------------------------------------------------------------------------------------------ */
+final class PackFile {
+    private static final int IDX_MAGIC = 0xff744f63;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+    private static final int MAX_DELTA_DEPTH = 64;
+
+    private final File pack;
+    private final byte[] index;
+    private final int count;
+    private final int shaTable;
+    private final int offsetTable;
+    private final int largeOffsetTable;
+    private FileChannel channel;
+
+    private PackFile(final File pack, final byte[] index) throws IOException {
+        this.pack = pack;
+        this.index = index;
+
+        if (index.length < 8 + 256 * 4 || readInt(index, 0) != IDX_MAGIC || readInt(index, 4) != 2) {
+            throw new IOException("Unsupported pack index (only version 2 is supported): " + pack);
+        }
+        this.count = readInt(index, 8 + 255 * 4);
+        this.shaTable = 8 + 256 * 4;
+        this.offsetTable = shaTable + count * 20 + count * 4;
+        this.largeOffsetTable = offsetTable + count * 4;
+    }
+
+    /**
+     * open: Load the index of the pack.
+     *
+     * @param idx File the `.idx` file, the `.pack` file is expected next to it
+     * @return PackFile
+     * @throws IOException an Exception
+     */
+    static PackFile open(final File idx) throws IOException {
+        final String name = idx.getName();
+        final File pack = new File(idx.getParentFile(), name.substring(0, name.length() - ".idx".length()) + ".pack");
+        return new PackFile(pack, Files.readAllBytes(idx.toPath()));
+    }
+
+    /**
+     * read: Read the object with the given id from this pack.
+     *
+     * @param id byte[] the 20 byte object id
+     * @param database ObjectDatabase resolving REF_DELTA bases stored outside of this pack
+     * @return RawObject or null if the object is not in this pack
+     * @throws IOException an Exception
+     */
+    RawObject read(final byte[] id, final ObjectDatabase database) throws IOException {
+        final long offset = findOffset(id);
+        return offset < 0 ? null : readAt(offset, database, 0);
+    }
+
+    private RawObject readAt(final long offset, final ObjectDatabase database, final int depth) throws IOException {
+        if (depth > MAX_DELTA_DEPTH) {
+            throw new IOException("Delta chain too long in " + pack + " at " + offset);
+        }
+        final byte[] header = new byte[32];
+        final int headerRead = read(offset, header, header.length);
+        int position = 0;
+        int c = header[position++] & 0xff;
+        final int type = (c >> 4) & 7;
+        long size = c & 15;
+        int shift = 4;
+
+        while ((c & 0x80) != 0) {
+            c = header[position++] & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+        if (type == OBJ_OFS_DELTA) {
+            c = header[position++] & 0xff;
+            long distance = c & 0x7f;
+
+            while ((c & 0x80) != 0) {
+                c = header[position++] & 0xff;
+                distance = ((distance + 1) << 7) | (c & 0x7f);
+            }
+            final RawObject base = readAt(offset - distance, database, depth + 1);
+            return new RawObject(base.getType(), applyDelta(base.getData(), inflate(offset + position, toInt(size))));
+        }
+        if (type == OBJ_REF_DELTA) {
+            if (headerRead < position + 20) {
+                throw new EOFException("Truncated pack " + pack);
+            }
+            final byte[] baseId = new byte[20];
+            System.arraycopy(header, position, baseId, 0, 20);
+            position += 20;
+            final long baseOffset = findOffset(baseId);
+            final RawObject base = baseOffset >= 0 ? readAt(baseOffset, database, depth + 1) : database.read(baseId);
+
+            if (base == null) {
+                throw new IOException("Missing delta base " + ObjectDatabase.toHex(baseId) + " in " + pack);
+            }
+            return new RawObject(base.getType(), applyDelta(base.getData(), inflate(offset + position, toInt(size))));
+        }
+        return new RawObject(type, inflate(offset + position, toInt(size)));
+    }
+
+    /**
+     * findOffset: Locate the object in the pack through the fan-out table and a binary search of the sorted ids.
+     */
+    private long findOffset(final byte[] id) {
+        final int first = id[0] & 0xff;
+        int low = first == 0 ? 0 : readInt(index, 8 + (first - 1) * 4);
+        int high = readInt(index, 8 + first * 4) - 1;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int compare = compareId(middle, id);
+
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                final int offset = readInt(index, offsetTable + middle * 4);
+
+                if ((offset & 0x80000000) == 0) {
+                    return offset;
+                }
+                return readLong(index, largeOffsetTable + (offset & 0x7fffffff) * 8);
+            }
+        }
+        return -1;
+    }
+
+    private int compareId(final int position, final byte[] id) {
+        final int start = shaTable + position * 20;
+
+        for (int i = 0; i < 20; i++) {
+            final int result = (index[start + i] & 0xff) - (id[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private byte[] inflate(final long offset, final int size) throws IOException {
+        final byte[] result = new byte[size];
+        final byte[] input = new byte[Math.min(8192, size + 64)];
+        final Inflater inflater = new Inflater();
+        long position = offset;
+        int produced = 0;
+
+        try {
+            while (produced < size) {
+                if (inflater.needsInput()) {
+                    final int read = read(position, input, input.length);
+                    if (read <= 0) {
+                        throw new EOFException("Truncated pack " + pack);
+                    }
+                    position += read;
+                    inflater.setInput(input, 0, read);
+                }
+                final int inflated = inflater.inflate(result, produced, size - produced);
+                produced += inflated;
+
+                if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (final DataFormatException ex) {
+            throw new IOException("Corrupt object in " + pack + " at " + offset, ex);
+        } finally {
+            inflater.end();
+        }
+        if (produced != size) {
+            throw new IOException("Corrupt object in " + pack + " at " + offset);
+        }
+        return result;
+    }
+
+    /**
+     * applyDelta: Rebuild an object from its base and a git delta (copy and insert instructions).
+     *
+     * @param base byte[]
+     * @param delta byte[]
+     * @return byte[]
+     * @throws IOException an Exception
+     */
+    static byte[] applyDelta(final byte[] base, final byte[] delta) throws IOException {
+        int position = 0;
+        long baseSize = 0;
+        int shift = 0;
+        int c;
+
+        do {
+            c = delta[position++] & 0xff;
+            baseSize |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        long resultSize = 0;
+        shift = 0;
+
+        do {
+            c = delta[position++] & 0xff;
+            resultSize |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        if (baseSize != base.length) {
+            throw new IOException("Delta base size mismatch");
+        }
+        final byte[] result = new byte[toInt(resultSize)];
+        int written = 0;
+
+        while (position < delta.length) {
+            final int op = delta[position++] & 0xff;
+
+            if ((op & 0x80) != 0) {
+                long copyOffset = 0;
+                int copySize = 0;
+                for (int i = 0; i < 4; i++) {
+                    if ((op & (1 << i)) != 0) {
+                        copyOffset |= (long) (delta[position++] & 0xff) << (i * 8);
+                    }
+                }
+                for (int i = 0; i < 3; i++) {
+                    if ((op & (0x10 << i)) != 0) {
+                        copySize |= (delta[position++] & 0xff) << (i * 8);
+                    }
+                }
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                System.arraycopy(base, toInt(copyOffset), result, written, copySize);
+                written += copySize;
+            } else if (op != 0) {
+                System.arraycopy(delta, position, result, written, op);
+                position += op;
+                written += op;
+            } else {
+                throw new IOException("Invalid delta instruction");
+            }
+        }
+        if (written != result.length) {
+            throw new IOException("Delta result size mismatch");
+        }
+        return result;
+    }
+
+    private int read(final long position, final byte[] buffer, final int length) throws IOException {
+        final ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+        final FileChannel open = channel();
+        long current = position;
+
+        while (target.hasRemaining()) {
+            final int read = open.read(target, current);
+            if (read < 0) {
+                break;
+            }
+            current += read;
+        }
+        return target.position();
+    }
+
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(pack.toPath(), StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+    /**
+     * close: Close the pack file.
+     *
+     * @throws IOException an Exception
+     */
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static int toInt(final long value) throws IOException {
+        if (value > Integer.MAX_VALUE - 8) {
+            throw new IOException("Git object too large: " + value);
+        }
+        return (int) value;
+    }
+
+    private static int readInt(final byte[] bytes, final int position) {
+        return ((bytes[position] & 0xff) << 24) | ((bytes[position + 1] & 0xff) << 16) |
+                ((bytes[position + 2] & 0xff) << 8) | (bytes[position + 3] & 0xff);
+    }
+
+    private static long readLong(final byte[] bytes, final int position) {
+        return ((long) readInt(bytes, position) << 32) | (readInt(bytes, position + 4) & 0xffffffffL);
+    }
+}
@@ -0,0 +1,27 @@
+package com.benrhine.plugins.v1.git;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * RawObject: The type and inflated content of a git object.
+ * ------------------------------------------------------------------------------------------------------------------ */
+final class RawObject {
+    static final int COMMIT = 1;
+    static final int TREE = 2;
+    static final int BLOB = 3;
+    static final int TAG = 4;
+
+    private final int type;
+    private final byte[] data;
+
+    RawObject(final int type, final byte[] data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    int getType() {
+        return type;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+}
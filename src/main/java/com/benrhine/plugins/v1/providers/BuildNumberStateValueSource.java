@@ -0,0 +1,47 @@
+package com.benrhine.plugins.v1.providers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import com.benrhine.plugins.v1.buildnumber.BuildNumberCounter;
+import com.benrhine.plugins.v1.buildnumber.LeasedBuildNumberProvider;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * BuildNumberStateValueSource: The current state of a build number counter, the content of the local counter file (see
+ * {@link BuildNumberCounter}) or of the cached lease of the build number server (see {@link LeasedBuildNumberProvider}).
+ * The state is only read, no build number is allocated. Every allocation changes it, so a configuration cache entry
+ * that read the state before allocating is never reused, while checking the entry costs no build number.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public abstract class BuildNumberStateValueSource implements ValueSource<String, BuildNumberStateValueSource.Parameters> {
+
+    /**
+     * Parameters: The file holding the state of the counter.
+     */
+    public interface Parameters extends ValueSourceParameters {
+        RegularFileProperty getStateFile();
+    }
+
+    /**
+     * obtain: Read the state of the counter.
+     *
+     * @return String or null if the counter was not used yet
+     */
+    @Override
+    public String obtain() {
+        final File file = getParameters().getStateFile().get().getAsFile();
+
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return Base64.getEncoder().encodeToString(Files.readAllBytes(file.toPath()));
+        } catch (final IOException ex) {
+            System.out.println("Warning: Could not read the build number counter " + file + " - " + ex.getMessage());
+            return null;
+        }
+    }
+}
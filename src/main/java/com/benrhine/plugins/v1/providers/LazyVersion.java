@@ -0,0 +1,76 @@
+package com.benrhine.plugins.v1.providers;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.gradle.api.provider.Provider;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * LazyVersion: The object assigned to `project.version`. The version is not computed until something actually asks for
+ * it through `toString()`, after which the computed value is remembered. Builds that never read the version (configure
+ * on demand, builds that never publish) never pay for reading the version file or looking up the build number.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class LazyVersion implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Provider<String> provider;
+    private volatile String version;
+    private transient volatile SemanticVersion semanticVersion;
+
+    /**
+     * LazyVersion: Create a lazy version backed by the given provider.
+     *
+     * @param provider Provider
+     */
+    public LazyVersion(final Provider<String> provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * toString: Compute the version on first use and return it.
+     *
+     * @return String
+     */
+    @Override
+    public String toString() {
+        String resolved = version;
+
+        if (resolved == null) {
+            synchronized (this) {
+                resolved = version;
+
+                if (resolved == null) {
+                    resolved = provider.get();
+                    version = resolved;
+                }
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * getSemanticVersion: Compute the version on first use and return it parsed, the parsed version is remembered as
+     * well.
+     *
+     * @return SemanticVersion
+     */
+    public SemanticVersion getSemanticVersion() {
+        SemanticVersion resolved = semanticVersion;
+
+        if (resolved == null) {
+            resolved = SemanticVersion.parse(toString());
+            semanticVersion = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * writeReplace: A lazy version is serialized as the plain version string, e.g. when it is used as a task input.
+     *
+     * @return Object
+     * @throws ObjectStreamException an Exception
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.benrhine.plugins.v1.providers;
+
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.generateVersion;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getFallbackBuildNumber;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersionProperties;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionValueSource: Computes the full project version from the version properties file, the build number ENV VAR and
+ * the `versionConfig` extension values (or from the git tags for the `git-tag` version source). Because the file and
+ * ENV VAR are read inside a ValueSource Gradle is able to track them as configuration inputs, which is what allows the
+ * configuration cache to be reused between builds.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public abstract class VersionValueSource implements ValueSource<String, VersionValueSource.Parameters> {
+
+    /**
+     * Parameters: Values required to compute the version.
+     */
+    public interface Parameters extends ValueSourceParameters {
+        RegularFileProperty getVersionFile();
+        Property<Boolean> getRemoteBuild();
+        Property<Boolean> getIncludeReleaseTag();
+        Property<Boolean> getIncludeBuildNumber();
+        Property<String> getCiBuildNumberEnvVarName();
+        Property<Boolean> getCommitDistanceBuildNumber();
+        Property<Integer> getAllocatedBuildNumber();
+        Property<String> getArtifactType();
+        Property<String> getVersionSource();
+        DirectoryProperty getRootDirectory();
+    }
+
+    /**
+     * obtain: Read the version properties and generate the full version.
+     *
+     * @return String or null if the version properties could not be read
+     */
+    @Override
+    public String obtain() {
+        final Parameters parameters = getParameters();
+
+        try {
+            final File file = parameters.getVersionFile().get().getAsFile();
+            final String versionSource = parameters.getVersionSource().getOrNull();
+            final Properties prop = getLocalVersionProperties(file, versionSource);
+
+            final File rootDir = parameters.getRootDirectory().get().getAsFile();
+            final SemanticVersion localVersion = getLocalVersion(prop, versionSource, rootDir);
+
+            // A build number allocated by the plugin (`local-counter` or `server`) replaces the ENV VAR, there is only
+            // one for a remote build
+            final Integer allocatedBuildNumber = parameters.getRemoteBuild().get() ? parameters.getAllocatedBuildNumber().getOrNull() : null;
+
+            return generateVersion(localVersion, parameters.getRemoteBuild().get(), parameters.getArtifactType().getOrNull(),
+                    parameters.getIncludeReleaseTag().get(), parameters.getIncludeBuildNumber().get(),
+                    allocatedBuildNumber != null ? null : parameters.getCiBuildNumberEnvVarName().getOrNull(),
+                    getFallbackBuildNumber(allocatedBuildNumber, parameters.getCommitDistanceBuildNumber().getOrElse(false),
+                            localVersion, rootDir)).toString();
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.benrhine.plugins.v1.services;
+
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalProperties;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersion;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.setLocalVersion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import com.benrhine.plugins.v1.SemanticVersion;
+import com.benrhine.plugins.v1.buildnumber.BuildNumberProvider;
+import com.benrhine.plugins.v1.util.AtomicFiles;
+import com.benrhine.plugins.v1.util.OrderedProperties;
+import com.benrhine.plugins.v1.util.PropertiesFileEditor;
+import com.benrhine.plugins.v1.util.VersionFileLock;
+import com.benrhine.plugins.v1.util.VersionPropertiesScanner;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.services.BuildServiceRegistration;
+import org.gradle.tooling.events.FailureResult;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionFileService: Build service shared by every project in the build that owns the parsed state of each distinct
+ * version properties file. Each file is scanned a single time for its version keys and every project is handed the same
+ * read only snapshot.
+ * Changes made during configuration and the version changes of the tasks (see {@link #updateVersion}) are collected
+ * and flushed at most once per file when the build finishes, the version changes only if no task failed. Computed
+ * versions are also shared, so projects that resolve the version from the same source compute it only once. The build
+ * number of a remote build is allocated by the service (see {@link #allocateBuildNumber}), once per build and counter.
+ * Every project registers its version file with the service, which is how the root project learns about the modules of
+ * the build without accessing the other projects. The service also collects the phase timings of the plugin (see
+ * {@link VersionMetrics}) and, only when asked to with `-Pversioning.report=true`, writes them to
+ * `reports/versioning/versioning.json` in the build directory of the root project when the build finishes.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public abstract class VersionFileService implements BuildService<VersionFileService.Parameters>, AutoCloseable,
+        OperationCompletionListener {
+    public static final String NAME = "semanticVersioningWithBuildNumber";
+    public static final String REPORT_PATH = "reports/versioning";
+    public static final String REPORT_FILE_NAME = "versioning.json";
+    public static final String REPORT_PROPERTY = "versioning.report";
+    public static final String SUMMARY_PROPERTY = "versioning.summary";
+    private static final long FLUSH_LOCK_TIMEOUT_MILLIS = 30_000;
+    private static final String[] NUMBER_KEYS = {"major", "minor", "patch"};
+
+    private final Map<String, Properties> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> pendingChanges = new ConcurrentHashMap<>();
+    private final Map<String, PendingVersion> pendingVersions = new ConcurrentHashMap<>();
+    private final Map<String, String> versions = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Integer>> buildNumbers = new ConcurrentHashMap<>();
+    private final Map<String, File> modules = new ConcurrentHashMap<>();
+    private final VersionMetrics metrics = new VersionMetrics();
+    private volatile boolean taskFailed;
+
+    /**
+     * Parameters: If and where the timing report is written and if a summary is printed to the console.
+     */
+    public interface Parameters extends BuildServiceParameters {
+        Property<Boolean> getWriteReport();
+
+        DirectoryProperty getReportDirectory();
+
+        Property<Boolean> getConsoleSummary();
+    }
+
+    /**
+     * register: Register the service for the build, or return the already registered one. `-Pversioning.report=true`
+     * writes the timing report and `-Pversioning.summary=true` prints a one line summary. The report is written to the
+     * build directory of the root project (see {@link #setReportDirectory}), or to `build/reports/versioning` of the root
+     * directory if the plugin is not applied to the root project.
+     *
+     * @param gradle Gradle
+     * @param rootDir File the root directory of the build
+     * @param providers ProviderFactory
+     * @return Provider
+     */
+    public static Provider<VersionFileService> register(final Gradle gradle, final File rootDir, final ProviderFactory providers) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, VersionFileService.class, spec -> {
+            spec.getParameters().getWriteReport().set(providers.gradleProperty(REPORT_PROPERTY).map(Boolean::parseBoolean).orElse(false));
+            spec.getParameters().getReportDirectory().set(new File(rootDir, "build/" + REPORT_PATH));
+            spec.getParameters().getConsoleSummary().set(providers.gradleProperty(SUMMARY_PROPERTY).map(Boolean::parseBoolean).orElse(false));
+        });
+    }
+
+    /**
+     * setReportDirectory: Write the timing report to the given build directory, the root project hands in its own so a
+     * customized `layout.buildDirectory` is honored. Has to be called before the service is first used.
+     *
+     * @param gradle Gradle
+     * @param buildDirectory Provider the build directory of the root project
+     */
+    public static void setReportDirectory(final Gradle gradle, final Provider<Directory> buildDirectory) {
+        final BuildServiceRegistration<?, ?> registration = gradle.getSharedServices().getRegistrations().getByName(NAME);
+
+        ((Parameters) registration.getParameters()).getReportDirectory().set(buildDirectory.map(directory -> directory.dir(REPORT_PATH)));
+    }
+
+    /**
+     * getMetrics: The phase timings of this build.
+     *
+     * @return VersionMetrics
+     */
+    public VersionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * getSnapshot: Return the read only snapshot of the version keys of the given version properties file, scanning it
+     * on first use (see {@link VersionPropertiesScanner}).
+     *
+     * @param file File
+     * @return Properties
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The timer is not referenced in the block
+    public Properties getSnapshot(final File file) throws IOException {
+        try {
+            return snapshots.computeIfAbsent(file.getAbsolutePath(), path -> {
+                try (VersionMetrics.Timer timer = metrics.forBuild().start(VersionMetrics.Phase.GET_LOCAL_PROPERTIES)) {
+                    final Properties prop = VersionPropertiesScanner.scan(new File(path));
+                    metrics.forBuild().addBytesRead(new File(path).length());
+                    return prop;
+                } catch (final IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (final UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * getVersion: Return the version computed for the given version source, only computing it through the provider
+     * the first time the version source is seen.
+     *
+     * @param key String uniquely identifying the version file and the configuration used to compute the version
+     * @param provider Provider computing the version
+     * @return String or null if the version could not be computed
+     */
+    public String getVersion(final String key, final Provider<String> provider) {
+        return versions.computeIfAbsent(key, k -> provider.getOrNull());
+    }
+
+    /**
+     * allocateBuildNumber: Allocate the build number of the given counter, only the first time the counter is used.
+     * Every project and task of the build shares the one build number. Only called for remote builds, a local build
+     * never uses up a number.
+     *
+     * @param key String uniquely identifying the counter
+     * @param factory Supplier creating the provider that allocates the build number
+     * @return Integer or null if no build number could be allocated
+     */
+    public Integer allocateBuildNumber(final String key, final Supplier<BuildNumberProvider> factory) {
+        return buildNumbers.computeIfAbsent(key, k -> {
+            try {
+                return Optional.of(factory.get().nextBuildNumber());
+            } catch (final IOException | IllegalArgumentException ex) {
+                System.out.println("Warning: Could not allocate a build number - " + ex.getMessage());
+                ex.printStackTrace();
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * registerModule: Register the version file of a project once its `versionConfig` block has been configured.
+     *
+     * @param path String the project path
+     * @param file File
+     */
+    public void registerModule(final String path, final File file) {
+        modules.put(path, file);
+    }
+
+    /**
+     * getModules: The version file of every project registered so far, by project path.
+     *
+     * @return Map
+     */
+    public Map<String, File> getModules() {
+        return Collections.unmodifiableMap(new TreeMap<>(modules));
+    }
+
+    /**
+     * setProperty: Record a change to the given version properties file, the change is written when the build finishes.
+     *
+     * @param file File
+     * @param key String
+     * @param value String
+     */
+    public void setProperty(final File file, final String key, final String value) {
+        final Map<String, String> changes = pendingChanges.computeIfAbsent(file.getAbsolutePath(), path -> new LinkedHashMap<>());
+
+        synchronized (changes) {
+            changes.put(key, value);
+        }
+    }
+
+    /**
+     * VersionUpdate: Change applied to the stored version, by the version tasks and `bumpVersions`.
+     */
+    public interface VersionUpdate {
+        SemanticVersion apply(SemanticVersion version);
+    }
+
+    /**
+     * updateVersion: Change the version of the given version properties file in memory. The file is written once when
+     * the build finishes, by applying every change of the build in order to its then current content, so a version
+     * changed by another build in the meantime is not lost. If any task of the build fails the changes are discarded.
+     *
+     * @param file File
+     * @param update VersionUpdate
+     * @param lockTimeoutMillis long how long to wait for the version file lock when the changes are written
+     * @return Properties the version properties after the change
+     * @throws IOException an Exception
+     */
+    public Properties updateVersion(final File file, final VersionUpdate update, final long lockTimeoutMillis) throws IOException {
+        final PendingVersion pending = getPendingVersion(file);
+
+        synchronized (pending) {
+            setLocalVersion(pending.properties, update.apply(getLocalVersion(pending.properties)));
+            pending.updates.add(update);
+            pending.lockTimeoutMillis = Math.max(pending.lockTimeoutMillis, lockTimeoutMillis);
+            return pending.properties.asReadOnly();
+        }
+    }
+
+    /**
+     * setVersionProperty: Change a key of the given version properties file together with its version. Unlike
+     * {@link #setProperty} the change is written with the version changes and discarded with them if any task of the
+     * build fails.
+     *
+     * @param file File
+     * @param key String
+     * @param value String
+     * @param lockTimeoutMillis long how long to wait for the version file lock when the changes are written
+     * @throws IOException an Exception
+     */
+    public void setVersionProperty(final File file, final String key, final String value, final long lockTimeoutMillis) throws IOException {
+        final PendingVersion pending = getPendingVersion(file);
+
+        synchronized (pending) {
+            pending.properties.setProperty(key, value);
+            pending.changes.put(key, value);
+            pending.lockTimeoutMillis = Math.max(pending.lockTimeoutMillis, lockTimeoutMillis);
+        }
+    }
+
+    /**
+     * getPendingVersion: The pending changes of the given file, created from its current content on first use.
+     */
+    private PendingVersion getPendingVersion(final File file) throws IOException {
+        try {
+            return pendingVersions.computeIfAbsent(file.getAbsolutePath(), path -> {
+                try {
+                    return new PendingVersion((OrderedProperties) getLocalProperties(path));
+                } catch (final IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (final UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * getPendingProperties: The version properties of the given file including the version changes not written yet.
+     *
+     * @param file File
+     * @return OrderedProperties read only or null if the version of the file was not changed in this build
+     */
+    public OrderedProperties getPendingProperties(final File file) {
+        final PendingVersion pending = pendingVersions.get(file.getAbsolutePath());
+
+        if (pending == null) {
+            return null;
+        }
+        synchronized (pending) {
+            return pending.properties.asReadOnly();
+        }
+    }
+
+    /**
+     * whenVersionPersisted: Run the given action once the version changes of the given file were written, it is not
+     * run if they are discarded.
+     *
+     * @param file File
+     * @param action Runnable
+     */
+    public void whenVersionPersisted(final File file, final Runnable action) {
+        final PendingVersion pending = pendingVersions.get(file.getAbsolutePath());
+
+        if (pending == null) {
+            action.run();
+            return;
+        }
+        synchronized (pending) {
+            pending.persistedActions.add(action);
+        }
+    }
+
+    /**
+     * onFinish: Remember if a task failed, the version changes of the build are then discarded.
+     *
+     * @param event FinishEvent
+     */
+    @Override
+    public void onFinish(final FinishEvent event) {
+        if (event.getResult() instanceof FailureResult) {
+            taskFailed = true;
+        }
+    }
+
+    /**
+     * close: Flush the recorded changes, once per file. Only the changed keys are patched into the current file so any
+     * change made by another build is kept, and the file is only written if a value actually changed. Then write the
+     * timing report.
+     */
+    @Override
+    public void close() {
+        if (taskFailed && !pendingVersions.isEmpty()) {
+            System.out.println("Warning: The build failed - discarding the version changes of " + pendingVersions.size() + " version file(s)");
+        }
+        final TreeSet<String> paths = new TreeSet<>(pendingChanges.keySet());
+        paths.addAll(pendingVersions.keySet());
+
+        for (final String path : paths) {
+            try {
+                flush(new File(path), pendingChanges.get(path), taskFailed ? null : pendingVersions.get(path));
+            } catch (final IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        writeReport();
+        pendingChanges.clear();
+        pendingVersions.clear();
+        snapshots.clear();
+        versions.clear();
+        buildNumbers.clear();
+    }
+
+    /**
+     * flush: Write the changed keys and the changed version of a file in a single write.
+     */
+    @SuppressWarnings("try") // The timer is not referenced in the block
+    private void flush(final File file, final Map<String, String> pendingChanges, final PendingVersion pending) throws IOException {
+        final Map<String, String> changes = new LinkedHashMap<>();
+
+        if (pendingChanges != null) {
+            synchronized (pendingChanges) {
+                changes.putAll(pendingChanges);
+            }
+        }
+        if (changes.isEmpty() && pending == null) {
+            return;
+        }
+        final List<Runnable> persistedActions = new ArrayList<>();
+        final long lockTimeoutMillis = pending != null ? Math.max(FLUSH_LOCK_TIMEOUT_MILLIS, pending.lockTimeoutMillis) : FLUSH_LOCK_TIMEOUT_MILLIS;
+
+        try (VersionFileLock lock = metrics.forBuild().acquireLock(file, lockTimeoutMillis);
+             VersionMetrics.Timer timer = metrics.forBuild().start(VersionMetrics.Phase.WRITE_LOCAL_PROPERTIES)) {
+            if (lock.getWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(100)) {
+                System.out.println("Waited " + TimeUnit.NANOSECONDS.toMillis(lock.getWaitNanos()) + "ms for another build to update " + file.getName());
+            }
+            if (pending != null) {
+                final Properties current = getLocalProperties(file.getPath());
+
+                synchronized (pending) {
+                    SemanticVersion version = getLocalVersion(current);
+
+                    for (final VersionUpdate update : pending.updates) {
+                        version = update.apply(version);
+                    }
+                    setLocalVersion(current, version);
+                    for (final String key : NUMBER_KEYS) {
+                        changes.put(key, current.getProperty(key));
+                    }
+                    changes.putAll(pending.changes);
+                    persistedActions.addAll(pending.persistedActions);
+                }
+            }
+            if (PropertiesFileEditor.patch(file, changes)) {
+                metrics.forBuild().addBytesWritten(file.length());
+            }
+        }
+        for (final Runnable action : persistedActions) {
+            action.run();
+        }
+    }
+
+    /**
+     * writeReport: Write the timing report and optionally print the summary.
+     */
+    private void writeReport() {
+        final Parameters parameters = getParameters();
+
+        // There are no parameters when the service is not created by Gradle
+        if (parameters == null || metrics.isEmpty()) {
+            return;
+        }
+        final File directory = parameters.getReportDirectory().getAsFile().getOrNull();
+
+        // The report is only written when asked for, a build that changes nothing writes nothing
+        if (parameters.getWriteReport().getOrElse(false) && directory != null) {
+            try {
+                Files.createDirectories(directory.toPath());
+                AtomicFiles.write(new File(directory, REPORT_FILE_NAME).toPath(), metrics.toJson().getBytes(StandardCharsets.UTF_8));
+            } catch (final IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        if (parameters.getConsoleSummary().getOrElse(false)) {
+            System.out.println(metrics.toSummary());
+        }
+    }
+
+    /**
+     * PendingVersion: The version changes of a version file that are not written yet.
+     */
+    private static final class PendingVersion {
+        private final OrderedProperties properties;
+        private final List<VersionUpdate> updates = new ArrayList<>();
+        private final Map<String, String> changes = new LinkedHashMap<>();
+        private final List<Runnable> persistedActions = new ArrayList<>();
+        private long lockTimeoutMillis;
+
+        private PendingVersion(final OrderedProperties properties) {
+            this.properties = properties;
+        }
+    }
+}
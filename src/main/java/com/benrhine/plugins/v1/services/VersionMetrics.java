@@ -0,0 +1,366 @@
+package com.benrhine.plugins.v1.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import com.benrhine.plugins.v1.util.VersionFileLock;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionMetrics: Time spent in each phase of the plugin, bytes read from / written to the version properties files and
+ * time spent waiting for the version file lock, recorded per project, per task and for the work the build service does
+ * on behalf of the whole build. The metrics are owned by the {@link VersionFileService} which writes them as a JSON
+ * report when the build finishes.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionMetrics {
+    /**
+     * Recorder whose values are never reported, used when there is no build service to report to
+     */
+    public static final Recorder NONE = new Recorder();
+
+    private final Recorder build = new Recorder();
+    private final Map<String, Recorder> projects = new ConcurrentHashMap<>();
+    private final Map<String, Recorder> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Phase: The instrumented phases of the plugin.
+     */
+    public enum Phase {
+        GET_LOCAL_PROPERTIES("getLocalProperties"),
+        LOAD_LOCAL_PROPERTIES_TO_PROJECT_PROPERTIES("loadLocalPropertiesToProjectProperties"),
+        GET_EXTENSION_DEFINED_REMOTE_BUILD("getExtensionDefinedRemoteBuild"),
+        GENERATE_VERSION("generateVersion"),
+        WRITE_LOCAL_PROPERTIES("writeLocalProperties");
+
+        private final String label;
+
+        Phase(final String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * forBuild: Recorder for work done once for the whole build.
+     *
+     * @return Recorder
+     */
+    public Recorder forBuild() {
+        return build;
+    }
+
+    /**
+     * forProject: Recorder of the given project.
+     *
+     * @param path String the project path
+     * @return Recorder
+     */
+    public Recorder forProject(final String path) {
+        return projects.computeIfAbsent(path, p -> new Recorder());
+    }
+
+    /**
+     * forTask: Recorder of the given task.
+     *
+     * @param path String the task path
+     * @return Recorder
+     */
+    public Recorder forTask(final String path) {
+        return tasks.computeIfAbsent(path, p -> new Recorder());
+    }
+
+    /**
+     * isEmpty: Was nothing recorded at all.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return build.isEmpty() && projects.isEmpty() && tasks.isEmpty();
+    }
+
+    /**
+     * total: Sum of all the recorders.
+     *
+     * @return Recorder
+     */
+    public Recorder total() {
+        final Recorder total = new Recorder();
+        total.add(build);
+        for (final Recorder recorder : projects.values()) {
+            total.add(recorder);
+        }
+        for (final Recorder recorder : tasks.values()) {
+            total.add(recorder);
+        }
+        return total;
+    }
+
+    /**
+     * toJson: The JSON report, projects and tasks are sorted by path.
+     *
+     * @return String
+     */
+    public String toJson() {
+        final StringBuilder json = new StringBuilder(256 + 256 * (projects.size() + tasks.size()));
+        json.append("{\n  \"total\": ");
+        total().appendJson(json, "  ");
+        json.append(",\n  \"build\": ");
+        build.appendJson(json, "  ");
+        json.append(",\n  \"projects\": ");
+        appendJson(json, projects);
+        json.append(",\n  \"tasks\": ");
+        appendJson(json, tasks);
+        return json.append("\n}\n").toString();
+    }
+
+    /**
+     * toSummary: One line summary of the totals.
+     *
+     * @return String
+     */
+    public String toSummary() {
+        final Recorder total = total();
+        final StringBuilder summary = new StringBuilder("Versioning: ")
+                .append(TimeUnit.NANOSECONDS.toMillis(total.getTotalNanos())).append("ms over ")
+                .append(projects.size()).append(projects.size() == 1 ? " project" : " projects").append(" and ")
+                .append(tasks.size()).append(tasks.size() == 1 ? " task" : " tasks").append(" (");
+
+        for (final Phase phase : Phase.values()) {
+            summary.append(phase.getLabel()).append(' ').append(TimeUnit.NANOSECONDS.toMillis(total.getNanos(phase))).append("ms, ");
+        }
+        summary.append(total.getBytesRead()).append(" bytes read, ")
+                .append(total.getBytesWritten()).append(" bytes written");
+
+        if (total.getLocksAcquired() > 0 || total.getLockTimeouts() > 0) {
+            summary.append(", ").append(TimeUnit.NANOSECONDS.toMillis(total.getLockWaitNanos())).append("ms waiting for ")
+                    .append(total.getLocksContended()).append(" of ").append(total.getLocksAcquired() + total.getLockTimeouts())
+                    .append(" version file locks");
+        }
+        return summary.append(')').toString();
+    }
+
+    private static void appendJson(final StringBuilder json, final Map<String, Recorder> recorders) {
+        if (recorders.isEmpty()) {
+            json.append("{}");
+            return;
+        }
+        json.append('{');
+        String separator = "\n";
+
+        for (final Map.Entry<String, Recorder> entry : new TreeMap<>(recorders).entrySet()) {
+            json.append(separator).append("    ");
+            appendString(json, entry.getKey());
+            json.append(": ");
+            entry.getValue().appendJson(json, "    ");
+            separator = ",\n";
+        }
+        json.append("\n  }");
+    }
+
+    private static void appendString(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Recorder: Thread safe phase timings and byte counts of a single project, task or the build.
+     */
+    public static final class Recorder {
+        private final AtomicLongArray counts = new AtomicLongArray(Phase.values().length);
+        private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicLong locksAcquired = new AtomicLong();
+        private final AtomicLong locksContended = new AtomicLong();
+        private final AtomicLong lockTimeouts = new AtomicLong();
+        private final AtomicLong lockWaitNanos = new AtomicLong();
+        private final AtomicLong maxLockWaitNanos = new AtomicLong();
+
+        /**
+         * start: Start timing the given phase, the time is recorded when the returned timer is closed.
+         *
+         * @param phase Phase
+         * @return Timer
+         */
+        public Timer start(final Phase phase) {
+            return new Timer(this, phase, System.nanoTime());
+        }
+
+        /**
+         * acquireLock: Acquire the lock of the given version file (see {@link VersionFileLock}), recording how long it
+         * took, if another build or thread held it, and if waiting for it timed out.
+         *
+         * @param file File
+         * @param timeoutMillis long
+         * @return VersionFileLock
+         * @throws IOException an Exception, a {@link VersionFileLock.LockTimeoutException} if the timeout expired
+         */
+        public VersionFileLock acquireLock(final File file, final long timeoutMillis) throws IOException {
+            final long start = System.nanoTime();
+
+            try {
+                final VersionFileLock lock = VersionFileLock.acquire(file, timeoutMillis);
+                recordLock(lock.getWaitNanos(), lock.isContended());
+                return lock;
+            } catch (final VersionFileLock.LockTimeoutException ex) {
+                lockTimeouts.incrementAndGet();
+                lockWaitNanos.addAndGet(System.nanoTime() - start);
+                throw ex;
+            }
+        }
+
+        public void addBytesRead(final long bytes) {
+            bytesRead.addAndGet(bytes);
+        }
+
+        public void addBytesWritten(final long bytes) {
+            bytesWritten.addAndGet(bytes);
+        }
+
+        public long getCount(final Phase phase) {
+            return counts.get(phase.ordinal());
+        }
+
+        public long getNanos(final Phase phase) {
+            return nanos.get(phase.ordinal());
+        }
+
+        public long getTotalNanos() {
+            long total = 0;
+            for (int i = 0; i < nanos.length(); i++) {
+                total += nanos.get(i);
+            }
+            return total;
+        }
+
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+        public long getLocksAcquired() {
+            return locksAcquired.get();
+        }
+
+        public long getLocksContended() {
+            return locksContended.get();
+        }
+
+        public long getLockTimeouts() {
+            return lockTimeouts.get();
+        }
+
+        public long getLockWaitNanos() {
+            return lockWaitNanos.get();
+        }
+
+        public long getMaxLockWaitNanos() {
+            return maxLockWaitNanos.get();
+        }
+
+        private void record(final Phase phase, final long elapsedNanos) {
+            counts.incrementAndGet(phase.ordinal());
+            nanos.addAndGet(phase.ordinal(), elapsedNanos);
+        }
+
+        private void recordLock(final long waitNanos, final boolean contended) {
+            locksAcquired.incrementAndGet();
+            if (contended) {
+                locksContended.incrementAndGet();
+            }
+            lockWaitNanos.addAndGet(waitNanos);
+            maxLockWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        private boolean isEmpty() {
+            for (int i = 0; i < counts.length(); i++) {
+                if (counts.get(i) != 0) {
+                    return false;
+                }
+            }
+            return bytesRead.get() == 0 && bytesWritten.get() == 0 && locksAcquired.get() == 0 && lockTimeouts.get() == 0;
+        }
+
+        private void add(final Recorder other) {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.addAndGet(i, other.counts.get(i));
+                nanos.addAndGet(i, other.nanos.get(i));
+            }
+            bytesRead.addAndGet(other.bytesRead.get());
+            bytesWritten.addAndGet(other.bytesWritten.get());
+            locksAcquired.addAndGet(other.locksAcquired.get());
+            locksContended.addAndGet(other.locksContended.get());
+            lockTimeouts.addAndGet(other.lockTimeouts.get());
+            lockWaitNanos.addAndGet(other.lockWaitNanos.get());
+            maxLockWaitNanos.accumulateAndGet(other.maxLockWaitNanos.get(), Math::max);
+        }
+
+        private void appendJson(final StringBuilder json, final String indent) {
+            json.append("{\n").append(indent).append("  \"phases\": {");
+            String separator = "\n";
+
+            for (final Phase phase : Phase.values()) {
+                final long count = getCount(phase);
+
+                if (count > 0) {
+                    json.append(separator).append(indent).append("    \"").append(phase.getLabel()).append("\": {\"count\": ")
+                            .append(count).append(", \"nanos\": ").append(getNanos(phase)).append('}');
+                    separator = ",\n";
+                }
+            }
+            json.append(separator.equals("\n") ? "}" : "\n" + indent + "  }");
+            json.append(",\n").append(indent).append("  \"totalNanos\": ").append(getTotalNanos())
+                    .append(",\n").append(indent).append("  \"bytesRead\": ").append(getBytesRead())
+                    .append(",\n").append(indent).append("  \"bytesWritten\": ").append(getBytesWritten());
+
+            if (getLocksAcquired() > 0 || getLockTimeouts() > 0) {
+                json.append(",\n").append(indent).append("  \"lock\": {\"acquired\": ").append(getLocksAcquired())
+                        .append(", \"contended\": ").append(getLocksContended())
+                        .append(", \"timeouts\": ").append(getLockTimeouts())
+                        .append(", \"waitNanos\": ").append(getLockWaitNanos())
+                        .append(", \"maxWaitNanos\": ").append(getMaxLockWaitNanos()).append('}');
+            }
+            json.append('\n').append(indent).append('}');
+        }
+    }
+
+    /**
+     * Timer: Times a single phase, to be used with try-with-resources.
+     */
+    public static final class Timer implements AutoCloseable {
+        private final Recorder recorder;
+        private final Phase phase;
+        private final long start;
+
+        private Timer(final Recorder recorder, final Phase phase, final long start) {
+            this.recorder = recorder;
+            this.phase = phase;
+            this.start = start;
+        }
+
+        @Override
+        public void close() {
+            recorder.record(phase, System.nanoTime() - start);
+        }
+    }
+}
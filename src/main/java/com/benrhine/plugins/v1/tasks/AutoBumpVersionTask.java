@@ -0,0 +1,98 @@
+package com.benrhine.plugins.v1.tasks;
+
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.benrhine.plugins.v1.SemanticVersion;
+import com.benrhine.plugins.v1.tasks.base.VersionTask;
+import com.benrhine.plugins.v1.util.SourceHashCache;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * AutoBumpVersionTask: Increment the patch version, exactly like {@link IncrementPatchVersionTask}, but only if the
+ * content of the module's sources changed since the version was last recorded. The recorded version and source digest
+ * of every module are kept in its version file under `source-digest.<module>`, so they are committed with the version
+ * and shared by every checkout. Only the per file hash cache (see {@link SourceHashCache}) that makes checking an
+ * unchanged module cheap is kept in `.gradle/semantic-versioning/` of the root project.
+ * <p>
+ * The first run of a module, or a run after the version was changed by other means, only records the current version
+ * and digest as the baseline.
+ * ------------------------------------------------------------------------------------------------------------------ */
+@UntrackedTask(because = "Changes the version file it reads")
+public abstract class AutoBumpVersionTask extends VersionTask {
+    private static final String RECORD_KEY_PREFIX = "source-digest.";
+
+    /**
+     * getSourceDirectories: The directories whose content is watched, by default `src/main` of the project.
+     *
+     * @return ConfigurableFileCollection
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getSourceDirectories();
+
+    /**
+     * getStateDirectory: Where the hash caches are kept.
+     *
+     * @return DirectoryProperty
+     */
+    @Internal
+    public abstract DirectoryProperty getStateDirectory();
+
+    /**
+     * getModuleName: The name the record and hash cache of this module are kept under, derived from the project path.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<String> getModuleName();
+
+    /**
+     * autoBumpVersion: Task that executes incrementing the patch version if the sources changed.
+     */
+    @TaskAction
+    public void autoBumpVersion() {
+        checkVersionFileSource();
+        final String recordKey = RECORD_KEY_PREFIX + getModuleName().get();
+
+        try {
+            final SourceHashCache cache = SourceHashCache.load(new File(getStateDirectory().get().getAsFile(), getModuleName().get() + ".hashes"));
+            final List<File> roots = new ArrayList<>(getSourceDirectories().getFiles());
+            final String digest = cache.digest(roots);
+            // The record is "<version> <digest>"
+            final String[] record = String.valueOf(readVersionProperty(recordKey)).split(" ", 2);
+            final SemanticVersion current = release(getLocalVersion(readVersionProperties()));
+
+            if (record.length < 2 || !current.toString().equals(record[0])) {
+                setVersionProperty(recordKey, current + " " + digest);
+                System.out.println("Recorded " + current + " as the baseline of " + getModuleName().get());
+            } else if (digest.equals(record[1])) {
+                System.out.println("No changes since " + current + " (" + cache.getHashedFiles() + " files hashed)");
+            } else {
+                final SemanticVersion[] bumped = new SemanticVersion[1];
+                final SemanticVersion version = updateVersion(stored -> {
+                    // Increment the patch version
+                    bumped[0] = stored.withPatch(stored.getPatch() + 1);
+                    return bumped[0];
+                });
+                // The record is written together with the version, so it never gets ahead of it
+                setVersionProperty(recordKey, release(bumped[0]) + " " + digest);
+                System.out.println(version);
+            }
+            cache.save();
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static SemanticVersion release(final SemanticVersion version) {
+        return SemanticVersion.of(version.getMajor(), version.getMinor(), version.getPatch());
+    }
+}
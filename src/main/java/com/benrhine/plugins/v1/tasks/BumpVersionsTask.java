@@ -0,0 +1,209 @@
+package com.benrhine.plugins.v1.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import com.benrhine.plugins.v1.SemanticVersion;
+import com.benrhine.plugins.v1.services.VersionFileService;
+import com.benrhine.plugins.v1.tasks.base.VersionTask;
+import com.benrhine.plugins.v1.util.VersionFileBatch;
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+import org.gradle.api.tasks.options.Option;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * BumpVersionsTask: Increment the version of many modules in one pass, e.g.
+ * `./gradlew bumpVersions --level=minor --modules=:app,:lib`. Like every other version change the bumped versions are
+ * kept by the {@link VersionFileService} and written when the build finishes, so either every selected module is bumped
+ * or, if any task of the build fails, none is. Without the service the version files are replaced together right away
+ * (see {@link VersionFileBatch}). Modules sharing a version file bump it once.
+ * ------------------------------------------------------------------------------------------------------------------ */
+@UntrackedTask(because = "Changes the version file it reads")
+public abstract class BumpVersionsTask extends VersionTask {
+    private static final List<String> LEVELS = Arrays.asList("major", "minor", "patch");
+
+    /**
+     * getModules: Every module that can be bumped, project path to version file. By default every project of the build
+     * that applies the plugin.
+     *
+     * @return MapProperty
+     */
+    @Internal
+    public abstract MapProperty<String, File> getModules();
+
+    /**
+     * getSelectedModules: Comma separated project paths of the modules to bump, all modules if not set.
+     *
+     * @return Property
+     */
+    @Internal
+    @Option(option = "modules", description = "Comma separated project paths of the modules to bump, default all")
+    public abstract Property<String> getSelectedModules();
+
+    /**
+     * getLevel: The portion of the version to increment, `major`, `minor` or `patch`.
+     *
+     * @return Property
+     */
+    @Internal
+    @Option(option = "level", description = "The portion of the version to increment: major, minor or patch (default)")
+    public abstract Property<String> getLevel();
+
+    /**
+     * getMaxParallelFiles: How many version files are read and written at the same time.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<Integer> getMaxParallelFiles();
+
+    /**
+     * bumpVersions: Task that executes incrementing the version of every selected module.
+     */
+    @TaskAction
+    public void bumpVersions() {
+        checkVersionFileSource();
+        final String level = getLevel().get();
+
+        if (!LEVELS.contains(level)) {
+            throw new GradleException("Unsupported level '" + level + "', expected one of " + LEVELS);
+        }
+        final Map<String, File> modules = selectModules();
+        final VersionFileBatch.Update update = current -> {
+            switch (level) {
+                case "major":
+                    return current.withMajor(current.getMajor() + 1);
+                case "minor":
+                    return current.withMinor(current.getMinor() + 1);
+                default:
+                    return current.withPatch(current.getPatch() + 1);
+            }
+        };
+        final Map<File, VersionFileBatch.Result> results;
+
+        try {
+            results = getVersionFileService().isPresent() ? updateLater(modules.values(), update) :
+                    VersionFileBatch.update(modules.values(), update, getMaxParallelFiles().get(),
+                            TimeUnit.SECONDS.toMillis(getLockTimeoutSeconds().get()));
+        } catch (final IOException ex) {
+            throw new GradleException("Bumping the version of " + modules.size() + " modules failed, no version file was changed", ex);
+        }
+        for (final Map.Entry<String, File> module : modules.entrySet()) {
+            final VersionFileBatch.Result result = results.get(module.getValue().getAbsoluteFile());
+            System.out.println(module.getKey() + " " + result.getOldVersion() + " -> " + result.getNewVersion());
+        }
+    }
+
+    /**
+     * updateLater: Apply the update to every version file through the {@link VersionFileService}, the files are read in
+     * parallel and only written when the build finishes.
+     *
+     * @return Map of version file to its result
+     */
+    private Map<File, VersionFileBatch.Result> updateLater(final Collection<File> files, final VersionFileBatch.Update update)
+            throws IOException {
+        final VersionFileService service = getVersionFileService().get();
+        final long lockTimeoutMillis = TimeUnit.SECONDS.toMillis(getLockTimeoutSeconds().get());
+        final TreeSet<File> sorted = new TreeSet<>();
+
+        for (final File file : files) {
+            sorted.add(file.getAbsoluteFile());
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(getMaxParallelFiles().get(), sorted.size())));
+
+        try {
+            final Map<File, Future<VersionFileBatch.Result>> futures = new LinkedHashMap<>();
+
+            for (final File file : sorted) {
+                futures.put(file, executor.submit(() -> {
+                    final SemanticVersion[] versions = new SemanticVersion[2];
+                    service.updateVersion(file, stored -> {
+                        // Applied again to the then current version when the file is written, keep the first result
+                        final SemanticVersion bumped = update.apply(stored);
+                        if (versions[0] == null) {
+                            versions[0] = stored;
+                            versions[1] = bumped;
+                        }
+                        return bumped;
+                    }, lockTimeoutMillis);
+                    return new VersionFileBatch.Result(versions[0], versions[1]);
+                }));
+            }
+            final Map<File, VersionFileBatch.Result> results = new LinkedHashMap<>();
+
+            for (final Map.Entry<File, Future<VersionFileBatch.Result>> future : futures.entrySet()) {
+                try {
+                    results.put(future.getKey(), future.getValue().get());
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while bumping " + future.getKey(), ex);
+                } catch (final ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        throw (IOException) ex.getCause();
+                    }
+                    throw new IOException("Could not bump " + future.getKey(), ex.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * selectModules: The modules to bump in project path order.
+     *
+     * @return Map of project path to version file
+     */
+    private Map<String, File> selectModules() {
+        final Map<String, File> modules = getModules().get();
+
+        if (modules.isEmpty()) {
+            throw new GradleException("No modules registered, apply the plugin to the projects whose version should be bumped");
+        }
+        if (!getSelectedModules().isPresent()) {
+            return modules;
+        }
+        final Set<String> selected = new LinkedHashSet<>();
+        final List<String> unknown = new ArrayList<>();
+
+        for (final String module : getSelectedModules().get().split(",")) {
+            final String path = module.trim();
+
+            if (!path.isEmpty()) {
+                if (modules.containsKey(path)) {
+                    selected.add(path);
+                } else {
+                    unknown.add(path);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new GradleException("Unknown modules " + unknown + ", expected any of " + modules.keySet());
+        }
+        final Map<String, File> result = new LinkedHashMap<>();
+        for (final Map.Entry<String, File> module : modules.entrySet()) {
+            if (selected.contains(module.getKey())) {
+                result.put(module.getKey(), module.getValue());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,170 @@
+package com.benrhine.plugins.v1.tasks;
+
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension;
+import com.benrhine.plugins.v1.tasks.base.VersionTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * ComputeVersionTask: Compute the full version and write it to a file, e.g. `build/semantic-versioning/version.txt`.
+ * Everything the version depends on is declared as a task input, so the task is up-to-date (or loaded from the build
+ * cache) as long as neither the version file, the `versionConfig` values nor the build number changed. Tasks that
+ * consume the version should use {@link #getOutputFile()} or {@link #getComputedVersion()} as their input, they are
+ * then up-to-date as well whenever the version did not change.
+ * <p>
+ * A version that depends on the git history (`versionSource = "git-tag"` or `commitDistanceBuildNumber`) is computed
+ * on every run.
+ * ------------------------------------------------------------------------------------------------------------------ */
+@CacheableTask
+public abstract class ComputeVersionTask extends VersionTask {
+
+    /**
+     * getVersionFile: The properties file the version is read from, it may not exist for the `git-tag` version source.
+     *
+     * @return RegularFileProperty
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    @Override
+    public abstract RegularFileProperty getVersionFile();
+
+    @Input
+    @Override
+    public abstract Property<Boolean> getRemoteBuild();
+
+    @Input
+    @Override
+    public abstract Property<Boolean> getIncludeReleaseTag();
+
+    @Input
+    @Override
+    public abstract Property<Boolean> getIncludeBuildNumber();
+
+    @Input
+    @Optional
+    @Override
+    public abstract Property<String> getCiBuildNumberEnvVarName();
+
+    @Input
+    @Override
+    public abstract Property<Boolean> getCommitDistanceBuildNumber();
+
+    @Input
+    @Optional
+    @Override
+    public abstract Property<String> getArtifactType();
+
+    @Input
+    @Optional
+    @Override
+    public abstract Property<String> getVersionSource();
+
+    /**
+     * getBuildNumberSource: Where the build number comes from, `env`, `local-counter` or `server`.
+     *
+     * @return Property
+     */
+    @Input
+    public abstract Property<String> getBuildNumberSource();
+
+    /**
+     * getBuildNumber: The build number a remote build includes in the version, the allocated build number or the value
+     * of the build number ENV VAR. Not set for local builds, which never include a build number.
+     *
+     * @return Property
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getBuildNumber();
+
+    /**
+     * getPendingVersion: The version changed earlier in this build, it is not written to the version file until the
+     * build finishes.
+     *
+     * @return Provider
+     */
+    @Input
+    @Optional
+    public Provider<String> getPendingVersion() {
+        return getVersionFileService().zip(getVersionFile(), (service, file) -> {
+            final Properties pending = service.getPendingProperties(file.getAsFile());
+            return pending != null ? getLocalVersion(pending).toString() : null;
+        });
+    }
+
+    /**
+     * getOutputFile: The file the computed version is written to.
+     *
+     * @return RegularFileProperty
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    /**
+     * getComputedVersion: The computed version, reading it makes the consumer depend on this task.
+     *
+     * @return Provider
+     */
+    @Internal
+    public Provider<String> getComputedVersion() {
+        return getOutputFile().map(file -> readVersion(file.getAsFile()));
+    }
+
+    /**
+     * ComputeVersionTask: A version derived from the git history can change without any declared input changing.
+     */
+    public ComputeVersionTask() {
+        getOutputs().upToDateWhen(task -> !isGitDerived());
+        getOutputs().cacheIf("the version does not depend on the git history", task -> !isGitDerived());
+    }
+
+    /**
+     * computeVersion: Task that executes computing the version.
+     *
+     * @throws IOException an Exception
+     */
+    @TaskAction
+    public void computeVersion() throws IOException {
+        final Properties prop = readVersionProperties();
+        final File file = getOutputFile().get().getAsFile();
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        Files.write(file.toPath(), generateVersion(prop).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * readVersion: Read a version written by this task.
+     *
+     * @param file File
+     * @return String
+     */
+    public static String readVersion(final File file) {
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private boolean isGitDerived() {
+        return SemanticVersioningWithBuildNumberPluginExtension.VERSION_SOURCE_GIT_TAG.equals(getVersionSource().getOrNull()) ||
+                getRemoteBuild().get() && getCommitDistanceBuildNumber().getOrElse(false) && !getBuildNumber().isPresent();
+    }
+}
@@ -0,0 +1,171 @@
+package com.benrhine.plugins.v1.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.lang.model.SourceVersion;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * GenerateVersionSourcesTask: Generate a Java class holding the version as compile time constants, e.g.
+ * <p>
+ * public static final String VERSION = "1.2.3.45-RELEASE";
+ * public static final int MAJOR = 1;
+ * <p>
+ * The constants are inlined by the compiler, reading them at runtime costs nothing, no properties file or jar manifest
+ * has to be found and parsed. The only input is the version file written by {@link ComputeVersionTask}, so the class is only
+ * regenerated (and the classes using it recompiled) when the version changed, and can be loaded from the build cache.
+ * ------------------------------------------------------------------------------------------------------------------ */
+@CacheableTask
+public abstract class GenerateVersionSourcesTask extends DefaultTask {
+
+    /**
+     * getComputedVersionFile: The file written by {@link ComputeVersionTask}.
+     *
+     * @return RegularFileProperty
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getComputedVersionFile();
+
+    /**
+     * getPackageName: The package of the generated class, the default package if empty.
+     *
+     * @return Property
+     */
+    @Input
+    public abstract Property<String> getPackageName();
+
+    /**
+     * getClassName: The simple name of the generated class.
+     *
+     * @return Property
+     */
+    @Input
+    public abstract Property<String> getClassName();
+
+    /**
+     * getOutputDirectory: The source directory the class is generated into, added to the `main` source set.
+     *
+     * @return DirectoryProperty
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    /**
+     * generateVersionSources: Task that executes generating the version class.
+     *
+     * @throws IOException an Exception
+     */
+    @TaskAction
+    public void generateVersionSources() throws IOException {
+        final String packageName = getPackageName().getOrElse("");
+        final String className = getClassName().get();
+
+        if (!packageName.isEmpty() && !SourceVersion.isName(packageName)) {
+            throw new GradleException("'" + packageName + "' is not a valid package name for the version class");
+        }
+        if (!SourceVersion.isName(className) || className.contains(".")) {
+            throw new GradleException("'" + className + "' is not a valid class name for the version class");
+        }
+        final Path directory = getOutputDirectory().get().getAsFile().toPath();
+        // Remove the class of a previous package or class name
+        clean(directory);
+        final Path file = directory.resolve(packageName.replace('.', File.separatorChar)).resolve(className + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, render(SemanticVersion.parse(ComputeVersionTask.readVersion(getComputedVersionFile().get().getAsFile())), packageName, className).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * render: The source of the version class.
+     *
+     * @param version SemanticVersion
+     * @param packageName String or empty for the default package
+     * @param className String
+     * @return String
+     */
+    static String render(final SemanticVersion version, final String packageName, final String className) {
+        final StringBuilder source = new StringBuilder(1024);
+
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n")
+                .append(" * ").append(className).append(": The version of this build, generated by the semantic versioning plugin.\n")
+                .append(" */\n")
+                .append("public final class ").append(className).append(" {\n")
+                .append("    public static final String VERSION = ").append(literal(version.toString())).append(";\n")
+                .append("    public static final int MAJOR = ").append(version.getMajor()).append(";\n")
+                .append("    public static final int MINOR = ").append(version.getMinor()).append(";\n")
+                .append("    public static final int PATCH = ").append(version.getPatch()).append(";\n")
+                .append("    /** The build number, ").append(SemanticVersion.NO_BUILD_NUMBER).append(" if the version has none or it is not a number */\n")
+                .append("    public static final int BUILD_NUMBER = ").append(version.getBuildNumber()).append(";\n")
+                .append("    /** The build number as it appears in the version, empty if the version has none */\n")
+                .append("    public static final String BUILD = ")
+                .append(literal(version.hasBuildNumber() ? version.getBuild() : "")).append(";\n")
+                .append("    /** The artifact type, empty if the version has none */\n")
+                .append("    public static final String ARTIFACT_TYPE = ")
+                .append(literal(version.getPreRelease() != null ? version.getPreRelease() : "")).append(";\n\n")
+                .append("    private ").append(className).append("() {\n")
+                .append("    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    private static String literal(final String value) {
+        final StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20) {
+                // Unicode escapes of line terminators would end the literal, octal escapes do not
+                literal.append(String.format("\\%03o", (int) c));
+            } else if (c > 0x7e) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static void clean(final Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        final List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = new ArrayList<>();
+            walk.forEach(paths::add);
+        }
+        // Children before their parents
+        Collections.reverse(paths);
+
+        for (final Path path : paths) {
+            if (!path.equals(directory)) {
+                Files.delete(path);
+            }
+        }
+    }
+}
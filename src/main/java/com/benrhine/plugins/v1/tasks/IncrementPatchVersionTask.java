@@ -1,21 +1,16 @@
 package com.benrhine.plugins.v1.tasks;
 
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.generateVersion;
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.getExtensionDefinedRemoteBuild;
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalProperties;
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.loadLocalPropertiesToProjectProperties;
-import static com.benrhine.plugins.v1.util.ExtensionHelpers.writeLocalProperties;
-
 import java.io.IOException;
-import java.util.Properties;
-import org.gradle.api.DefaultTask;
-import org.gradle.api.Project;
+import com.benrhine.plugins.v1.SemanticVersion;
+import com.benrhine.plugins.v1.tasks.base.VersionTask;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
 
 /**  --------------------------------------------------------------------------------------------------------------------
  * PatchVersion: Increment the patch version via task.
  * ------------------------------------------------------------------------------------------------------------------ */
-public class IncrementPatchVersionTask extends DefaultTask {
+@UntrackedTask(because = "Changes the version file it reads")
+public abstract class IncrementPatchVersionTask extends VersionTask {
 
     /**
      * incrementPatchVersion: Task that executes incrementing the patch version.
@@ -26,21 +21,10 @@ public class IncrementPatchVersionTask extends DefaultTask {
     public void incrementPatchVersion() throws Exception {
 
         try {
-            final Project project = getProject();
-            final Properties prop = getLocalProperties(project);
-            // Increment the patch version and store it into the local properties object
-            final int patch = Integer.parseInt(prop.getProperty("patch"));
-            prop.setProperty("patch", String.valueOf(patch + 1));
-            // Move the locally read properties to the project properties
-            loadLocalPropertiesToProjectProperties(project, prop);
-            // Determine if this is a remote build (is this a CI build)
-            final boolean isRemoteBuild = getExtensionDefinedRemoteBuild(project, prop);
-            // Generate the full project version
-            generateVersion(project, isRemoteBuild);
-            // Save `version.properties` to the root project folder OR to the location specified in the
-            // `build.gradle` extension block
-            writeLocalProperties(project, prop);
-            System.out.println(project.getProperties().get("version"));
+            final SemanticVersion version = updateVersion(current ->
+                    // Increment the patch version
+                    current.withPatch(current.getPatch() + 1));
+            System.out.println(version);
         } catch (final IOException ex) {
             ex.printStackTrace();
         }
@@ -1,113 +1,312 @@
-//package com.benrhine.plugins.v1.tasks.base;
-//
-//import java.util.Properties;
-//import com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension;
-//import org.gradle.api.DefaultTask;
-//import org.gradle.api.Project;
-//import org.gradle.api.tasks.Internal;
-//
-///**  --------------------------------------------------------------------------------------------------------------------
-// * VersionTask: This is currently unused, but I have left it here as an alternative example of how it is possible to extract
-// * functions when writing a gradle plugin. The tasks could then extend this class instead of DefaultTask.
-// * ------------------------------------------------------------------------------------------------------------------ */
-//public class VersionTask extends DefaultTask {
-//
-//    @Internal
-//    protected String getExtensionDefinedPath() {
-//        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) getProject().getExtensions().findByName("versionConfig");
-//        String path = "version.properties";
-//        if (extension != null) {
-//            final String extensionDefinedPath = extension.getCustomVersionPropertiesPath();
-//
-//            if (extensionDefinedPath != null) {
-//                path = extensionDefinedPath;
-//            }
-//        }
-//        return path;
-//    }
-//
-//    @Internal
-//    protected String getExtensionDefinedRemoteBuild(final Properties prop) {
-//        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) getProject().getExtensions().findByName("versionConfig");
-//        String isRemoteBuild = prop.getProperty("remote-build");
-//        if (extension != null) {
-//            final boolean extensionDefinedRemoteBuild = extension.isRemoteBuild();
-//
-//            if (extensionDefinedRemoteBuild) {
-//                isRemoteBuild = String.valueOf(extensionDefinedRemoteBuild);
-//            }
-//        }
-//        return isRemoteBuild;
-//    }
-//
-//    @Internal
-//    protected String getExtensionDefinedArtifactType(final Properties prop) {
-//        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) getProject().getExtensions().findByName("versionConfig");
-//        String path = prop.getProperty("artifact-type");
-//        if (extension != null) {
-//            final String extensionDefinedArtifactType = extension.getArtifactType();
-//
-//            if (extensionDefinedArtifactType != null) {
-//                path = extensionDefinedArtifactType;
-//            }
-//        }
-//        return path;
-//    }
-//
-//    @Internal
-//    protected String generateVersionWithArtifactType(final Project project) {
-//        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) getProject().getExtensions().findByName("versionConfig");
-//        final String artifactType = extension.getArtifactType();
-//
-//        // Check if a custom artifact type is being specified through the extension
-//        if (artifactType != null && !artifactType.isEmpty()) {
-//            project.setProperty("artifact-type", artifactType);
-//            // If one is specified through the extension, use that instead of the default value from version.properties
-//            return project.getProperties().get("major") + "." + project.getProperties().get("minor") + "." +
-//                    project.getProperties().get("patch") + "-" + artifactType;
-//        } else {
-//            // If no artifact type is specified through the extension, use the default value from version.properties
-//            return project.getProperties().get("major") + "." + project.getProperties().get("minor") + "." +
-//                    project.getProperties().get("patch") + "-" + project.getProperties().get("artifact-type");
-//        }
-//    }
-//
-//    @Internal
-//    protected String generateVersionWithBuildNumberAndArtifactType(final Project project) {
-//        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) getProject().getExtensions().findByName("versionConfig");
-//        final String ciBuildNumberEnvVarName = extension.getCiBuildNumberEnvVarName();
-//        final String artifactType = extension.getArtifactType();
-//        String buildNumber;
-//        // Check that the ENV VAR for the build number is passed in and is not null or empty
-//        if (ciBuildNumberEnvVarName != null && !ciBuildNumberEnvVarName.isEmpty()) {
-//            // Check if it matches known CI build number environment vars
-//            if (ciBuildNumberEnvVarName.equalsIgnoreCase("BUILD_RUN_NUMBER") ||
-//                    ciBuildNumberEnvVarName.equalsIgnoreCase("BITBUCKET_BUILD_NUMBER")) {
-//                // Attempt to get the build number
-//                System.out.println("Provided ENV VAR name matches predefined GitHub or BitBucket build number variable");
-//                buildNumber = System.getenv(extension.getCiBuildNumberEnvVarName());
-//            } else {
-//                // Even if it doesn't match known build environment vars, try to get it anyway.
-//                System.out.println("Unknown ENV VAR name - This may have unexpected results");
-//                buildNumber = System.getenv(extension.getCiBuildNumberEnvVarName());
-//            }
-//            // Check if the build number is null, if it is throw an exception
-//            if (buildNumber == null) {
-//                throw new RuntimeException("Provided ENV VAR for build number returned null value - Unable to build version that includes build number");
-//            }
-//
-//            // Check if a custom artifact type is being specified through the extension
-//            if (artifactType != null) {
-//                // If one is specified through the extension, use that instead of the default value from version.properties
-//                return project.getProperties().get("major") + "." + project.getProperties().get("minor") + "." +
-//                        project.getProperties().get("patch") + buildNumber + "-" + artifactType;
-//            } else {
-//                // If no artifact type is specified through the extension, use the default value from version.properties
-//                return project.getProperties().get("major") + "." + project.getProperties().get("minor") + "." +
-//                        project.getProperties().get("patch") + buildNumber + "-" + project.getProperties().get("artifact-type");
-//            }
-//        } else {
-//            return this.generateVersionWithArtifactType(project);
-//        }
-//    }
-//}
+package com.benrhine.plugins.v1.tasks.base;
+
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalProperties;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersionProperties;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersion;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.setLocalVersion;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.writeLocalProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import com.benrhine.plugins.v1.SemanticVersion;
+import com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension;
+import com.benrhine.plugins.v1.services.VersionFileService;
+import com.benrhine.plugins.v1.services.VersionFileService.VersionUpdate;
+import com.benrhine.plugins.v1.services.VersionMetrics;
+import com.benrhine.plugins.v1.util.ExtensionHelpers;
+import com.benrhine.plugins.v1.util.OrderedProperties;
+import com.benrhine.plugins.v1.util.VersionFileLock;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * VersionTask: Base class for all the version tasks. Every value the tasks need is wired in lazily by the plugin at
+ * configuration time so that no task has to call `getProject()` while executing, which keeps the tasks compatible with
+ * the configuration cache.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public abstract class VersionTask extends DefaultTask {
+
+    /**
+     * getVersionFile: The properties file the version is read from and written to.
+     *
+     * @return RegularFileProperty
+     */
+    @Internal
+    public abstract RegularFileProperty getVersionFile();
+
+    /**
+     * getRemoteBuild: Is this a remote (CI) build.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<Boolean> getRemoteBuild();
+
+    /**
+     * getIncludeReleaseTag: Include the word RELEASE on a release build.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<Boolean> getIncludeReleaseTag();
+
+    /**
+     * getIncludeBuildNumber: Include the build number on a release build.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<Boolean> getIncludeBuildNumber();
+
+    /**
+     * getCiBuildNumberEnvVarName: The ENV VAR name the build number is read from.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<String> getCiBuildNumberEnvVarName();
+
+    /**
+     * getCommitDistanceBuildNumber: Use the commit distance as build number when the ENV VAR is not set.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<Boolean> getCommitDistanceBuildNumber();
+
+    /**
+     * getAllocatedBuildNumber: The build number allocated for this build, if it is a remote build and the
+     * `local-counter` or `server` build number source is used. Only resolved for a remote build, resolving it
+     * allocates the number.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<Integer> getAllocatedBuildNumber();
+
+    /**
+     * getArtifactType: The artifact type defined in the `versionConfig` block.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<String> getArtifactType();
+
+    /**
+     * getLockTimeoutSeconds: How long to wait for another build updating the version file.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<Integer> getLockTimeoutSeconds();
+
+    /**
+     * getVersionSource: Where major, minor and patch come from, `properties` or `git-tag`.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<String> getVersionSource();
+
+    /**
+     * getRootDirectory: The root project directory, used to find the git repository for the `git-tag` version source.
+     *
+     * @return DirectoryProperty
+     */
+    @Internal
+    public abstract DirectoryProperty getRootDirectory();
+
+    /**
+     * getVersionFileService: The build service the phase timings of the task are reported to.
+     *
+     * @return Property
+     */
+    @Internal
+    public abstract Property<VersionFileService> getVersionFileService();
+
+    /**
+     * updateVersion: Update the version. The change is kept by the {@link VersionFileService} and written when the
+     * build finishes, together with every other change of the build to the same file, or discarded if any task of the
+     * build fails. `bumpVersions` defers its changes through the service the same way.
+     *
+     * @param update VersionUpdate
+     * @return SemanticVersion the full version after the update
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The timer is not referenced in the block
+    protected SemanticVersion updateVersion(final VersionUpdate update) throws IOException {
+        checkVersionFileSource();
+        final File file = getVersionFile().get().getAsFile();
+        final VersionFileService service = getVersionFileService().getOrNull();
+
+        if (service != null) {
+            final Properties prop;
+            try (VersionMetrics.Timer timer = metrics().start(VersionMetrics.Phase.GET_LOCAL_PROPERTIES)) {
+                prop = service.updateVersion(file, update, TimeUnit.SECONDS.toMillis(getLockTimeoutSeconds().get()));
+            }
+            return generateVersion(prop);
+        }
+        // Without the service the version file is read, updated and written right away while holding the version file
+        // lock, so concurrent builds on the same checkout never lose an update
+        try (VersionFileLock lock = metrics().acquireLock(file, TimeUnit.SECONDS.toMillis(getLockTimeoutSeconds().get()))) {
+            if (lock.getWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(100)) {
+                System.out.println("Waited " + TimeUnit.NANOSECONDS.toMillis(lock.getWaitNanos()) + "ms for another build to update " + file.getName());
+            }
+            final Properties prop = loadVersionProperties(file);
+            setLocalVersion(prop, update.apply(getLocalVersion(prop)));
+            // Generate the full project version
+            final SemanticVersion version = generateVersion(prop);
+            // Save `version.properties` to the root project folder OR to the location specified in the
+            // `build.gradle` extension block
+            writeVersionProperties(prop);
+            return version;
+        } catch (final VersionFileLock.LockTimeoutException ex) {
+            throw new GradleException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * readVersionProperty: Read any key of the version properties file, including the changes of this build.
+     *
+     * @param key String
+     * @return String or null if the key is not set
+     * @throws IOException an Exception
+     */
+    protected String readVersionProperty(final String key) throws IOException {
+        final File file = getVersionFile().get().getAsFile();
+        final VersionFileService service = getVersionFileService().getOrNull();
+        final Properties pending = service != null ? service.getPendingProperties(file) : null;
+
+        return pending != null ? pending.getProperty(key) : loadVersionProperties(file).getProperty(key);
+    }
+
+    /**
+     * setVersionProperty: Change a key of the version properties file together with the version, the change is written
+     * and discarded with the version changes of this build (see {@link #updateVersion}).
+     *
+     * @param key String
+     * @param value String
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The lock is not referenced in the block
+    protected void setVersionProperty(final String key, final String value) throws IOException {
+        checkVersionFileSource();
+        final File file = getVersionFile().get().getAsFile();
+        final VersionFileService service = getVersionFileService().getOrNull();
+
+        if (service != null) {
+            service.setVersionProperty(file, key, value, TimeUnit.SECONDS.toMillis(getLockTimeoutSeconds().get()));
+            return;
+        }
+        try (VersionFileLock lock = metrics().acquireLock(file, TimeUnit.SECONDS.toMillis(getLockTimeoutSeconds().get()))) {
+            final Properties prop = loadVersionProperties(file);
+            prop.setProperty(key, value);
+            writeVersionProperties(prop);
+        } catch (final VersionFileLock.LockTimeoutException ex) {
+            throw new GradleException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * readVersionProperties: Read the version keys of the version properties file, including the version changes of
+     * this build. The returned properties are read only, they only hold the version keys and must never be written
+     * back to the file (see {@link #updateVersion}).
+     *
+     * @return OrderedProperties read only
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The timer is not referenced in the block
+    protected OrderedProperties readVersionProperties() throws IOException {
+        final File file = getVersionFile().get().getAsFile();
+        final VersionFileService service = getVersionFileService().getOrNull();
+        // A version changed earlier in this build is not written yet
+        OrderedProperties prop = service != null ? service.getPendingProperties(file) : null;
+
+        if (prop == null) {
+            try (VersionMetrics.Timer timer = metrics().start(VersionMetrics.Phase.GET_LOCAL_PROPERTIES)) {
+                prop = getLocalVersionProperties(file, getVersionSource().getOrNull());
+                metrics().addBytesRead(file.length());
+            }
+        }
+        return prop.isReadOnly() ? prop : prop.asReadOnly();
+    }
+
+    /**
+     * loadVersionProperties: Load the whole version properties file so it can be updated.
+     *
+     * @param file File
+     * @return Properties
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The timer is not referenced in the block
+    private Properties loadVersionProperties(final File file) throws IOException {
+        try (VersionMetrics.Timer timer = metrics().start(VersionMetrics.Phase.GET_LOCAL_PROPERTIES)) {
+            final Properties prop = getLocalProperties(file, getVersionSource().getOrNull());
+            metrics().addBytesRead(file.length());
+            return prop;
+        }
+    }
+
+    /**
+     * writeVersionProperties: Save the version properties back to the version properties file.
+     *
+     * @param prop Properties
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The timer is not referenced in the block
+    protected void writeVersionProperties(final Properties prop) throws IOException {
+        final File file = getVersionFile().get().getAsFile();
+
+        try (VersionMetrics.Timer timer = metrics().start(VersionMetrics.Phase.WRITE_LOCAL_PROPERTIES)) {
+            if (writeLocalProperties(file.getPath(), prop)) {
+                metrics().addBytesWritten(file.length());
+            }
+        }
+    }
+
+    /**
+     * generateVersion: Generate the full version from the given version properties.
+     *
+     * @param prop Properties
+     * @return SemanticVersion
+     * @throws IOException an Exception
+     */
+    @SuppressWarnings("try") // The timer is not referenced in the block
+    protected SemanticVersion generateVersion(final Properties prop) throws IOException {
+        try (VersionMetrics.Timer timer = metrics().start(VersionMetrics.Phase.GENERATE_VERSION)) {
+            final File rootDir = getRootDirectory().get().getAsFile();
+            final SemanticVersion localVersion = getLocalVersion(prop, getVersionSource().getOrNull(), rootDir);
+            final Integer allocatedBuildNumber = getRemoteBuild().get() ? getAllocatedBuildNumber().getOrNull() : null;
+            return ExtensionHelpers.generateVersion(localVersion, getRemoteBuild().get(), getArtifactType().getOrNull(),
+                    getIncludeReleaseTag().get(), getIncludeBuildNumber().get(),
+                    allocatedBuildNumber != null ? null : getCiBuildNumberEnvVarName().getOrNull(),
+                    ExtensionHelpers.getFallbackBuildNumber(allocatedBuildNumber, getCommitDistanceBuildNumber().getOrElse(false),
+                            localVersion, rootDir));
+        }
+    }
+
+    /**
+     * checkVersionFileSource: Fail if the version is not stored in the version file and so can not be changed by a task.
+     */
+    protected void checkVersionFileSource() {
+        if (SemanticVersioningWithBuildNumberPluginExtension.VERSION_SOURCE_GIT_TAG.equals(getVersionSource().getOrNull())) {
+            throw new GradleException("The version is derived from git tags (versionSource = \"git-tag\") - tag the commit with the new version instead");
+        }
+    }
+
+    /**
+     * metrics: The phase timings of this task.
+     *
+     * @return Recorder
+     */
+    private VersionMetrics.Recorder metrics() {
+        final VersionFileService service = getVersionFileService().getOrNull();
+        return service != null ? service.getMetrics().forTask(getPath()) : VersionMetrics.NONE;
+    }
+}
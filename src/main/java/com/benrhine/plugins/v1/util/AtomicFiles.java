@@ -0,0 +1,194 @@
+package com.benrhine.plugins.v1.util;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * AtomicFiles: Crash safe file writes. The new content is written to a temporary file next to the target, forced to
+ * disk and then moved over the target in a single atomic step, so a killed build can never leave a truncated file
+ * behind. Readers always see either the old or the new content. A target that already holds the new content is not
+ * written.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class AtomicFiles {
+
+    /**
+     * Content: Writes the new content of a file.
+     */
+    public interface Content {
+        /**
+         * writeTo: Write the content.
+         *
+         * @param output OutputStream
+         * @return boolean false to discard what was written and leave the target untouched
+         * @throws IOException an Exception
+         */
+        boolean writeTo(OutputStream output) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * write: Atomically replace the target with the given content. The content is written to memory first, the file
+     * system is not touched at all if it is discarded or equal to the current content of the target.
+     *
+     * @param target Path
+     * @param content Content
+     * @return boolean true if the target was replaced
+     * @throws IOException an Exception
+     */
+    public static boolean write(final Path target, final Content content) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        if (!content.writeTo(output)) {
+            return false;
+        }
+        return write(target, output.toByteArray());
+    }
+
+    /**
+     * stage: First half of {@link #write(Path, Content)}, write the new content to a temporary file next to the target
+     * and force it to disk without touching the target. Used to replace several files together, see
+     * {@link VersionFileBatch}.
+     *
+     * @param target Path
+     * @param content Content
+     * @return Path the temporary file to {@link #commit(Path, Path)} or delete, null if the content was discarded
+     * @throws IOException an Exception
+     */
+    public static Path stage(final Path target, final Content content) throws IOException {
+        final Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "." + target.getFileName(), ".tmp");
+        boolean staged = false;
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel));
+
+                if (!content.writeTo(output)) {
+                    return null;
+                }
+                output.flush();
+                channel.force(true);
+            }
+            copyPermissions(target, temp);
+            staged = true;
+            return temp;
+        } finally {
+            if (!staged) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * commit: Second half of {@link #write(Path, Content)}, move a staged temporary file over the target.
+     *
+     * @param temp Path returned by {@link #stage(Path, Content)}
+     * @param target Path
+     * @throws IOException an Exception
+     */
+    public static void commit(final Path temp, final Path target) throws IOException {
+        move(temp, target);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * write: Atomically replace the target with the given bytes, unless the target already holds exactly these bytes.
+     *
+     * @param target Path
+     * @param bytes byte[]
+     * @return boolean true if the target was replaced
+     * @throws IOException an Exception
+     */
+    public static boolean write(final Path target, final byte[] bytes) throws IOException {
+        if (isSameContent(target, bytes)) {
+            return false;
+        }
+        final Path temp = stage(target, output -> {
+            output.write(bytes);
+            return true;
+        });
+        try {
+            commit(temp, target);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * isSameContent: Does the target exist and hold exactly the given bytes. The size is compared before the content
+     * is read.
+     *
+     * @param target Path
+     * @param bytes byte[]
+     * @return boolean
+     * @throws IOException an Exception
+     */
+    public static boolean isSameContent(final Path target, final byte[] bytes) throws IOException {
+        if (!Files.isRegularFile(target) || Files.size(target) != bytes.length) {
+            return false;
+        }
+        return Arrays.equals(Files.readAllBytes(target), bytes);
+    }
+
+    /**
+     * move: Move the temporary file over the target, atomically where the file system supports it.
+     *
+     * @param source Path
+     * @param target Path
+     * @throws IOException an Exception
+     */
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * copyPermissions: Keep the permissions of the file being replaced, temporary files are only readable by the owner.
+     *
+     * @param target Path
+     * @param temp Path
+     */
+    private static void copyPermissions(final Path target, final Path temp) {
+        try {
+            final PosixFileAttributeView view = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+
+            if (view != null && Files.exists(target)) {
+                Files.setPosixFilePermissions(temp, view.readAttributes().permissions());
+            }
+        } catch (final IOException | UnsupportedOperationException ex) {
+            // Best effort only, the content is what matters
+        }
+    }
+
+    /**
+     * forceDirectory: Make sure the directory entry of the moved file reaches the disk. Not every platform allows a
+     * directory to be opened, in which case this is skipped.
+     *
+     * @param directory Path
+     */
+    private static void forceDirectory(final Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (final IOException | UnsupportedOperationException ex) {
+            // Best effort only
+        }
+    }
+}
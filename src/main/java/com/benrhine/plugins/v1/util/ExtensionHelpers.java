@@ -1,18 +1,29 @@
 package com.benrhine.plugins.v1.util;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.function.IntSupplier;
+import com.benrhine.plugins.v1.SemanticVersion;
 import com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension;
+import com.benrhine.plugins.v1.git.CommitDistance;
+import com.benrhine.plugins.v1.git.GitTagVersion;
 import org.gradle.api.Project;
 
 /** --------------------------------------------------------------------------------------------------------------------
  * ExtensionHelpers: Re-usable helper functions.
  * ------------------------------------------------------------------------------------------------------------------ */
 public final class ExtensionHelpers {
+    /**
+     * The keys of the version properties file that are maintained by the plugin
+     */
+    public static final String[] VERSION_KEYS = {"major", "minor", "patch", "artifact-type"};
 
     /**
      * getLocalProperties:
@@ -22,14 +33,59 @@ public final class ExtensionHelpers {
      * @throws IOException an Exception
      */
     public static Properties getLocalProperties(final Project project) throws IOException {
-        final InputStream input = new FileInputStream((getExtensionDefinedPath(project)));
+        return getLocalProperties(getExtensionDefinedPath(project));
+    }
+
+    /**
+     * getLocalProperties: Load the properties file at the given path without requiring a project, this is what allows
+     * the version to be resolved from a ValueSource or at task execution time.
+     *
+     * @param path String
+     * @return Properties
+     * @throws IOException an Exception
+     */
+    public static Properties getLocalProperties(final String path) throws IOException {
         final Properties prop = new OrderedProperties();
 
         // Load the `gradle.properties` file into the plugin
-        prop.load(input);
-
+        try (InputStream input = Files.newInputStream(Paths.get(path))) {
+            prop.load(input);
+        }
         return prop;
     }
+
+    /**
+     * getLocalProperties: Load the version properties file for the given version source. With the `git-tag` source
+     * the file only supplies the artifact type and may not exist at all.
+     *
+     * @param file File
+     * @param versionSource String
+     * @return Properties
+     * @throws IOException an Exception
+     */
+    public static Properties getLocalProperties(final File file, final String versionSource) throws IOException {
+        if (SemanticVersioningWithBuildNumberPluginExtension.VERSION_SOURCE_GIT_TAG.equals(versionSource) && !file.isFile()) {
+            return new OrderedProperties();
+        }
+        return getLocalProperties(file.getPath());
+    }
+
+    /**
+     * getLocalVersionProperties: Read only the version keys of the version properties file for the given version
+     * source, see {@link VersionPropertiesScanner}. The returned properties are read only, use
+     * {@link #getLocalProperties(File, String)} to update the file.
+     *
+     * @param file File
+     * @param versionSource String
+     * @return OrderedProperties read only
+     * @throws IOException an Exception
+     */
+    public static OrderedProperties getLocalVersionProperties(final File file, final String versionSource) throws IOException {
+        if (SemanticVersioningWithBuildNumberPluginExtension.VERSION_SOURCE_GIT_TAG.equals(versionSource) && !file.isFile()) {
+            return new OrderedProperties().asReadOnly();
+        }
+        return VersionPropertiesScanner.scan(file);
+    }
 //    public static FileBasedConfigurationBuilder<FileBasedConfiguration> apachePropertiesBuilder(final Project project) {
 //        final Parameters params = new Parameters();
 //        return new FileBasedConfigurationBuilder<FileBasedConfiguration>(PropertiesConfiguration.class)
@@ -54,13 +110,35 @@ public final class ExtensionHelpers {
      * @param project Project
      * @param prop Properties
      *
+     * @return boolean true if the file was written
+     * @throws IOException an Exception
+     */
+    public static boolean writeLocalProperties(final Project project, final Properties prop) throws IOException {
+        return writeLocalProperties(getExtensionDefinedPath(project), prop);
+    }
+
+    /**
+     * writeLocalProperties: Write the version properties (see {@link #VERSION_KEYS}) to the file at the given path. Only
+     * the lines holding those keys are rewritten, every other line of the file including comments is left untouched,
+     * and the file is not written at all if none of the values changed.
+     *
+     * @param path String
+     * @param prop Properties
+     *
+     * @return boolean true if the file was written
      * @throws IOException an Exception
      */
-    public static void writeLocalProperties(final Project project, final Properties prop) throws IOException {
-        final OutputStream output = new FileOutputStream((getExtensionDefinedPath(project)));
-        prop.store(output, "Updating .properties - THIS FILE REGENERATED WHEN TASK IS EXECUTED");
+    public static boolean writeLocalProperties(final String path, final Properties prop) throws IOException {
+        final Map<String, String> values = new LinkedHashMap<>();
+
+        for (final String key : VERSION_KEYS) {
+            final String value = prop.getProperty(key);
 
-        // System.out.println(prop);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return PropertiesFileEditor.patch(new File(path), values);
     }
 
     /**
@@ -92,16 +170,57 @@ public final class ExtensionHelpers {
      * @return String
      */
     public static String getExtensionDefinedPath(final Project project) {
-        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) project.getExtensions().findByName("versionConfig");
-        String path = "gradle.properties";
-        if (extension != null) {
-            final String extensionDefinedPath = extension.getCustomVersionPropertiesPath();
+        final SemanticVersioningWithBuildNumberPluginExtension extension = getExtension(project);
 
-            if (extensionDefinedPath != null) {
-                path = extensionDefinedPath;
-            }
+        if (extension != null && extension.getVersionFile().isPresent()) {
+            return extension.getVersionFile().get().getAsFile().getPath();
         }
-        return path;
+        return extension != null ? extension.getCustomVersionPropertiesPath().getOrElse("gradle.properties") : "gradle.properties";
+    }
+
+    /**
+     * getExtensionDefinedFile: Resolve the extension defined path to a file. Relative paths are resolved against the
+     * root project directory so that every project in the build points at the same file regardless of the directory
+     * Gradle was invoked from.
+     *
+     * @param project Project
+     *
+     * @return File
+     */
+    public static File getExtensionDefinedFile(final Project project) {
+        return resolveVersionFile(project.getRootDir(), getExtensionDefinedPath(project));
+    }
+
+    /**
+     * resolveVersionFile: Resolve a version properties path, relative paths are resolved against the root directory.
+     *
+     * @param rootDir File
+     * @param path String
+     *
+     * @return File
+     */
+    public static File resolveVersionFile(final File rootDir, final String path) {
+        final File file = new File(path);
+
+        if (file.isAbsolute()) {
+            return file;
+        }
+        return new File(rootDir, file.getPath());
+    }
+
+    /**
+     * getExtensionDefinedRemoteBuild: Determine if this is a remote build from the project and extension only.
+     *
+     * @param project Project
+     *
+     * @return boolean
+     */
+    public static boolean getExtensionDefinedRemoteBuild(final Project project) {
+        if (!project.hasProperty("remote-build")) {
+            return false;
+        }
+        final SemanticVersioningWithBuildNumberPluginExtension extension = getExtension(project);
+        return extension != null && extension.getRemoteBuild().get();
     }
 
     /**
@@ -116,10 +235,10 @@ public final class ExtensionHelpers {
         boolean isRemoteBuild = false;
 
         if (project.hasProperty("remote-build")) {
-            final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) project.getExtensions().findByName("versionConfig");
+            final SemanticVersioningWithBuildNumberPluginExtension extension = getExtension(project);
 
             if (extension != null) {
-                isRemoteBuild = extension.isRemoteBuild();
+                isRemoteBuild = extension.getRemoteBuild().get();
             } else {
                 final String propIsRemoteBuild = prop.getProperty("remote-build");
 
@@ -168,10 +287,10 @@ public final class ExtensionHelpers {
      * @return String
      */
     protected static String getExtensionDefinedArtifactType(final Project project, final Properties prop) {
-        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) project.getExtensions().findByName("versionConfig");
+        final SemanticVersioningWithBuildNumberPluginExtension extension = getExtension(project);
         String path = prop.getProperty("artifact-type");
         if (extension != null) {
-            final String extensionDefinedArtifactType = extension.getArtifactType();
+            final String extensionDefinedArtifactType = extension.getArtifactType().getOrNull();
 
             if (extensionDefinedArtifactType != null) {
                 path = extensionDefinedArtifactType;
@@ -195,6 +314,70 @@ public final class ExtensionHelpers {
         }
     }
 
+    /**
+     * generateVersion: Generate the full version from the given version properties and configuration values. This does
+     * not touch the project so it is safe to call from a ValueSource or at task execution time.
+     *
+     * @param prop Properties
+     * @param isRemoteBuild boolean
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     * @param includeBuildNumber boolean
+     * @param ciBuildNumberEnvVarName String
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersion(final Properties prop, final boolean isRemoteBuild, final String artifactType,
+                                                  final boolean includeReleaseTag, final boolean includeBuildNumber,
+                                                  final String ciBuildNumberEnvVarName) {
+        return generateVersion(getLocalVersion(prop), isRemoteBuild, artifactType, includeReleaseTag, includeBuildNumber,
+                ciBuildNumberEnvVarName);
+    }
+
+    /**
+     * generateVersion: Generate the full version from the version stored in the version properties file.
+     *
+     * @param localVersion SemanticVersion the stored version, its pre-release being the stored artifact type
+     * @param isRemoteBuild boolean
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     * @param includeBuildNumber boolean
+     * @param ciBuildNumberEnvVarName String
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersion(final SemanticVersion localVersion, final boolean isRemoteBuild,
+                                                  final String artifactType, final boolean includeReleaseTag,
+                                                  final boolean includeBuildNumber, final String ciBuildNumberEnvVarName) {
+        return generateVersion(localVersion, isRemoteBuild, artifactType, includeReleaseTag, includeBuildNumber,
+                ciBuildNumberEnvVarName, null);
+    }
+
+    /**
+     * generateVersion: Generate the full version from the version stored in the version properties file.
+     *
+     * @param localVersion SemanticVersion the stored version, its pre-release being the stored artifact type
+     * @param isRemoteBuild boolean
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     * @param includeBuildNumber boolean
+     * @param ciBuildNumberEnvVarName String
+     * @param fallbackBuildNumber IntSupplier build number used when the ENV VAR is not set, may be null
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersion(final SemanticVersion localVersion, final boolean isRemoteBuild,
+                                                  final String artifactType, final boolean includeReleaseTag,
+                                                  final boolean includeBuildNumber, final String ciBuildNumberEnvVarName,
+                                                  final IntSupplier fallbackBuildNumber) {
+        if (isRemoteBuild) {
+            return generateVersionWithBuildNumberAndArtifactType(localVersion, artifactType, includeReleaseTag,
+                    includeBuildNumber, ciBuildNumberEnvVarName, fallbackBuildNumber);
+        } else {
+            return generateVersionWithArtifactType(localVersion, artifactType, includeReleaseTag);
+        }
+    }
+
     /**
      * generateVersionWithArtifactType:
      *
@@ -203,33 +386,76 @@ public final class ExtensionHelpers {
      * @return String
      */
     public static String generateVersionWithArtifactType(final Project project) {
-        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) project.getExtensions().findByName("versionConfig");
-        final String artifactType = extension.getArtifactType();
-        final boolean includeReleaseTag = extension.isIncludeReleaseTag();
-        String version = project.getProperties().get("major") + "." + project.getProperties().get("minor") + "." +
-                project.getProperties().get("patch");
+        final SemanticVersioningWithBuildNumberPluginExtension extension = getExtension(project);
+        final String artifactType = extension.getArtifactType().getOrNull();
+        final SemanticVersion version = generateVersionWithArtifactType(getProjectVersion(project, extension), artifactType,
+                extension.getIncludeReleaseTag().get());
 
+        setProjectArtifactType(project, artifactType);
+        return version.toString();
+    }
+
+    /**
+     * generateVersionWithArtifactType:
+     *
+     * @param prop Properties
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersionWithArtifactType(final Properties prop, final String artifactType,
+                                                                  final boolean includeReleaseTag) {
+        return generateVersionWithArtifactType(getLocalVersion(prop), artifactType, includeReleaseTag);
+    }
+
+    /**
+     * generateVersionWithArtifactType:
+     *
+     * @param localVersion SemanticVersion
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersionWithArtifactType(final SemanticVersion localVersion,
+                                                                  final String artifactType,
+                                                                  final boolean includeReleaseTag) {
         // Check if a custom artifact type is being specified through the extension
         if (artifactType != null && !artifactType.isEmpty()) {
             checkArtifactType(artifactType);
-            project.setProperty("artifact-type", artifactType);
 
             if (artifactType.equalsIgnoreCase("RELEASE")) {
                 if (!includeReleaseTag) {
-                    return version;
+                    return localVersion.withPreRelease(null);
                 }
             }
+            return localVersion.withPreRelease(artifactType);
         }
         // If no artifact type is specified through the extension, use the default value from gradle.properties
-        return version + "-" + project.getProperties().get("artifact-type");
+        return localVersion;
     }
 
     /**
-     * checkArtifactType:
+     * checkArtifactType: Inform the user if the artifact type is not one of the supported types.
      *
      * @param artifactType String
      */
-    private static void checkArtifactType(final String artifactType) {
+    static void checkArtifactType(final String artifactType) {
+        if (!isSupportedArtifactType(artifactType)) {
+            System.out.println("INFO ONLY!!! Inbound artifact type DOES NOT MATCH supported / expected artifact types");
+            System.out.println("This will not affect plugin function, this is only to inform the user they may have misspelled the artifact type or that they are using an unusual type.");
+        }
+    }
+
+    /**
+     * isSupportedArtifactType:
+     *
+     * @param artifactType String
+     *
+     * @return boolean
+     */
+    static boolean isSupportedArtifactType(final String artifactType) {
         switch (artifactType) {
             case "LOCAL":
             case "SNAPSHOT":
@@ -238,11 +464,9 @@ public final class ExtensionHelpers {
             case "BETA":
             case "RELEASE":
             case "EXPERIMENTAL":
-                //System.out.println("INFO ONLY!!! Inbound artifact type matches supported / expected artifact types");
-                break;
+                return true;
             default:
-                System.out.println("INFO ONLY!!! Inbound artifact type DOES NOT MATCH supported / expected artifact types");
-                System.out.println("This will not affect plugin function, this is only to inform the user they may have misspelled the artifact type or that they are using an unusual type.");
+                return false;
         }
     }
 
@@ -254,13 +478,79 @@ public final class ExtensionHelpers {
      * @return String
      */
     public static String generateVersionWithBuildNumberAndArtifactType(final Project project) {
-        final SemanticVersioningWithBuildNumberPluginExtension extension = (SemanticVersioningWithBuildNumberPluginExtension) project.getExtensions().findByName("versionConfig");
-        final String ciBuildNumberEnvVarName = extension.getCiBuildNumberEnvVarName();
-        final String artifactType = extension.getArtifactType();
-        final boolean includeReleaseTag = extension.isIncludeReleaseTag();
-        final boolean includeBuildNumber = extension.isIncludeBuildNumber();
-        String version = project.getProperties().get("major") + "." + project.getProperties().get("minor") + "." +
-                project.getProperties().get("patch");
+        final SemanticVersioningWithBuildNumberPluginExtension extension = getExtension(project);
+        final String artifactType = extension.getArtifactType().getOrNull();
+        final SemanticVersion localVersion = getProjectVersion(project, extension);
+        final File rootDir = project.getRootDir();
+        final SemanticVersion version = generateVersionWithBuildNumberAndArtifactType(localVersion,
+                artifactType, extension.getIncludeReleaseTag().get(), extension.getIncludeBuildNumber().get(),
+                extension.getCiBuildNumberEnvVarName().getOrNull(), extension.getCommitDistanceBuildNumber().get() ?
+                        () -> getCommitDistanceBuildNumber(localVersion, rootDir) : null);
+
+        setProjectArtifactType(project, artifactType);
+        return version.toString();
+    }
+
+    /**
+     * generateVersionWithBuildNumberAndArtifactType:
+     *
+     * @param prop Properties
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     * @param includeBuildNumber boolean
+     * @param ciBuildNumberEnvVarName String
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersionWithBuildNumberAndArtifactType(final Properties prop, final String artifactType,
+                                                                                final boolean includeReleaseTag,
+                                                                                final boolean includeBuildNumber,
+                                                                                final String ciBuildNumberEnvVarName) {
+        return generateVersionWithBuildNumberAndArtifactType(getLocalVersion(prop), artifactType, includeReleaseTag,
+                includeBuildNumber, ciBuildNumberEnvVarName);
+    }
+
+    /**
+     * generateVersionWithBuildNumberAndArtifactType:
+     *
+     * @param localVersion SemanticVersion
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     * @param includeBuildNumber boolean
+     * @param ciBuildNumberEnvVarName String
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersionWithBuildNumberAndArtifactType(final SemanticVersion localVersion,
+                                                                                final String artifactType,
+                                                                                final boolean includeReleaseTag,
+                                                                                final boolean includeBuildNumber,
+                                                                                final String ciBuildNumberEnvVarName) {
+        return generateVersionWithBuildNumberAndArtifactType(localVersion, artifactType, includeReleaseTag,
+                includeBuildNumber, ciBuildNumberEnvVarName, null);
+    }
+
+    /**
+     * generateVersionWithBuildNumberAndArtifactType:
+     *
+     * @param localVersion SemanticVersion
+     * @param artifactType String
+     * @param includeReleaseTag boolean
+     * @param includeBuildNumber boolean
+     * @param ciBuildNumberEnvVarName String
+     * @param fallbackBuildNumber IntSupplier build number used when the ENV VAR is not set, may be null
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion generateVersionWithBuildNumberAndArtifactType(final SemanticVersion localVersion,
+                                                                                final String artifactType,
+                                                                                final boolean includeReleaseTag,
+                                                                                final boolean includeBuildNumber,
+                                                                                final String ciBuildNumberEnvVarName,
+                                                                                final IntSupplier fallbackBuildNumber) {
+        // The extension defined artifact type always wins over the one read from the properties file
+        final SemanticVersion version = artifactType != null && !artifactType.isEmpty() ?
+                localVersion.withPreRelease(artifactType) : localVersion;
         String buildNumber;
         // Check that the ENV VAR for the build number is passed in and is not null or empty
         if (ciBuildNumberEnvVarName != null && !ciBuildNumberEnvVarName.isEmpty()) {
@@ -269,49 +559,238 @@ public final class ExtensionHelpers {
                     ciBuildNumberEnvVarName.equalsIgnoreCase("BITBUCKET_BUILD_NUMBER")) {
                 // Attempt to get the build number
                 System.out.println("Warning: Provided ENV VAR name matches predefined GitHub or BitBucket build number variable");
-                buildNumber = System.getenv(extension.getCiBuildNumberEnvVarName());
+                buildNumber = readBuildNumber(ciBuildNumberEnvVarName);
             } else {
                 // Even if it doesn't match known build environment vars, try to get it anyway.
                 System.out.println("Warning: Unknown ENV VAR name - This may have unexpected results");
-                buildNumber = System.getenv(extension.getCiBuildNumberEnvVarName());
+                buildNumber = readBuildNumber(ciBuildNumberEnvVarName);
             }
             // Check if the build number is null, if it is throw an exception
 //            if (buildNumber == null) {
 //                throw new RuntimeException("Provided ENV VAR for build number returned null value - Unable to build version that includes build number");
 //            }
+        } else if (fallbackBuildNumber == null) {
+            System.out.println("Warning: No ENV VAR for build number has been set | Please add `ciBuildNumberEnvVarName = YOUR-VALUE` to the versionConfig block");
+            System.out.println("Warning: Version will NOT set build number for this project run");
+            return generateVersionWithArtifactType(localVersion, artifactType, includeReleaseTag);
+        } else {
+            buildNumber = null;
+        }
+        // Fall back to the offline build number (e.g. the commit distance) when the ENV VAR did not provide one
+        if (buildNumber == null && fallbackBuildNumber != null) {
+            final int fallback = fallbackBuildNumber.getAsInt();
+            buildNumber = fallback != SemanticVersion.NO_BUILD_NUMBER ? Integer.toString(fallback) : null;
+        }
+
+        // Check if a custom artifact type is being specified through the extension
+        if (artifactType != null && !artifactType.isEmpty()) {
+            checkArtifactType(artifactType);
 
-            // Check if a custom artifact type is being specified through the extension
-            if (artifactType != null && !artifactType.isEmpty()) {
-                checkArtifactType(artifactType);
-                project.setProperty("artifact-type", artifactType);
-
-                if (artifactType.equalsIgnoreCase("RELEASE")) {
-                    if (!includeReleaseTag && !includeBuildNumber) {
-                        return version;
-                    } else if (includeReleaseTag && !includeBuildNumber) {
-                        return version + "-" + artifactType;
-                    } else if (!includeReleaseTag) {
-                        if (buildNumber != null) {
-                            return version + "." + buildNumber;
-                        } else {
-                            System.out.println("Warning: Build number from ENV VAR was null - VERSION WILL NOT INCLUDE BUILD NUMBER");
-                        }
+            if (artifactType.equalsIgnoreCase("RELEASE")) {
+                if (!includeReleaseTag && !includeBuildNumber) {
+                    return version.withPreRelease(null);
+                } else if (includeReleaseTag && !includeBuildNumber) {
+                    return version;
+                } else if (!includeReleaseTag) {
+                    if (buildNumber != null) {
+                        return version.withPreRelease(null).withBuild(buildNumber);
+                    } else {
+                        System.out.println("Warning: Build number from ENV VAR was null - VERSION WILL NOT INCLUDE BUILD NUMBER");
                     }
                 }
             }
+        }
+
+        if (buildNumber != null) {
+            // If no artifact type is specified through the extension, use the default value from gradle.properties
+            return version.withBuild(buildNumber);
+        } else {
+            System.out.println("Warning: Build number from ENV VAR was null - VERSION WILL NOT INCLUDE BUILD NUMBER");
+            // If no artifact type is specified through the extension, use the default value from gradle.properties
+            return version;
+        }
+    }
 
-            if (buildNumber != null) {
-                // If no artifact type is specified through the extension, use the default value from gradle.properties
-                return version + "." + buildNumber + "-" + project.getProperties().get("artifact-type");
+    /**
+     * getFallbackBuildNumber: The build number used when the ENV VAR does not provide one. A number allocated by a
+     * build number provider (`local-counter` or `server`) wins over the commit distance.
+     *
+     * @param allocatedBuildNumber Integer allocated by the build number provider, may be null
+     * @param commitDistanceBuildNumber boolean
+     * @param baseVersion SemanticVersion
+     * @param rootDir File
+     *
+     * @return IntSupplier or null if there is no fallback
+     */
+    public static IntSupplier getFallbackBuildNumber(final Integer allocatedBuildNumber, final boolean commitDistanceBuildNumber,
+                                                     final SemanticVersion baseVersion, final File rootDir) {
+        if (allocatedBuildNumber != null) {
+            return allocatedBuildNumber::intValue;
+        }
+        return commitDistanceBuildNumber ? () -> getCommitDistanceBuildNumber(baseVersion, rootDir) : null;
+    }
+
+    /**
+     * getCommitDistanceBuildNumber: The number of commits since the tag of the base version, used as the build number
+     * when the build number ENV VAR is not set.
+     *
+     * @param baseVersion SemanticVersion
+     * @param rootDir File any directory inside the git repository
+     *
+     * @return int the build number or {@link SemanticVersion#NO_BUILD_NUMBER} if it could not be determined
+     */
+    public static int getCommitDistanceBuildNumber(final SemanticVersion baseVersion, final File rootDir) {
+        try {
+            final int buildNumber = CommitDistance.count(rootDir, baseVersion);
+
+            if (buildNumber == SemanticVersion.NO_BUILD_NUMBER) {
+                System.out.println("Warning: " + rootDir + " is not inside a git repository with commits - unable to use the commit distance as build number");
             } else {
-                System.out.println("Warning: Build number from ENV VAR was null - VERSION WILL NOT INCLUDE BUILD NUMBER");
-                // If no artifact type is specified through the extension, use the default value from gradle.properties
-                return version + "-" + project.getProperties().get("artifact-type");
+                System.out.println("Using the commit distance (" + buildNumber + ") as build number");
             }
-        } else {
-            System.out.println("Warning: No ENV VAR for build number has been set | Please add `ciBuildNumberEnvVarName = YOUR-VALUE` to the versionConfig block");
-            System.out.println("Warning: Version will NOT set build number for this project run");
-            return generateVersionWithArtifactType(project);
+            return buildNumber;
+        } catch (final IOException ex) {
+            ex.printStackTrace();
+            return SemanticVersion.NO_BUILD_NUMBER;
+        }
+    }
+
+    /**
+     * getLocalVersion: Read the version stored in the version properties, the stored artifact type becomes the
+     * pre-release of the version.
+     *
+     * @param prop Properties
+     *
+     * @return SemanticVersion
+     */
+    public static SemanticVersion getLocalVersion(final Properties prop) {
+        return new SemanticVersion(parseVersionNumber("major", prop.getProperty("major")),
+                parseVersionNumber("minor", prop.getProperty("minor")),
+                parseVersionNumber("patch", prop.getProperty("patch")),
+                SemanticVersion.NO_BUILD_NUMBER, prop.getProperty("artifact-type"));
+    }
+
+    /**
+     * getLocalVersion: Read the stored version from the configured version source. With the `git-tag` source major,
+     * minor and patch come from the newest SemVer tag reachable from HEAD, the artifact type is still read from the
+     * version properties (which may be empty).
+     *
+     * @param prop Properties
+     * @param versionSource String
+     * @param rootDir File any directory inside the git repository
+     *
+     * @return SemanticVersion
+     * @throws IOException an Exception
+     */
+    public static SemanticVersion getLocalVersion(final Properties prop, final String versionSource, final File rootDir) throws IOException {
+        if (!SemanticVersioningWithBuildNumberPluginExtension.VERSION_SOURCE_GIT_TAG.equals(versionSource)) {
+            return getLocalVersion(prop);
+        }
+        final GitTagVersion tag = GitTagVersion.resolve(rootDir);
+
+        if (tag == null) {
+            System.out.println("Warning: " + rootDir + " is not inside a git repository - defaulting version to 0.0.0");
+            return new SemanticVersion(0, 0, 0, SemanticVersion.NO_BUILD_NUMBER, prop.getProperty("artifact-type"));
+        }
+        return tag.getVersion().withPreRelease(prop.getProperty("artifact-type"));
+    }
+
+    /**
+     * setLocalVersion: Store the major, minor and patch version of the given version in the version properties.
+     *
+     * @param prop Properties
+     * @param version SemanticVersion
+     */
+    public static void setLocalVersion(final Properties prop, final SemanticVersion version) {
+        prop.setProperty("major", String.valueOf(version.getMajor()));
+        prop.setProperty("minor", String.valueOf(version.getMinor()));
+        prop.setProperty("patch", String.valueOf(version.getPatch()));
+    }
+
+    /**
+     * getProjectVersion: Read the version currently loaded into the project properties.
+     *
+     * @param project Project
+     * @param extension SemanticVersioningWithBuildNumberPluginExtension
+     *
+     * @return SemanticVersion
+     */
+    private static SemanticVersion getProjectVersion(final Project project, final SemanticVersioningWithBuildNumberPluginExtension extension) {
+        final Object artifactType = project.findProperty("artifact-type");
+
+        if (extension != null && extension.isGitTagVersionSource()) {
+            final Properties prop = new Properties();
+
+            if (artifactType != null) {
+                prop.setProperty("artifact-type", artifactType.toString());
+            }
+            try {
+                return getLocalVersion(prop, extension.getEffectiveVersionSource().get(), project.getRootDir());
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        return new SemanticVersion(parseVersionNumber("major", project.findProperty("major")),
+                parseVersionNumber("minor", project.findProperty("minor")),
+                parseVersionNumber("patch", project.findProperty("patch")),
+                SemanticVersion.NO_BUILD_NUMBER, artifactType != null ? artifactType.toString() : null);
+    }
+
+    /**
+     * getExtension: The `versionConfig` extension of the project, looked up once by every helper taking a project.
+     *
+     * @param project Project
+     *
+     * @return SemanticVersioningWithBuildNumberPluginExtension or null if the plugin is not applied
+     */
+    private static SemanticVersioningWithBuildNumberPluginExtension getExtension(final Project project) {
+        return project.getExtensions().findByType(SemanticVersioningWithBuildNumberPluginExtension.class);
+    }
+
+    /**
+     * parseVersionNumber:
+     *
+     * @param key String
+     * @param value Object
+     *
+     * @return int
+     */
+    private static int parseVersionNumber(final String key, final Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Version property '" + key + "' is not set");
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (final NumberFormatException ex) {
+            throw new IllegalArgumentException("Version property '" + key + "' is not a number: " + value, ex);
+        }
+    }
+
+    /**
+     * readBuildNumber: Read the build number from the ENV VAR. It is used as given, a CI build number that is not a
+     * plain number (e.g. `20240101.3` on Azure Pipelines) is included in the version verbatim.
+     *
+     * @param ciBuildNumberEnvVarName String
+     *
+     * @return String the build number or null if the ENV VAR is not set, a value that can not be part of a version fails
+     * the build when the version is generated (see {@link SemanticVersion#withBuild})
+     */
+    private static String readBuildNumber(final String ciBuildNumberEnvVarName) {
+        final String buildNumber = System.getenv(ciBuildNumberEnvVarName);
+
+        return buildNumber == null || buildNumber.trim().isEmpty() ? null : buildNumber.trim();
+    }
+
+    /**
+     * setProjectArtifactType: Keep the project `artifact-type` property in sync with the extension defined type.
+     *
+     * @param project Project
+     * @param artifactType String
+     */
+    private static void setProjectArtifactType(final Project project, final String artifactType) {
+        if (artifactType != null && !artifactType.isEmpty()) {
+            project.setProperty("artifact-type", artifactType);
         }
     }
 }
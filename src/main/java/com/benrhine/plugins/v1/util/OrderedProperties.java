@@ -25,7 +25,34 @@ public final class OrderedProperties extends Properties {
      */
     private final Map<Object, Object> linkMap = new LinkedHashMap<>();
 
+    /**
+     * Read only properties reject every modification, see {@link #asReadOnly()}
+     */
+    private boolean readOnly = false;
+
+    /**
+     * asReadOnly: Create a read only copy of these properties that can be safely shared between projects.
+     *
+     * @return OrderedProperties
+     */
+    public OrderedProperties asReadOnly() {
+        final OrderedProperties copy = new OrderedProperties();
+        copy.linkMap.putAll(linkMap);
+        copy.readOnly = true;
+        return copy;
+    }
+
+    /**
+     * isReadOnly: Are these properties read only?
+     *
+     * @return boolean
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     public void clear() {
+        checkWritable();
         linkMap.clear();
     }
 
@@ -46,7 +73,7 @@ public final class OrderedProperties extends Properties {
     }
 
     public Set entrySet() {
-        return linkMap.entrySet();
+        return readOnly ? Collections.unmodifiableSet(linkMap.entrySet()) : linkMap.entrySet();
     }
 
     public boolean equals(final Object o) {
@@ -74,7 +101,7 @@ public final class OrderedProperties extends Properties {
     }
 
     public Set keySet() {
-        return linkMap.keySet();
+        return readOnly ? Collections.unmodifiableSet(linkMap.keySet()) : linkMap.keySet();
     }
 
     public void list(final PrintStream out) {
@@ -94,15 +121,27 @@ public final class OrderedProperties extends Properties {
     }
 
     public Object put(final Object key, final Object value) {
+        checkWritable();
         return linkMap.put(key, value);
     }
 
+    public Object remove(final Object key) {
+        checkWritable();
+        return linkMap.remove(key);
+    }
+
     public int size() {
         return linkMap.size();
     }
 
     public Collection values() {
-        return linkMap.values();
+        return readOnly ? Collections.unmodifiableCollection(linkMap.values()) : linkMap.values();
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Read only properties can not be modified");
+        }
     }
 
     //for test purpose only
@@ -0,0 +1,304 @@
+package com.benrhine.plugins.v1.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * PropertiesFileEditor: Streaming editor that updates individual keys of a properties file in place. The file is read
+ * one logical line at a time, only the value of the lines holding the requested keys is replaced and every other byte
+ * (comments, blank lines, ordering, escaping and line endings) is passed through untouched. Keys that are not in the
+ * file yet are appended at the end.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class PropertiesFileEditor {
+
+    private PropertiesFileEditor() {
+    }
+
+    /**
+     * patch: Update the given keys of the properties file. The file is patched in memory and only replaces the original
+     * (atomically, through a temporary file) if a value actually changed, otherwise nothing is written at all.
+     *
+     * @param file File
+     * @param values Map of key to unescaped value
+     * @return boolean true if the file was written
+     * @throws IOException an Exception
+     */
+    public static boolean patch(final File file, final Map<String, String> values) throws IOException {
+        return AtomicFiles.write(file.toPath(), output -> {
+            if (!file.isFile()) {
+                return patch(new ByteArrayInputStream(new byte[0]), output, values);
+            }
+            try (InputStream input = Files.newInputStream(file.toPath())) {
+                return patch(input, output, values);
+            }
+        });
+    }
+
+    /**
+     * patch: Copy the properties from the input to the output replacing the values of the given keys.
+     *
+     * @param input InputStream
+     * @param output OutputStream
+     * @param values Map of key to unescaped value
+     * @return boolean true if anything differs from the input
+     * @throws IOException an Exception
+     */
+    public static boolean patch(final InputStream input, final OutputStream output, final Map<String, String> values) throws IOException {
+        final Map<String, byte[]> replacements = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            replacements.put(entry.getKey(), escape(entry.getValue(), false));
+        }
+        final Set<String> found = new HashSet<>();
+        final PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(input), 1);
+        final LineBuffer line = new LineBuffer();
+        byte[] lineSeparator = null;
+        boolean changed = false;
+
+        while (line.read(in)) {
+            if (lineSeparator == null && line.terminatorLength > 0) {
+                lineSeparator = line.terminator();
+            }
+            final String key = line.key();
+            final byte[] replacement = key != null ? replacements.get(key) : null;
+
+            if (replacement == null) {
+                output.write(line.bytes, 0, line.length);
+                continue;
+            }
+            found.add(key);
+            final int valueEnd = line.length - line.terminatorLength;
+
+            if (line.valueEquals(replacement)) {
+                output.write(line.bytes, 0, line.length);
+            } else {
+                output.write(line.bytes, 0, line.valueStart);
+                output.write(replacement);
+                output.write(line.bytes, valueEnd, line.terminatorLength);
+                changed = true;
+            }
+        }
+        // Append keys that are not in the file yet
+        for (final Map.Entry<String, byte[]> entry : replacements.entrySet()) {
+            if (found.contains(entry.getKey())) {
+                continue;
+            }
+            if (lineSeparator == null) {
+                lineSeparator = "\n".getBytes(StandardCharsets.ISO_8859_1);
+            }
+            if (line.hasContent && !line.lastWasTerminated) {
+                output.write(lineSeparator);
+            }
+            output.write(escape(entry.getKey(), true));
+            output.write('=');
+            output.write(entry.getValue());
+            output.write(lineSeparator);
+            line.hasContent = true;
+            line.lastWasTerminated = true;
+            changed = true;
+        }
+        output.flush();
+        return changed;
+    }
+
+    /**
+     * escape: Escape a key or value the same way `Properties.store` does.
+     *
+     * @param value String
+     * @param escapeSpace boolean escape every space (keys) or only a leading space (values)
+     * @return byte[]
+     */
+    static byte[] escape(final String value, final boolean escapeSpace) {
+        final StringBuilder escaped = new StringBuilder(value.length() + 8);
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case ' ':
+                    escaped.append(i == 0 || escapeSpace ? "\\ " : " ");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\f':
+                    escaped.append("\\f");
+                    break;
+                case '\\':
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    escaped.append('\\').append(c);
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        escaped.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * LineBuffer: Re-usable buffer holding a single logical line, including continuation lines and the terminator.
+     */
+    private static final class LineBuffer {
+        private byte[] bytes = new byte[256];
+        private int length;
+        private int terminatorLength;
+        private int valueStart;
+        private boolean hasContent;
+        private boolean lastWasTerminated;
+
+        /**
+         * read: Read the next logical line.
+         *
+         * @param in PushbackInputStream
+         * @return boolean false at the end of the input
+         * @throws IOException an Exception
+         */
+        boolean read(final PushbackInputStream in) throws IOException {
+            length = 0;
+            terminatorLength = 0;
+            boolean comment = false;
+            boolean leading = true;
+            int c;
+
+            while ((c = in.read()) != -1) {
+                if (leading && c != ' ' && c != '\t' && c != '\f') {
+                    leading = false;
+                    comment = c == '#' || c == '!';
+                }
+                if (c == '\r' || c == '\n') {
+                    final int end = length;
+                    append(c);
+                    if (c == '\r') {
+                        final int next = in.read();
+                        if (next == '\n') {
+                            append(next);
+                        } else if (next != -1) {
+                            in.unread(next);
+                        }
+                    }
+                    terminatorLength = length - end;
+                    // A line ending with an odd number of backslashes continues on the next line, comments never do
+                    if (comment || leading || !isContinued(end)) {
+                        break;
+                    }
+                    terminatorLength = 0;
+                    continue;
+                }
+                append(c);
+            }
+            if (length > 0) {
+                hasContent = true;
+                lastWasTerminated = terminatorLength > 0;
+            }
+            return length > 0;
+        }
+
+        /**
+         * key: Return the key of the line, or null for comments, blank lines and keys containing escapes.
+         *
+         * @return String
+         */
+        String key() {
+            final int end = length - terminatorLength;
+            int position = 0;
+
+            while (position < end && isWhitespace(bytes[position])) {
+                position++;
+            }
+            if (position == end || bytes[position] == '#' || bytes[position] == '!') {
+                return null;
+            }
+            final int keyStart = position;
+
+            while (position < end && bytes[position] != '=' && bytes[position] != ':' && !isWhitespace(bytes[position])) {
+                if (bytes[position] == '\\') {
+                    return null;
+                }
+                position++;
+            }
+            final String key = new String(bytes, keyStart, position - keyStart, StandardCharsets.ISO_8859_1);
+
+            while (position < end && isWhitespace(bytes[position])) {
+                position++;
+            }
+            if (position < end && (bytes[position] == '=' || bytes[position] == ':')) {
+                position++;
+                while (position < end && isWhitespace(bytes[position])) {
+                    position++;
+                }
+            }
+            valueStart = position;
+            return key;
+        }
+
+        /**
+         * valueEquals: Compare the raw value of the line with the given escaped value.
+         *
+         * @param value byte[]
+         * @return boolean
+         */
+        boolean valueEquals(final byte[] value) {
+            final int end = length - terminatorLength;
+
+            if (end - valueStart != value.length) {
+                return false;
+            }
+            for (int i = 0; i < value.length; i++) {
+                if (bytes[valueStart + i] != value[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        byte[] terminator() {
+            final byte[] terminator = new byte[terminatorLength];
+            System.arraycopy(bytes, length - terminatorLength, terminator, 0, terminatorLength);
+            return terminator;
+        }
+
+        private boolean isContinued(final int end) {
+            int backslashes = 0;
+
+            for (int i = end - 1; i >= 0 && bytes[i] == '\\'; i--) {
+                backslashes++;
+            }
+            return backslashes % 2 == 1;
+        }
+
+        private void append(final int c) {
+            if (length == bytes.length) {
+                final byte[] grown = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+            bytes[length++] = (byte) c;
+        }
+
+        private static boolean isWhitespace(final byte c) {
+            return c == ' ' || c == '\t' || c == '\f';
+        }
+    }
+}
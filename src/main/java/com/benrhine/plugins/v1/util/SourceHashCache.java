@@ -0,0 +1,302 @@
+package com.benrhine.plugins.v1.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * SourceHashCache: Content digest of a module's source trees backed by a persistent per file hash cache. A file whose
+ * path, size and modification time match the cache is not read again, so checking an unchanged tree only costs the
+ * directory walk. Files that are new or changed are hashed in parallel on every core.
+ * <p>
+ * Like git, a file modified within {@link #RACY_MILLIS} of the walk is hashed but not cached: it could still be written
+ * again without its size or modification time changing.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class SourceHashCache {
+    static final long RACY_MILLIS = 2000;
+    private static final int MAGIC = 0x53564843; // SVHC
+    private static final int FORMAT = 1;
+    private static final int HASH_LENGTH = 32;
+
+    private final File cacheFile;
+    private final Map<String, Entry> entries;
+    private Map<String, Entry> seen = new HashMap<>();
+    private int hashedFiles;
+
+    private SourceHashCache(final File cacheFile, final Map<String, Entry> entries) {
+        this.cacheFile = cacheFile;
+        this.entries = entries;
+    }
+
+    /**
+     * load: Load the cache file, an unreadable or missing cache is started empty.
+     *
+     * @param cacheFile File
+     * @return SourceHashCache
+     */
+    public static SourceHashCache load(final File cacheFile) {
+        final Map<String, Entry> entries = new HashMap<>();
+
+        if (cacheFile.isFile()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath()), 1 << 16))) {
+                if (input.readInt() == MAGIC && input.readInt() == FORMAT) {
+                    final int count = input.readInt();
+
+                    for (int i = 0; i < count; i++) {
+                        final String path = input.readUTF();
+                        final long size = input.readLong();
+                        final long modified = input.readLong();
+                        final byte[] hash = new byte[HASH_LENGTH];
+                        input.readFully(hash);
+                        entries.put(path, new Entry(size, modified, hash));
+                    }
+                }
+            } catch (final IOException ex) {
+                System.out.println("Warning: Ignoring the unreadable hash cache " + cacheFile + " - " + ex.getMessage());
+                entries.clear();
+            }
+        }
+        return new SourceHashCache(cacheFile, entries);
+    }
+
+    /**
+     * digest: The digest of the content and relative paths of every file under the given roots, missing roots are
+     * skipped.
+     *
+     * @param roots List of directories
+     * @return String hex digest
+     * @throws IOException an Exception
+     */
+    public String digest(final List<File> roots) throws IOException {
+        final long racyAfter = System.currentTimeMillis() - RACY_MILLIS;
+        final List<Scanned> files = new ArrayList<>();
+
+        for (int i = 0; i < roots.size(); i++) {
+            walk(i, roots.get(i).toPath(), files);
+        }
+        files.sort((a, b) -> a.relativePath.compareTo(b.relativePath));
+        final List<Scanned> changed = new ArrayList<>();
+        seen = new HashMap<>();
+
+        for (final Scanned file : files) {
+            final Entry cached = entries.get(file.path);
+
+            if (cached != null && cached.size == file.size && cached.modified == file.modified) {
+                file.hash = cached.hash;
+            } else {
+                changed.add(file);
+            }
+        }
+        hash(changed);
+        hashedFiles = changed.size();
+        final MessageDigest digest = sha256();
+
+        for (final Scanned file : files) {
+            digest.update(file.relativePath.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(file.hash);
+
+            if (file.modified < racyAfter) {
+                seen.put(file.path, new Entry(file.size, file.modified, file.hash));
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * getHashedFiles: How many files the last {@link #digest(List)} had to read.
+     *
+     * @return int
+     */
+    public int getHashedFiles() {
+        return hashedFiles;
+    }
+
+    /**
+     * save: Write the files seen by the last {@link #digest(List)} back to the cache file, entries of files that no
+     * longer exist are dropped. Nothing is written if the cache did not change.
+     *
+     * @throws IOException an Exception
+     */
+    public void save() throws IOException {
+        if (seen.equals(entries) && cacheFile.isFile()) {
+            return;
+        }
+        Files.createDirectories(cacheFile.getAbsoluteFile().getParentFile().toPath());
+        AtomicFiles.write(cacheFile.toPath(), stream -> {
+            final DataOutputStream output = new DataOutputStream(stream);
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT);
+            output.writeInt(seen.size());
+
+            for (final Map.Entry<String, Entry> entry : seen.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue().size);
+                output.writeLong(entry.getValue().modified);
+                output.write(entry.getValue().hash);
+            }
+            output.flush();
+            return true;
+        });
+        entries.clear();
+        entries.putAll(seen);
+    }
+
+    private static void walk(final int rootIndex, final Path root, final List<Scanned> files) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                if (attributes.isRegularFile()) {
+                    files.add(new Scanned(file.toString(), rootIndex + ":" + root.relativize(file).toString().replace(File.separatorChar, '/'),
+                            attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * hash: Hash the given files on every core, each thread reuses its own digest and buffer.
+     */
+    private static void hash(final List<Scanned> files) throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+        final int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.size() / 16 + 1));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                futures.add(executor.submit(() -> {
+                    final MessageDigest digest = sha256();
+                    final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+                    for (int i = offset; i < files.size(); i += threads) {
+                        files.get(i).hash = hashFile(files.get(i).path, digest, buffer);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException ex) {
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing the sources", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] hashFile(final String path, final MessageDigest digest, final ByteBuffer buffer) throws IOException {
+        digest.reset();
+
+        try (FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (final NoSuchFileException ex) {
+            // Deleted since the walk, hashed as empty so the digest still changes
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+        for (final byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Entry: Cached hash of a file.
+     */
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final byte[] hash;
+
+        private Entry(final long size, final long modified, final byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry other = (Entry) o;
+            return size == other.size && modified == other.modified && Arrays.equals(hash, other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(modified);
+        }
+    }
+
+    /**
+     * Scanned: A file found by the walk.
+     */
+    private static final class Scanned {
+        private final String path;
+        private final String relativePath;
+        private final long size;
+        private final long modified;
+        private byte[] hash;
+
+        private Scanned(final String path, final String relativePath, final long size, final long modified) {
+            this.path = path;
+            this.relativePath = relativePath;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.benrhine.plugins.v1.util;
+
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.getLocalVersion;
+import static com.benrhine.plugins.v1.util.ExtensionHelpers.setLocalVersion;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.benrhine.plugins.v1.SemanticVersion;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionFileBatch: Update the version of many version properties files as a single all or nothing operation.
+ * <p>
+ * Every file is locked first (in path order, so two batches can never deadlock), then all files are read, updated and
+ * staged to a temporary file next to them in parallel on a bounded number of threads. Only when every file is staged
+ * are the temporary files moved over the version files. If staging fails nothing has been changed, if a move fails the
+ * files that were already replaced are written back with their original content.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionFileBatch {
+    private static final String[] UPDATED_KEYS = {"major", "minor", "patch"};
+
+    private VersionFileBatch() {
+    }
+
+    /**
+     * Update: Change applied to the version of every file.
+     */
+    public interface Update {
+        SemanticVersion apply(SemanticVersion version);
+    }
+
+    /**
+     * update: Apply the update to every given version file.
+     *
+     * @param files Collection of version files, duplicates are updated once
+     * @param update Update
+     * @param parallelism int how many files are read and staged at the same time
+     * @param lockTimeoutMillis long how long to wait for the lock of each file
+     * @return Map of version file to its result, in path order
+     * @throws IOException an Exception, no version file was changed
+     */
+    public static Map<File, Result> update(final Collection<File> files, final Update update, final int parallelism,
+                                           final long lockTimeoutMillis) throws IOException {
+        final TreeSet<File> sorted = new TreeSet<>();
+
+        for (final File file : files) {
+            sorted.add(file.getAbsoluteFile());
+        }
+        final List<VersionFileLock> locks = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, sorted.size())));
+
+        try {
+            for (final File file : sorted) {
+                locks.add(VersionFileLock.acquire(file, lockTimeoutMillis));
+            }
+            final List<Future<Staged>> futures = new ArrayList<>();
+
+            for (final File file : sorted) {
+                futures.add(executor.submit(() -> stage(file, update)));
+            }
+            final List<Staged> staged = collect(futures);
+            commit(staged);
+
+            final Map<File, Result> results = new LinkedHashMap<>();
+            for (final Staged file : staged) {
+                results.put(file.file, file.result);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+            release(locks);
+        }
+    }
+
+    /**
+     * stage: Read the file, apply the update and write the new content to a temporary file.
+     */
+    private static Staged stage(final File file, final Update update) throws IOException {
+        final byte[] original = Files.readAllBytes(file.toPath());
+        final Properties prop = new OrderedProperties();
+        prop.load(new ByteArrayInputStream(original));
+        final SemanticVersion oldVersion = getLocalVersion(prop);
+        final SemanticVersion newVersion = update.apply(oldVersion);
+        setLocalVersion(prop, newVersion);
+
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (final String key : UPDATED_KEYS) {
+            values.put(key, prop.getProperty(key));
+        }
+        final Path temp = AtomicFiles.stage(file.toPath(), output -> {
+            PropertiesFileEditor.patch(new ByteArrayInputStream(original), output, values);
+            return true;
+        });
+        return new Staged(file, original, temp, new Result(oldVersion, newVersion));
+    }
+
+    /**
+     * collect: Wait for every file to be staged, if any failed delete the temporary files of all others.
+     */
+    private static List<Staged> collect(final List<Future<Staged>> futures) throws IOException {
+        final List<Staged> staged = new ArrayList<>();
+        IOException failure = null;
+
+        for (final Future<Staged> future : futures) {
+            try {
+                staged.add(future.get());
+            } catch (final ExecutionException ex) {
+                final IOException cause = ex.getCause() instanceof IOException ? (IOException) ex.getCause() :
+                        new IOException(ex.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failure = new IOException("Interrupted while updating the version files", ex);
+                cancel(futures, staged);
+                break;
+            }
+        }
+        if (failure != null) {
+            for (final Staged file : staged) {
+                Files.deleteIfExists(file.temp);
+            }
+            throw failure;
+        }
+        return staged;
+    }
+
+    /**
+     * cancel: Cancel the files still being staged, the already staged ones are added for clean up. A file interrupted
+     * while being staged deletes its own temporary file.
+     */
+    private static void cancel(final List<Future<Staged>> futures, final List<Staged> staged) {
+        for (final Future<Staged> future : futures) {
+            // Cancelling fails for files that are already done, getting their result does not block
+            if (!future.cancel(true)) {
+                try {
+                    final Staged file = future.get();
+
+                    if (!staged.contains(file)) {
+                        staged.add(file);
+                    }
+                } catch (final ExecutionException | InterruptedException ex) {
+                    // Failed files have nothing to clean up
+                }
+            }
+        }
+    }
+
+    /**
+     * commit: Move every staged file over its version file, rolling back the moved files if one fails.
+     */
+    private static void commit(final List<Staged> staged) throws IOException {
+        final List<Staged> committed = new ArrayList<>();
+
+        try {
+            for (final Staged file : staged) {
+                AtomicFiles.commit(file.temp, file.file.toPath());
+                committed.add(file);
+            }
+        } catch (final IOException ex) {
+            for (final Staged file : committed) {
+                try {
+                    AtomicFiles.write(file.file.toPath(), file.original);
+                } catch (final IOException rollbackFailure) {
+                    ex.addSuppressed(rollbackFailure);
+                }
+            }
+            for (final Staged file : staged) {
+                Files.deleteIfExists(file.temp);
+            }
+            throw ex;
+        }
+    }
+
+    private static void release(final List<VersionFileLock> locks) throws IOException {
+        IOException failure = null;
+
+        for (final VersionFileLock lock : locks) {
+            try {
+                lock.close();
+            } catch (final IOException ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Result: The version of a file before and after the update.
+     */
+    public static final class Result {
+        private final SemanticVersion oldVersion;
+        private final SemanticVersion newVersion;
+
+        public Result(final SemanticVersion oldVersion, final SemanticVersion newVersion) {
+            this.oldVersion = oldVersion;
+            this.newVersion = newVersion;
+        }
+
+        public SemanticVersion getOldVersion() {
+            return oldVersion;
+        }
+
+        public SemanticVersion getNewVersion() {
+            return newVersion;
+        }
+    }
+
+    /**
+     * Staged: A version file with its original content and the staged new content.
+     */
+    private static final class Staged {
+        private final File file;
+        private final byte[] original;
+        private final Path temp;
+        private final Result result;
+
+        private Staged(final File file, final byte[] original, final Path temp, final Result result) {
+            this.file = file;
+            this.original = original;
+            this.temp = temp;
+            this.result = result;
+        }
+    }
+}
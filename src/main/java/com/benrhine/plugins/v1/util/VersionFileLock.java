@@ -0,0 +1,188 @@
+package com.benrhine.plugins.v1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionFileLock: Exclusive lock around the read, update and write cycle of a version properties file. Threads of the
+ * same Gradle process are coordinated through an in memory lock and separate Gradle processes (parallel CI jobs on the
+ * same checkout) through a `FileChannel` lock on a hidden `.<file name>.lock` file next to the version file. A lock file
+ * is used rather than the version file itself because the version file is replaced by an atomic move on every write.
+ * Waiting is bounded, if the lock can not be acquired within the timeout a {@link LockTimeoutException} is thrown.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionFileLock implements AutoCloseable {
+    private static final long INITIAL_BACKOFF_MILLIS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 200;
+    private static final Map<String, ProcessLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final ProcessLock processLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final long waitNanos;
+    private final boolean contended;
+
+    private VersionFileLock(final ProcessLock processLock, final FileChannel channel, final FileLock fileLock,
+                            final long waitNanos, final boolean contended) {
+        this.processLock = processLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+        this.waitNanos = waitNanos;
+        this.contended = contended;
+    }
+
+    /**
+     * acquire: Acquire the lock of the given version file, waiting at most the given timeout.
+     *
+     * @param file File the version file to lock
+     * @param timeoutMillis long
+     * @return VersionFileLock to be closed once the version file has been written
+     * @throws IOException an Exception, a {@link LockTimeoutException} if the timeout expired
+     */
+    public static VersionFileLock acquire(final File file, final long timeoutMillis) throws IOException {
+        final File absolute = file.getAbsoluteFile();
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        final ProcessLock processLock = ProcessLock.retain(absolute.getPath());
+        boolean contended = false;
+
+        try {
+            if (!processLock.lock.tryLock()) {
+                contended = true;
+                if (!processLock.lock.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    processLock.release();
+                    throw timeout(absolute, timeoutMillis);
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            processLock.release();
+            throw new IOException("Interrupted while waiting for the lock on " + absolute, ex);
+        }
+        FileChannel channel = null;
+
+        try {
+            channel = FileChannel.open(new File(absolute.getParentFile(), "." + absolute.getName() + ".lock").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            long backoff = INITIAL_BACKOFF_MILLIS;
+            FileLock fileLock;
+
+            while ((fileLock = channel.tryLock()) == null) {
+                contended = true;
+                final long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    throw timeout(absolute, timeoutMillis);
+                }
+                Thread.sleep(Math.min(backoff, Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining))));
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+            return new VersionFileLock(processLock, channel, fileLock, System.nanoTime() - start, contended);
+        } catch (final IOException | RuntimeException ex) {
+            closeQuietly(channel);
+            processLock.unlock();
+            throw ex;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            closeQuietly(channel);
+            processLock.unlock();
+            throw new IOException("Interrupted while waiting for the lock on " + absolute, ex);
+        }
+    }
+
+    /**
+     * getWaitNanos: How long it took to acquire this lock.
+     *
+     * @return long
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * isContended: Was the lock held by another thread or build when it was requested.
+     *
+     * @return boolean
+     */
+    public boolean isContended() {
+        return contended;
+    }
+
+    /**
+     * close: Release the lock.
+     *
+     * @throws IOException an Exception
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            fileLock.release();
+        } finally {
+            closeQuietly(channel);
+            processLock.unlock();
+        }
+    }
+
+    private static LockTimeoutException timeout(final File file, final long timeoutMillis) {
+        return new LockTimeoutException("Timed out after " + timeoutMillis + "ms waiting for the lock on " + file +
+                " - another build is updating the version");
+    }
+
+    private static void closeQuietly(final FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (final IOException ex) {
+                // Nothing left to do, the lock is released with the channel
+            }
+        }
+    }
+
+    /**
+     * LockTimeoutException: Thrown when the lock could not be acquired in time.
+     */
+    public static final class LockTimeoutException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LockTimeoutException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * ProcessLock: The in memory lock of a version file, only kept while a thread holds or waits for it so the
+     * locks of a long living daemon do not pile up.
+     */
+    private static final class ProcessLock {
+        private final String path;
+        private final ReentrantLock lock = new ReentrantLock();
+        private int users;
+
+        private ProcessLock(final String path) {
+            this.path = path;
+        }
+
+        private static ProcessLock retain(final String path) {
+            return PROCESS_LOCKS.compute(path, (key, current) -> {
+                final ProcessLock processLock = current != null ? current : new ProcessLock(key);
+                processLock.users++;
+                return processLock;
+            });
+        }
+
+        private void release() {
+            PROCESS_LOCKS.computeIfPresent(path, (key, current) -> --current.users == 0 ? null : current);
+        }
+
+        private void unlock() {
+            lock.unlock();
+            release();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.benrhine.plugins.v1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * VersionPropertiesScanner: Read only the version keys (see {@link #KEYS}) of a properties file. The file is streamed
+ * through a fixed size buffer, every other entry is skipped byte by byte without creating a key or value, so the cost of
+ * reading the version from a large shared `gradle.properties` does not depend on the number of entries in it. Every scan
+ * uses its own scanner, nothing is kept between scans.
+ * <p>
+ * The file is read like {@link Properties#load(InputStream)} does: ISO-8859-1, `#` and `!` comments, `=`, `:` or
+ * whitespace separators and lines continued with a backslash. A version key or value that uses an escape sequence is
+ * rare enough that the file is then loaded in full instead.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionPropertiesScanner {
+    /**
+     * The keys read from the file
+     */
+    public static final String[] KEYS = {"major", "minor", "patch", "artifact-type", "remote-build"};
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[][] KEY_BYTES = new byte[KEYS.length][];
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_BYTES[i] = KEYS[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static final int LINE_START = 0;
+    private static final int COMMENT = 1;
+    private static final int KEY = 2;
+    private static final int KEY_END = 3;
+    private static final int VALUE_START = 4;
+    private static final int VALUE = 5;
+    private static final int SKIP = 6;
+    private static final int CONTINUATION = 7;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] value = new byte[64];
+
+    private int state;
+    private int candidates;
+    private int keyLength;
+    private int matched;
+    private int valueLength;
+    private boolean escaped;
+    private boolean afterCarriageReturn;
+    private String[] values;
+
+    private VersionPropertiesScanner() {
+    }
+
+    /**
+     * scan: Read the version keys of the given properties file.
+     *
+     * @param file File
+     * @return OrderedProperties read only, holding the version keys found in the file
+     * @throws IOException an Exception
+     */
+    public static OrderedProperties scan(final File file) throws IOException {
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            return scan(input, file);
+        }
+    }
+
+    /**
+     * scan: Read the version keys from the given stream.
+     *
+     * @param input InputStream
+     * @return OrderedProperties read only, holding the version keys found in the stream
+     * @throws IOException an Exception
+     */
+    static OrderedProperties scan(final InputStream input) throws IOException {
+        return scan(input, null);
+    }
+
+    private static OrderedProperties scan(final InputStream input, final File file) throws IOException {
+        final String[] found = new VersionPropertiesScanner().read(input);
+
+        if (found == null) {
+            // A version key or value uses an escape sequence
+            return fallback(file);
+        }
+        final OrderedProperties prop = new OrderedProperties();
+
+        for (int i = 0; i < KEYS.length; i++) {
+            if (found[i] != null) {
+                prop.setProperty(KEYS[i], found[i]);
+            }
+        }
+        return prop.asReadOnly();
+    }
+
+    private static OrderedProperties fallback(final File file) throws IOException {
+        if (file == null) {
+            throw new IOException("The version keys use escape sequences, the properties can only be loaded from a file");
+        }
+        final Properties all = ExtensionHelpers.getLocalProperties(file.getPath());
+        final OrderedProperties prop = new OrderedProperties();
+
+        for (final String key : KEYS) {
+            final String found = all.getProperty(key);
+
+            if (found != null) {
+                prop.setProperty(key, found);
+            }
+        }
+        return prop.asReadOnly();
+    }
+
+    /**
+     * read: Scan the stream, the values are indexed like {@link #KEYS}.
+     *
+     * @return String[] or null if the stream has to be loaded in full
+     */
+    private String[] read(final InputStream input) throws IOException {
+        state = LINE_START;
+        values = new String[KEYS.length];
+        int count;
+
+        while ((count = input.read(buffer, 0, BUFFER_SIZE)) != -1) {
+            for (int i = 0; i < count; i++) {
+                if (!accept(buffer[i])) {
+                    return null;
+                }
+            }
+        }
+        // The last line may not be terminated
+        return accept((byte) '\n') ? values : null;
+    }
+
+    /**
+     * accept: Advance the scanner by one byte.
+     *
+     * @return boolean false if the stream has to be loaded in full
+     */
+    private boolean accept(final byte b) {
+        final boolean lineEnd = b == '\n' || b == '\r';
+
+        switch (state) {
+            case LINE_START:
+                if (isWhitespace(b) || lineEnd) {
+                    return true;
+                }
+                if (b == '#' || b == '!') {
+                    state = COMMENT;
+                    return true;
+                }
+                state = KEY;
+                candidates = (1 << KEYS.length) - 1;
+                keyLength = 0;
+                return accept(b);
+            case COMMENT:
+                if (lineEnd) {
+                    state = LINE_START;
+                }
+                return true;
+            case KEY:
+                if (b == '\\') {
+                    // An escaped or continued key, only a version key needs to be read exactly
+                    if (candidates == 0) {
+                        return skip(b);
+                    }
+                    return false;
+                }
+                if (lineEnd || isWhitespace(b) || b == '=' || b == ':') {
+                    endKey();
+                    if (matched < 0) {
+                        return lineEnd ? startLine() : skip(b);
+                    }
+                    valueLength = 0;
+                    if (lineEnd) {
+                        return endValue();
+                    }
+                    state = b == '=' || b == ':' ? VALUE_START : KEY_END;
+                    return true;
+                }
+                matchKey(b);
+                return true;
+            case KEY_END:
+                if (isWhitespace(b)) {
+                    return true;
+                }
+                if (b == '=' || b == ':') {
+                    state = VALUE_START;
+                    return true;
+                }
+                state = VALUE_START;
+                return accept(b);
+            case VALUE_START:
+                if (isWhitespace(b)) {
+                    return true;
+                }
+                state = VALUE;
+                return accept(b);
+            case VALUE:
+                if (b == '\\') {
+                    return false;
+                }
+                if (lineEnd) {
+                    return endValue();
+                }
+                appendValue(b);
+                return true;
+            case SKIP:
+                return skip(b);
+            case CONTINUATION:
+                if (afterCarriageReturn && b == '\n') {
+                    afterCarriageReturn = false;
+                    return true;
+                }
+                afterCarriageReturn = false;
+                if (isWhitespace(b)) {
+                    return true;
+                }
+                state = SKIP;
+                return skip(b);
+            default:
+                throw new IllegalStateException("Unknown state " + state);
+        }
+    }
+
+    /**
+     * skip: Skip the rest of a logical line, a line ending in an odd number of backslashes is continued.
+     */
+    private boolean skip(final byte b) {
+        if (state != SKIP) {
+            state = SKIP;
+            escaped = false;
+        }
+        if (b == '\n' || b == '\r') {
+            if (escaped) {
+                state = CONTINUATION;
+                afterCarriageReturn = b == '\r';
+            } else {
+                state = LINE_START;
+            }
+            escaped = false;
+        } else {
+            escaped = b == '\\' && !escaped;
+        }
+        return true;
+    }
+
+    private boolean startLine() {
+        state = LINE_START;
+        return true;
+    }
+
+    private void matchKey(final byte b) {
+        for (int i = 0; i < KEY_BYTES.length; i++) {
+            final int bit = 1 << i;
+
+            if ((candidates & bit) != 0 && (keyLength >= KEY_BYTES[i].length || KEY_BYTES[i][keyLength] != b)) {
+                candidates &= ~bit;
+            }
+        }
+        keyLength++;
+    }
+
+    private void endKey() {
+        matched = -1;
+
+        for (int i = 0; i < KEY_BYTES.length; i++) {
+            if ((candidates & (1 << i)) != 0 && KEY_BYTES[i].length == keyLength) {
+                matched = i;
+            }
+        }
+    }
+
+    private boolean endValue() {
+        // The last occurrence of a key wins, like Properties#load
+        values[matched] = new String(value, 0, valueLength, StandardCharsets.ISO_8859_1);
+        state = LINE_START;
+        return true;
+    }
+
+    private void appendValue(final byte b) {
+        if (valueLength == value.length) {
+            value = Arrays.copyOf(value, value.length * 2);
+        }
+        value[valueLength++] = b;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\f';
+    }
+}
@@ -0,0 +1,174 @@
+package com.benrhine.plugins.v1;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * ConfigurationPerformanceTest: Measure the configuration time, the writes to `gradle.properties` and the heap allocated
+ * by the plugin on synthetic builds of 1, 50, 500 and 2000 subprojects, and fail if a result regresses past the stored
+ * baseline. Every size is run as a control build without the plugin and the same build with the plugin, the reported
+ * time and heap are the difference of the medians of the two.
+ * <p>
+ * Run with ./gradlew perfTest, the available options (as -P project properties) are:
+ * - perfTest.sizes: comma separated subset of the sizes to run (default all)
+ * - perfTest.runs: measured runs per build (default 5), perfTest.warmups: warm-up runs per build (default 2)
+ * - perfTest.tolerance: relative tolerance before a result regresses (default 0.25)
+ * - perfTest.updateBaseline: store the results as the new baseline instead of comparing
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class ConfigurationPerformanceTest {
+    private static final Set<String> SIZES = new HashSet<>(Arrays.asList(System.getProperty("perfTest.sizes", "1,50,500,2000").split(",")));
+    private static final int RUNS = Integer.getInteger("perfTest.runs", 5);
+    private static final int WARMUPS = Integer.getInteger("perfTest.warmups", 2);
+    private static final long TIME_NOISE_FLOOR_MILLIS = 50;
+    private static final long HEAP_NOISE_FLOOR_BYTES = 4L * 1024 * 1024;
+
+    private static PerformanceBaseline baseline;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadBaseline() throws IOException {
+        baseline = new PerformanceBaseline(Paths.get(System.getProperty("perfTest.baselineFile", "src/perfTest/baseline.properties")),
+                Double.parseDouble(System.getProperty("perfTest.tolerance", "0.25")));
+    }
+
+    @AfterAll
+    static void storeResults() throws IOException {
+        baseline.store(Paths.get(System.getProperty("perfTest.reportDir", "build/reports/perfTest"), "results.properties"));
+
+        if (Boolean.getBoolean("perfTest.updateBaseline")) {
+            baseline.updateBaseline();
+        }
+    }
+
+    @Test
+    void testSingleSubproject() throws Exception {
+        measure(1);
+    }
+
+    @Test
+    void test50Subprojects() throws Exception {
+        measure(50);
+    }
+
+    @Test
+    void test500Subprojects() throws Exception {
+        measure(500);
+    }
+
+    @Test
+    void test2000Subprojects() throws Exception {
+        measure(2000);
+    }
+
+    private void measure(final int subprojects) throws Exception {
+        assumeTrue(SIZES.contains(String.valueOf(subprojects)), "perfTest.sizes does not include " + subprojects);
+        final Result control = run(SyntheticBuild.generate(dir.resolve("control"), subprojects, false));
+        final Result plugin = run(SyntheticBuild.generate(dir.resolve("plugin"), subprojects, true));
+        final long configurationMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, plugin.configurationNanos - control.configurationNanos));
+        final long allocatedBytes = plugin.allocatedBytes < 0 || control.allocatedBytes < 0 ? -1 :
+                Math.max(0, plugin.allocatedBytes - control.allocatedBytes);
+
+        System.out.println(subprojects + " subprojects: plugin configuration " + configurationMillis + "ms (total " +
+                TimeUnit.NANOSECONDS.toMillis(plugin.configurationNanos) + "ms), plugin heap " + allocatedBytes / 1024 +
+                "KiB, gradle.properties writes " + plugin.writes);
+
+        baseline.verify("configurationMillis." + subprojects, configurationMillis, TIME_NOISE_FLOOR_MILLIS);
+        if (allocatedBytes >= 0) {
+            baseline.verify("allocatedBytes." + subprojects, allocatedBytes, HEAP_NOISE_FLOOR_BYTES);
+        }
+        baseline.verify("writes." + subprojects, plugin.writes, 0);
+
+        if (!Boolean.getBoolean("perfTest.updateBaseline")) {
+            assertTrue(baseline.getRegressions().isEmpty(), "Performance regressed: " + baseline.getRegressions());
+        }
+    }
+
+    /**
+     * run: Configure the build the warm-up runs plus the measured runs and return the median of the measured runs and
+     * the total number of writes to `gradle.properties` over all runs.
+     */
+    private static Result run(final Path build) throws Exception {
+        final long[] nanos = new long[RUNS];
+        final long[] bytes = new long[RUNS];
+        int writes = 0;
+
+        for (int i = 0; i < WARMUPS + RUNS; i++) {
+            try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+                build.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+                GradleRunner.create()
+                        .withProjectDir(build.toFile())
+                        .withPluginClasspath()
+                        .withArguments("help", "-q", "--no-configuration-cache", "-I", "perf.init.gradle")
+                        .build();
+                writes += countWrites(watcher);
+            }
+            if (i >= WARMUPS) {
+                final Properties result = new Properties();
+                try (InputStream input = Files.newInputStream(build.resolve(SyntheticBuild.RESULT_PATH))) {
+                    result.load(input);
+                }
+                nanos[i - WARMUPS] = Long.parseLong(result.getProperty("configurationNanos"));
+                bytes[i - WARMUPS] = Long.parseLong(result.getProperty("allocatedBytes"));
+            }
+        }
+        return new Result(median(nanos), median(bytes), writes);
+    }
+
+    private static int countWrites(final WatchService watcher) throws InterruptedException {
+        int writes = 0;
+        WatchKey key;
+
+        // Events are delivered asynchronously, give the last ones a moment to arrive
+        while ((key = watcher.poll(100, TimeUnit.MILLISECONDS)) != null) {
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                if ("gradle.properties".equals(String.valueOf(event.context()))) {
+                    writes += event.count();
+                }
+            }
+            key.reset();
+        }
+        return writes;
+    }
+
+    private static long median(final long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static final class Result {
+        private final long configurationNanos;
+        private final long allocatedBytes;
+        private final int writes;
+
+        private Result(final long configurationNanos, final long allocatedBytes, final int writes) {
+            this.configurationNanos = configurationNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.writes = writes;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.benrhine.plugins.v1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * PerformanceBaseline: Stored results the measured results are compared with. A metric regresses when it exceeds the
+ * baseline by more than the relative tolerance plus the metric's noise floor, metrics without a baseline are only
+ * reported. When updating, the measured results replace the baseline instead.
+ * ------------------------------------------------------------------------------------------------------------------ */
+final class PerformanceBaseline {
+    private final Path file;
+    private final Properties baseline = new Properties();
+    private final Properties measured = new Properties();
+    private final List<String> regressions = new ArrayList<>();
+    private final double tolerance;
+
+    PerformanceBaseline(final Path file, final double tolerance) throws IOException {
+        this.file = file;
+        this.tolerance = tolerance;
+
+        if (Files.isRegularFile(file)) {
+            try (InputStream input = Files.newInputStream(file)) {
+                baseline.load(input);
+            }
+        }
+    }
+
+    /**
+     * verify: Record the measured value and compare it with the baseline.
+     *
+     * @param key String e.g. `configurationMillis.500`
+     * @param value long
+     * @param noiseFloor long absolute difference that is never reported as a regression
+     */
+    void verify(final String key, final long value, final long noiseFloor) {
+        measured.setProperty(key, String.valueOf(value));
+        final String stored = baseline.getProperty(key);
+
+        if (stored == null) {
+            System.out.println("No baseline for " + key + " (measured " + value + ")");
+            return;
+        }
+        final long expected = Long.parseLong(stored.trim());
+        final long limit = (long) (expected * (1 + tolerance)) + noiseFloor;
+
+        if (value > limit) {
+            regressions.add(key + ": " + value + " exceeds the baseline of " + expected + " (limit " + limit + ")");
+        }
+    }
+
+    /**
+     * getRegressions:
+     *
+     * @return List of the metrics that regressed
+     */
+    List<String> getRegressions() {
+        return regressions;
+    }
+
+    /**
+     * store: Write the measured results, merged over the existing baseline, to the given file.
+     *
+     * @param target Path
+     * @throws IOException an Exception
+     */
+    void store(final Path target) throws IOException {
+        final TreeMap<String, String> merged = new TreeMap<>();
+        for (final String key : baseline.stringPropertyNames()) {
+            merged.put(key, baseline.getProperty(key));
+        }
+        for (final String key : measured.stringPropertyNames()) {
+            merged.put(key, measured.getProperty(key));
+        }
+        final StringBuilder content = new StringBuilder("# Configuration performance results, see ConfigurationPerformanceTest\n");
+        for (final Map.Entry<String, String> entry : merged.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Files.write(target, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * updateBaseline: Replace the stored baseline with the measured results.
+     *
+     * @throws IOException an Exception
+     */
+    void updateBaseline() throws IOException {
+        store(file);
+    }
+}
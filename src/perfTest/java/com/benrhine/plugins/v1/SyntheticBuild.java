@@ -0,0 +1,82 @@
+package com.benrhine.plugins.v1;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * SyntheticBuild: Generate a multi-project build with the given number of subprojects. The plugin build applies
+ * `com.benrhine.semantic-versioning-with-build-number` to the root and every subproject, the control build is the exact
+ * same build without the plugin so the difference between the two is the cost of the plugin.
+ * ------------------------------------------------------------------------------------------------------------------ */
+final class SyntheticBuild {
+    static final String PLUGIN_ID = "com.benrhine.semantic-versioning-with-build-number";
+    static final String RESULT_PATH = "build/perf/result.properties";
+
+    /**
+     * Init script recording the configuration time and the bytes allocated by the configuring thread between the end
+     * of the settings evaluation and the end of the project evaluation.
+     */
+    private static final String INIT_SCRIPT = String.join("\n",
+            "import java.lang.management.ManagementFactory",
+            "",
+            "def threads = ManagementFactory.threadMXBean",
+            "def start = [:]",
+            "",
+            "gradle.settingsEvaluated {",
+            "    start.thread = Thread.currentThread().id",
+            "    start.bytes = threads.getThreadAllocatedBytes(start.thread)",
+            "    start.nanos = System.nanoTime()",
+            "}",
+            "gradle.projectsEvaluated { g ->",
+            "    def nanos = System.nanoTime() - start.nanos",
+            "    def thread = Thread.currentThread().id",
+            "    def bytes = thread == start.thread ? threads.getThreadAllocatedBytes(thread) - start.bytes : -1",
+            "    def result = new File(g.rootProject.projectDir, '" + RESULT_PATH + "')",
+            "    result.parentFile.mkdirs()",
+            "    result.text = \"configurationNanos=${nanos}\\nallocatedBytes=${bytes}\\n\"",
+            "}",
+            "");
+
+    private SyntheticBuild() {
+    }
+
+    /**
+     * generate: Generate the build.
+     *
+     * @param dir Path the root directory of the build
+     * @param subprojects int
+     * @param applyPlugin boolean false for the control build
+     * @return Path the root directory of the build
+     * @throws IOException an Exception
+     */
+    static Path generate(final Path dir, final int subprojects, final boolean applyPlugin) throws IOException {
+        Files.createDirectories(dir);
+        final StringBuilder settings = new StringBuilder("rootProject.name = 'synthetic'\n");
+        final String buildScript = applyPlugin ? "plugins {\n    id '" + PLUGIN_ID + "'\n}\n" : "";
+
+        for (int i = 1; i <= subprojects; i++) {
+            final String name = "module-" + i;
+            settings.append("include '").append(name).append("'\n");
+            final Path project = Files.createDirectories(dir.resolve(name));
+            write(project.resolve("build.gradle"), buildScript);
+        }
+        write(dir.resolve("settings.gradle"), settings.toString());
+        write(dir.resolve("build.gradle"), buildScript);
+        write(dir.resolve("gradle.properties"), String.join("\n",
+                "# Synthetic build generated by the configuration performance tests",
+                "org.gradle.jvmargs=-Xmx2g",
+                "major=1",
+                "minor=2",
+                "patch=3",
+                "artifact-type=LOCAL",
+                ""));
+        write(dir.resolve("perf.init.gradle"), INIT_SCRIPT);
+        return dir;
+    }
+
+    private static void write(final Path file, final String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
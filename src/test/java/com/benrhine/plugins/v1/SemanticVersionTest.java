@@ -0,0 +1,114 @@
+package com.benrhine.plugins.v1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.junit.jupiter.api.Test;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * SemanticVersionTest: Verify parsing, formatting and SemVer precedence of versions.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class SemanticVersionTest {
+
+    @Test
+    void testParseAndFormatRoundTrip() {
+        for (final String version : new String[]{"0.0.0", "1.2.3", "1.2.3-SNAPSHOT", "1.2.3.45", "1.2.3.45-RELEASE", "10.20.30-rc.1"}) {
+            assertEquals(version, SemanticVersion.parse(version).toString());
+        }
+    }
+
+    @Test
+    void testParseComponents() {
+        final SemanticVersion version = SemanticVersion.parse("1.2.3.45-BETA");
+
+        assertEquals(1, version.getMajor());
+        assertEquals(2, version.getMinor());
+        assertEquals(3, version.getPatch());
+        assertEquals(45, version.getBuildNumber());
+        assertEquals("BETA", version.getPreRelease());
+
+        final SemanticVersion plain = SemanticVersion.parse("1.2.3");
+        assertFalse(plain.hasBuildNumber());
+        assertNull(plain.getPreRelease());
+    }
+
+    @Test
+    void testParseRejectsInvalidVersions() {
+        for (final String version : new String[]{"", "1", "1.2", "1.2.", "1..3", "a.b.c", "1.2.3.4+5", "1.2.3.-SNAPSHOT", "1.2.3-", "1.2.3+build", "99999999999.0.0"}) {
+            assertThrows(IllegalArgumentException.class, () -> SemanticVersion.parse(version));
+        }
+    }
+
+    @Test
+    void testBuildNumberThatIsNotANumberIsKeptVerbatim() {
+        // e.g. the build number of Azure Pipelines
+        final SemanticVersion version = SemanticVersion.of(1, 2, 3).withPreRelease("LOCAL").withBuild("20240101.3");
+
+        assertEquals("1.2.3.20240101.3-LOCAL", version.toString());
+        assertEquals("20240101.3", version.getBuild());
+        assertEquals(SemanticVersion.NO_BUILD_NUMBER, version.getBuildNumber());
+        assertTrue(version.hasBuildNumber());
+        assertEquals(version, SemanticVersion.parse("1.2.3.20240101.3-LOCAL"));
+        assertEquals("1.2.3.007", SemanticVersion.of(1, 2, 3).withBuild("007").toString());
+        assertEquals("1.2.3.a1b2c3", SemanticVersion.of(1, 2, 3).withBuild("a1b2c3").toString());
+        assertEquals(45, SemanticVersion.of(1, 2, 3).withBuild("45").getBuildNumber());
+        assertTrue(SemanticVersion.parse("1.2.3.45").compareTo(SemanticVersion.parse("1.2.3.20240101.3")) < 0);
+        assertThrows(IllegalArgumentException.class, () -> SemanticVersion.of(1, 2, 3).withBuild("45-1"));
+    }
+
+    @Test
+    void testToStringIsCached() {
+        final SemanticVersion version = SemanticVersion.of(1, 2, 3).withPreRelease("LOCAL");
+
+        assertSame(version.toString(), version.toString());
+    }
+
+    @Test
+    void testPrecedence() {
+        final String[] ordered = {"1.0.0-ALPHA", "1.0.0-ALPHA.1", "1.0.0-ALPHA.BETA", "1.0.0-BETA", "1.0.0-BETA.2",
+                "1.0.0-BETA.11", "1.0.0-RC.1", "1.0.0", "1.0.0.1-SNAPSHOT", "1.0.0.1", "1.0.0.2", "1.0.1", "1.1.0", "2.0.0"};
+
+        for (int i = 0; i < ordered.length - 1; i++) {
+            final SemanticVersion lower = SemanticVersion.parse(ordered[i]);
+            final SemanticVersion higher = SemanticVersion.parse(ordered[i + 1]);
+
+            assertTrue(lower.compareTo(higher) < 0, ordered[i] + " < " + ordered[i + 1]);
+            assertTrue(higher.compareTo(lower) > 0, ordered[i + 1] + " > " + ordered[i]);
+        }
+        assertEquals(0, SemanticVersion.parse("1.2.3-LOCAL").compareTo(SemanticVersion.of(1, 2, 3).withPreRelease("LOCAL")));
+    }
+
+    @Test
+    void testEqualsAndHashCode() {
+        final SemanticVersion version = SemanticVersion.parse("1.2.3.4-LOCAL");
+        final SemanticVersion same = new SemanticVersion(1, 2, 3, 4, "LOCAL");
+
+        assertEquals(version, same);
+        assertEquals(version.hashCode(), same.hashCode());
+        assertFalse(version.equals(same.withPreRelease(null)));
+    }
+
+    @Test
+    void testSerializable() throws Exception {
+        final SemanticVersion version = SemanticVersion.parse("1.2.3.4-LOCAL");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(version);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final SemanticVersion copy = (SemanticVersion) input.readObject();
+
+            assertEquals(version, copy);
+            assertEquals("1.2.3.4-LOCAL", copy.toString());
+        }
+    }
+}
@@ -1,7 +1,115 @@
 package com.benrhine.plugins.v1;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
 /** --------------------------------------------------------------------------------------------------------------------
- * SemanticVersioningWithBuildNumberPluginExtensionTest: TODO fill me in.
+ * SemanticVersioningWithBuildNumberPluginExtensionTest: Verify the extension defaults and how values are copied.
  * ------------------------------------------------------------------------------------------------------------------ */
 public final class SemanticVersioningWithBuildNumberPluginExtensionTest {
+
+    @TempDir
+    File tempDir;
+
+    private Project project;
+
+    @BeforeEach
+    void setUp() {
+        project = ProjectBuilder.builder().withProjectDir(tempDir).build();
+    }
+
+    @Test
+    void testDefaults() {
+        final SemanticVersioningWithBuildNumberPluginExtension extension = newExtension();
+
+        assertFalse(extension.getRemoteBuild().get());
+        assertFalse(extension.getCiBuildNumberEnvVarName().isPresent());
+        assertFalse(extension.getIncludeReleaseTag().get());
+        assertEquals("LOCAL", extension.getArtifactType().get());
+        assertEquals("gradle.properties", extension.getCustomVersionPropertiesPath().get());
+        assertEquals(30, (int) extension.getLockTimeoutSeconds().get());
+        assertFalse(extension.getVersionFile().isPresent());
+    }
+
+    @Test
+    void testValueIsFinalOnceRead() {
+        final SemanticVersioningWithBuildNumberPluginExtension extension = newExtension();
+        extension.getArtifactType().set("BETA");
+
+        assertEquals("BETA", extension.getArtifactType().get());
+        assertThrows(IllegalStateException.class, () -> extension.getArtifactType().set("ALPHA"));
+    }
+
+    @Test
+    void testCopyFromCanBeOverridden() {
+        final SemanticVersioningWithBuildNumberPluginExtension settings = newExtension();
+        settings.getRemoteBuild().set(true);
+        settings.getArtifactType().set("BETA");
+        settings.getCustomVersionPropertiesPath().set("version.properties");
+        final SemanticVersioningWithBuildNumberPluginExtension project = newExtension();
+
+        project.copyFrom(settings);
+        project.getArtifactType().set("ALPHA");
+
+        assertTrue(project.getRemoteBuild().get());
+        assertEquals("version.properties", project.getCustomVersionPropertiesPath().get());
+        assertEquals("ALPHA", project.getArtifactType().get());
+        assertEquals("BETA", settings.getArtifactType().get());
+    }
+
+    @Test
+    void testVersionIsOnlyAvailableFromAProject() {
+        final SemanticVersioningWithBuildNumberPluginExtension settings = newExtension();
+        final SemanticVersioningWithBuildNumberPluginExtension project = newExtension();
+        project.copyFrom(settings);
+
+        assertThrows(IllegalStateException.class, settings::getVersion);
+        assertThrows(IllegalStateException.class, project::getVersion);
+    }
+
+    @Test
+    void testVersionSource() {
+        final SemanticVersioningWithBuildNumberPluginExtension extension = newExtension();
+        assertFalse(extension.isGitTagVersionSource());
+
+        final SemanticVersioningWithBuildNumberPluginExtension gitTag = newExtension();
+        gitTag.getVersionSource().set("git-tag");
+        assertTrue(gitTag.isGitTagVersionSource());
+
+        final SemanticVersioningWithBuildNumberPluginExtension svn = newExtension();
+        svn.getVersionSource().set("svn");
+        assertThrows(IllegalArgumentException.class, svn::isGitTagVersionSource);
+    }
+
+    @Test
+    void testBuildNumberSource() {
+        final SemanticVersioningWithBuildNumberPluginExtension extension = newExtension();
+        assertFalse(extension.isLocalCounterBuildNumberSource());
+
+        final SemanticVersioningWithBuildNumberPluginExtension localCounter = newExtension();
+        localCounter.getBuildNumberSource().set("local-counter");
+        assertTrue(localCounter.isLocalCounterBuildNumberSource());
+
+        final SemanticVersioningWithBuildNumberPluginExtension server = newExtension();
+        server.getBuildNumberSource().set("server");
+        assertFalse(server.isLocalCounterBuildNumberSource());
+        assertTrue(server.isAllocatedBuildNumberSource());
+
+        final SemanticVersioningWithBuildNumberPluginExtension jenkins = newExtension();
+        jenkins.getBuildNumberSource().set("jenkins");
+        assertThrows(IllegalArgumentException.class, jenkins::isAllocatedBuildNumberSource);
+    }
+
+    private SemanticVersioningWithBuildNumberPluginExtension newExtension() {
+        return project.getObjects().newInstance(SemanticVersioningWithBuildNumberPluginExtension.class);
+    }
 }
@@ -1,7 +1,73 @@
 package com.benrhine.plugins.v1;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import com.benrhine.plugins.v1.buildnumber.BuildNumberCounter;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
 /** --------------------------------------------------------------------------------------------------------------------
- * SemanticVersioningWithBuildNumberPluginTest: TODO fill me in.
+ * SemanticVersioningWithBuildNumberPluginTest: Verify the defaults the plugin derives from the project.
  * ------------------------------------------------------------------------------------------------------------------ */
 public final class SemanticVersioningWithBuildNumberPluginTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testVersionClassPackageFollowsTheGroupAndProject() {
+        assertEquals("com.example.app", SemanticVersioningWithBuildNumberPlugin.getVersionClassPackage("com.example", "app"));
+        assertEquals("com.my_company.my_app", SemanticVersioningWithBuildNumberPlugin.getVersionClassPackage("com.My-Company", "my-app"));
+        assertEquals("app", SemanticVersioningWithBuildNumberPlugin.getVersionClassPackage("", "app"));
+        assertEquals("com.example.class_.lib", SemanticVersioningWithBuildNumberPlugin.getVersionClassPackage("com.example.class", "lib"));
+        assertEquals("com._2024.app", SemanticVersioningWithBuildNumberPlugin.getVersionClassPackage("com.2024", "app"));
+    }
+
+    @Test
+    void testLocalBuildDoesNotAllocateABuildNumber() throws IOException {
+        final File projectDir = new File(tempDir, "project");
+        final File gradleUserHome = new File(tempDir, "home");
+        Files.createDirectories(projectDir.toPath());
+        Files.write(new File(projectDir, "gradle.properties").toPath(),
+                "major=1\nminor=2\npatch=3\nartifact-type=LOCAL\n".getBytes(StandardCharsets.ISO_8859_1));
+        final Project project = ProjectBuilder.builder().withName("app").withProjectDir(projectDir)
+                .withGradleUserHomeDir(gradleUserHome).build();
+        project.getPluginManager().apply(SemanticVersioningWithBuildNumberPlugin.class);
+        final SemanticVersioningWithBuildNumberPluginExtension extension =
+                project.getExtensions().getByType(SemanticVersioningWithBuildNumberPluginExtension.class);
+        // Configured for remote builds, but `-Premote-build` is not given
+        extension.getRemoteBuild().set(true);
+        extension.getBuildNumberSource().set("local-counter");
+
+        assertEquals("1.2.3-LOCAL", project.getVersion().toString());
+        assertFalse(BuildNumberCounter.counterFile(gradleUserHome, projectDir.getName()).exists());
+    }
+
+    @Test
+    void testTimingReportIsOnlyWrittenWhenAskedForToTheBuildDirectory() throws IOException {
+        Files.write(new File(tempDir, "settings.gradle").toPath(), "rootProject.name = 'app'\n".getBytes(StandardCharsets.ISO_8859_1));
+        Files.write(new File(tempDir, "build.gradle").toPath(), ("plugins { id 'com.benrhine.semantic-versioning-with-build-number' }\n" +
+                "layout.buildDirectory = file('out')\n").getBytes(StandardCharsets.ISO_8859_1));
+        Files.write(new File(tempDir, "gradle.properties").toPath(),
+                "major=1\nminor=2\npatch=3\nartifact-type=LOCAL\n".getBytes(StandardCharsets.ISO_8859_1));
+        final File report = new File(tempDir, "out/reports/versioning/versioning.json");
+
+        GradleRunner.create().withProjectDir(tempDir).withPluginClasspath().withArguments("printVersion").build();
+
+        assertFalse(report.exists());
+        assertFalse(new File(tempDir, "build").exists());
+
+        GradleRunner.create().withProjectDir(tempDir).withPluginClasspath().withArguments("printVersion", "-Pversioning.report=true").build();
+
+        assertTrue(report.isFile());
+    }
 }
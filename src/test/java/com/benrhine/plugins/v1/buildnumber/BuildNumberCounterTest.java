@@ -0,0 +1,66 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * BuildNumberCounterTest: Verify build numbers are allocated once each.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class BuildNumberCounterTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testNextStartsAtOne() throws IOException {
+        final File counter = BuildNumberCounter.counterFile(tempDir, "my project");
+
+        assertEquals(1, BuildNumberCounter.next(counter));
+        assertEquals(2, BuildNumberCounter.next(counter));
+        assertEquals(3, BuildNumberCounter.next(counter));
+        assertEquals(new File(tempDir, "semantic-versioning/build-numbers/my_project.counter"), counter);
+    }
+
+    @Test
+    void testConcurrentNextIsUnique() throws Exception {
+        final File counter = new File(tempDir, "concurrent.counter");
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<Integer>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                futures.add(executor.submit(() -> BuildNumberCounter.next(counter)));
+            }
+            final Set<Integer> numbers = new HashSet<>();
+
+            for (final Future<Integer> future : futures) {
+                numbers.add(future.get());
+            }
+            assertEquals(200, numbers.size());
+            assertEquals(201, BuildNumberCounter.next(counter));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testNextRejectsOtherFiles() throws IOException {
+        final File counter = new File(tempDir, "other.counter");
+        Files.write(counter.toPath(), "not a counter file".getBytes(StandardCharsets.US_ASCII));
+
+        assertThrows(IOException.class, () -> BuildNumberCounter.next(counter));
+    }
+}
@@ -0,0 +1,108 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * BuildNumberServerTest: Verify blocks are leased once, released numbers are leased again and expired leases are
+ * reclaimed.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class BuildNumberServerTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testLeaseHandsOutConsecutiveBlocks() throws IOException {
+        try (BuildNumberServer server = start(null, BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            final Lease first = server.lease("app", 10);
+            final Lease second = server.lease("app", 10);
+            final Lease other = server.lease("other", 5);
+
+            assertEquals(1, first.getStart());
+            assertEquals(10, first.getEnd());
+            assertEquals(11, second.getStart());
+            assertEquals(20, second.getEnd());
+            assertEquals(1, other.getStart());
+        }
+    }
+
+    @Test
+    void testReleasedNumbersAreLeasedAgain() throws IOException {
+        try (BuildNumberServer server = start(null, BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            final Lease lease = server.lease("app", 10);
+            assertTrue(server.release("app", lease.getId(), 4));
+            assertFalse(server.release("app", lease.getId(), 4));
+
+            final Lease reused = server.lease("app", 5);
+            final Lease rest = server.lease("app", 5);
+            final Lease fresh = server.lease("app", 5);
+
+            assertEquals(4, reused.getStart());
+            assertEquals(8, reused.getEnd());
+            assertEquals(9, rest.getStart());
+            assertEquals(10, rest.getEnd());
+            assertEquals(11, fresh.getStart());
+        }
+    }
+
+    @Test
+    void testExpiredLeasesAreReclaimed() throws Exception {
+        try (BuildNumberServer server = start(null, 50)) {
+            final Lease lease = server.lease("app", 10);
+            Thread.sleep(100);
+
+            assertFalse(server.release("app", lease.getId(), 1));
+            // The numbers of the expired lease may have been used and are skipped
+            assertEquals(11, server.lease("app", 10).getStart());
+        }
+    }
+
+    @Test
+    void testStateSurvivesRestart() throws IOException {
+        final File state = new File(tempDir, "state/build-numbers.properties");
+
+        try (BuildNumberServer server = start(state, BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            final Lease lease = server.lease("app", 10);
+            server.release("app", lease.getId(), 6);
+        }
+        try (BuildNumberServer server = start(state, BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            assertEquals(6, server.lease("app", 10).getStart());
+            assertEquals(11, server.lease("app", 10).getStart());
+        }
+    }
+
+    @Test
+    void testRejectsInvalidRequests() throws IOException {
+        try (BuildNumberServer server = start(null, BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            assertEquals(400, post(server, "counters/app/leases?size=0"));
+            assertEquals(400, post(server, "counters/app/leases"));
+            assertEquals(404, post(server, "counters/app/leases/unknown/release?next=1"));
+            assertEquals(404, post(server, "counters/app/other"));
+            assertEquals(200, post(server, "counters/app/leases?size=1"));
+        }
+    }
+
+    private static BuildNumberServer start(final File state, final long ttlMillis) throws IOException {
+        return BuildNumberServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), state, ttlMillis);
+    }
+
+    private static int post(final BuildNumberServer server, final String path) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) server.getUri().resolve(path).toURL().openConnection();
+        connection.setRequestMethod("POST");
+
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
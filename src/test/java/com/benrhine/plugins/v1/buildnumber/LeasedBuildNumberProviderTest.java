@@ -0,0 +1,97 @@
+package com.benrhine.plugins.v1.buildnumber;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * LeasedBuildNumberProviderTest: Verify agents allocate from their cached lease against a local build number server.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class LeasedBuildNumberProviderTest {
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testAllocatesFromCachedLease() throws IOException {
+        try (BuildNumberServer server = start(BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            final File leaseFile = LeasedBuildNumberProvider.leaseFile(new File(tempDir, "agent1"), "app");
+            final LeasedBuildNumberProvider agent1 = new LeasedBuildNumberProvider(server.getUri(), "app", 3, leaseFile);
+            final LeasedBuildNumberProvider agent2 = new LeasedBuildNumberProvider(server.getUri(), "app", 3,
+                    LeasedBuildNumberProvider.leaseFile(new File(tempDir, "agent2"), "app"));
+
+            assertEquals(1, agent1.nextBuildNumber());
+            assertEquals(4, agent2.nextBuildNumber());
+            // A following build of the same agent continues the cached lease
+            assertEquals(2, new LeasedBuildNumberProvider(server.getUri(), "app", 3, leaseFile).nextBuildNumber());
+            assertEquals(3, agent1.nextBuildNumber());
+            assertEquals(7, agent1.nextBuildNumber());
+            assertEquals(5, agent2.nextBuildNumber());
+        }
+    }
+
+    @Test
+    void testExpiredLeaseIsReplaced() throws Exception {
+        try (BuildNumberServer server = start(100)) {
+            final LeasedBuildNumberProvider agent = new LeasedBuildNumberProvider(server.getUri(), "app", 10,
+                    LeasedBuildNumberProvider.leaseFile(tempDir, "app"));
+
+            assertEquals(1, agent.nextBuildNumber());
+            Thread.sleep(150);
+            assertEquals(11, agent.nextBuildNumber());
+        }
+    }
+
+    @Test
+    void testConcurrentBuildsGetUniqueNumbers() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try (BuildNumberServer server = start(BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            final List<Future<Integer>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 100; i++) {
+                final File agentHome = new File(tempDir, "agent" + (i % 4));
+                futures.add(executor.submit(() -> new LeasedBuildNumberProvider(server.getUri(), "app", 7,
+                        LeasedBuildNumberProvider.leaseFile(agentHome, "app")).nextBuildNumber()));
+            }
+            final Set<Integer> numbers = new HashSet<>();
+
+            for (final Future<Integer> future : futures) {
+                numbers.add(future.get());
+            }
+            assertEquals(100, numbers.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testUnreachableServerFails() throws IOException {
+        final URI server;
+
+        try (BuildNumberServer stopped = start(BuildNumberServer.DEFAULT_LEASE_TTL_MILLIS)) {
+            server = stopped.getUri();
+        }
+        final LeasedBuildNumberProvider agent = new LeasedBuildNumberProvider(server, "app", 10,
+                LeasedBuildNumberProvider.leaseFile(tempDir, "app"));
+
+        assertThrows(IOException.class, agent::nextBuildNumber);
+    }
+
+    private static BuildNumberServer start(final long ttlMillis) throws IOException {
+        return BuildNumberServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null, ttlMillis);
+    }
+}
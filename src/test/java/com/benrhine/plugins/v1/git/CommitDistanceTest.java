@@ -0,0 +1,151 @@
+package com.benrhine.plugins.v1.git;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * CommitDistanceTest: Verify the commit distance matches `git rev-list --count <tag>..HEAD`, including merges and
+ * HEAD moving forward or to an unrelated branch.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class CommitDistanceTest {
+    private static final SemanticVersion BASE = SemanticVersion.of(1, 0, 0);
+
+    @TempDir
+    File tempDir;
+
+    private int commits;
+
+    @BeforeEach
+    void setup() throws Exception {
+        assumeTrue(isGitAvailable(), "git is not installed");
+        git("init", "-q");
+        commit();
+        commit();
+    }
+
+    @Test
+    void testCountsSinceTheBaseVersionTag() throws Exception {
+        git("tag", "v1.0.0");
+        commit();
+        commit();
+        commit();
+
+        assertEquals(3, CommitDistance.count(tempDir, BASE));
+        assertEquals(expected("v1.0.0..HEAD"), CommitDistance.count(tempDir, BASE));
+    }
+
+    @Test
+    void testCountsEveryCommitWithoutTag() throws Exception {
+        assertEquals(2, CommitDistance.count(tempDir, BASE));
+    }
+
+    @Test
+    void testMergesAndHeadMovingForward() throws Exception {
+        git("tag", "v1.0.0");
+        git("checkout", "-q", "-b", "feature");
+        commit();
+        commit();
+        git("checkout", "-q", "-");
+        commit();
+        assertEquals(1, CommitDistance.count(tempDir, BASE));
+
+        git("merge", "-q", "--no-ff", "--no-edit", "feature");
+        commit();
+
+        assertEquals(expected("v1.0.0..HEAD"), CommitDistance.count(tempDir, BASE));
+        assertEquals(5, CommitDistance.count(tempDir, BASE));
+    }
+
+    @Test
+    void testHeadMovingToAnUnrelatedBranch() throws Exception {
+        git("tag", "v1.0.0");
+        git("checkout", "-q", "-b", "other");
+        commit();
+        assertEquals(1, CommitDistance.count(tempDir, BASE));
+
+        git("checkout", "-q", "-");
+        commit();
+        commit();
+
+        assertEquals(2, CommitDistance.count(tempDir, BASE));
+    }
+
+    @Test
+    void testWalkReportsWhetherThePreviousHeadWasReached() throws Exception {
+        final String previous = revParse("HEAD");
+        commit();
+        final String head = revParse("HEAD");
+        final ObjectDatabase database = new ObjectDatabase(new File(tempDir, ".git/objects"));
+
+        try {
+            final CommitDistance.Walk forward = CommitDistance.walk(database, head, null, previous);
+            assertTrue(forward.isReachedPrevious());
+            assertEquals(1, forward.getCount());
+
+            final CommitDistance.Walk backward = CommitDistance.walk(database, previous, null, head);
+            assertFalse(backward.isReachedPrevious());
+        } finally {
+            database.close();
+        }
+    }
+
+    private int expected(final String range) throws Exception {
+        return Integer.parseInt(git("rev-list", "--count", range));
+    }
+
+    private String revParse(final String ref) throws Exception {
+        return git("rev-parse", ref);
+    }
+
+    private void commit() throws Exception {
+        commits++;
+        git("commit", "-q", "--allow-empty", "-m", "Commit " + commits);
+    }
+
+    private String git(final String... args) throws Exception {
+        final List<String> command = new ArrayList<>(Arrays.asList("git", "-c", "user.name=Test", "-c",
+                "user.email=test@example.com", "-c", "commit.gpgsign=false", "-c", "tag.gpgsign=false"));
+        command.addAll(Arrays.asList(args));
+        final ProcessBuilder builder = new ProcessBuilder(command).directory(tempDir).redirectErrorStream(true);
+        // Strictly increasing commit times so the history walk order is deterministic
+        final String date = (1700000000L + commits * 60L) + " +0000";
+        builder.environment().put("GIT_AUTHOR_DATE", date);
+        builder.environment().put("GIT_COMMITTER_DATE", date);
+        final Process process = builder.start();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = process.getInputStream().read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        final String result = new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+
+        if (process.waitFor() != 0) {
+            throw new IOException(String.join(" ", command) + " failed: " + result);
+        }
+        return result;
+    }
+
+    private static boolean isGitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (final IOException | InterruptedException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.benrhine.plugins.v1.git;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * GitRepositoryTest: Verify HEAD and the tag refs are read from loose refs and `packed-refs`.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class GitRepositoryTest {
+    private static final String COMMIT_A = "1111111111111111111111111111111111111111";
+    private static final String COMMIT_B = "2222222222222222222222222222222222222222";
+    private static final String TAG_OBJECT = "3333333333333333333333333333333333333333";
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testResolveHeadFromPackedRefs() throws IOException {
+        write(".git/HEAD", "ref: refs/heads/main\n");
+        write(".git/packed-refs", "# pack-refs with: peeled fully-peeled sorted\n" + COMMIT_A + " refs/heads/main\n");
+
+        final GitRepository repository = GitRepository.find(new File(tempDir, "sub/project"));
+
+        assertEquals(COMMIT_A, repository.resolveHead());
+    }
+
+    @Test
+    void testLooseRefOverridesPackedRef() throws IOException {
+        write(".git/HEAD", "ref: refs/heads/main\n");
+        write(".git/packed-refs", COMMIT_A + " refs/heads/main\n");
+        write(".git/refs/heads/main", COMMIT_B + "\n");
+
+        assertEquals(COMMIT_B, GitRepository.find(tempDir).resolveHead());
+    }
+
+    @Test
+    void testReadTags() throws IOException {
+        write(".git/HEAD", COMMIT_A + "\n");
+        write(".git/packed-refs", "# pack-refs with: peeled fully-peeled sorted\n" +
+                TAG_OBJECT + " refs/tags/v1.0.0\n" +
+                "^" + COMMIT_A + "\n" +
+                COMMIT_A + " refs/tags/v1.1.0\n");
+        write(".git/refs/tags/v1.1.0", COMMIT_B + "\n");
+        write(".git/refs/tags/release/v2.0.0", COMMIT_B + "\n");
+
+        final Map<String, GitRepository.Tag> tags = new HashMap<>();
+        final List<GitRepository.Tag> list = GitRepository.find(tempDir).readTags();
+        for (final GitRepository.Tag tag : list) {
+            tags.put(tag.getShortName(), tag);
+        }
+
+        assertEquals(3, list.size());
+        assertEquals(TAG_OBJECT, tags.get("v1.0.0").getObjectId());
+        assertEquals(COMMIT_A, tags.get("v1.0.0").getPeeledId());
+        assertEquals(COMMIT_B, tags.get("v1.1.0").getObjectId());
+        assertNull(tags.get("v1.1.0").getPeeledId());
+        assertEquals(COMMIT_B, tags.get("release/v2.0.0").getObjectId());
+    }
+
+    @Test
+    void testWorktreeGitFile() throws IOException {
+        write("main/.git/HEAD", "ref: refs/heads/main\n");
+        write("main/.git/refs/heads/main", COMMIT_A + "\n");
+        write("main/.git/refs/heads/feature", COMMIT_B + "\n");
+        write("main/.git/worktrees/feature/HEAD", "ref: refs/heads/feature\n");
+        write("main/.git/worktrees/feature/commondir", "../..\n");
+        write("feature/.git", "gitdir: ../main/.git/worktrees/feature\n");
+
+        final GitRepository repository = GitRepository.find(new File(tempDir, "feature"));
+
+        assertEquals(COMMIT_B, repository.resolveHead());
+        assertEquals(new File(tempDir, "main/.git").getCanonicalFile(), repository.getCommonDir());
+    }
+
+    @Test
+    void testTagsStampChangesWhenATagIsAdded() throws IOException {
+        write(".git/HEAD", COMMIT_A + "\n");
+        write(".git/refs/tags/v1.0.0", COMMIT_A + "\n");
+        final GitRepository repository = GitRepository.find(tempDir);
+        final long stamp = repository.getTagsStamp();
+
+        assertEquals(stamp, repository.getTagsStamp());
+        write(".git/refs/tags/v1.1.0", COMMIT_B + "\n");
+        assertNotEquals(stamp, repository.getTagsStamp());
+    }
+
+    private void write(final String path, final String content) throws IOException {
+        final File file = new File(tempDir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,150 @@
+package com.benrhine.plugins.v1.git;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * GitTagVersionTest: Verify the base version is taken from the nearest SemVer tag, with repositories created by `git`.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class GitTagVersionTest {
+
+    @TempDir
+    File tempDir;
+
+    private int commits;
+
+    @BeforeEach
+    void setup() throws Exception {
+        assumeTrue(isGitAvailable(), "git is not installed");
+        git("init", "-q");
+    }
+
+    @Test
+    void testNoTagDefaultsToZero() throws Exception {
+        commit();
+
+        final GitTagVersion version = GitTagVersion.resolve(tempDir);
+
+        assertEquals(SemanticVersion.of(0, 0, 0), version.getVersion());
+        assertNull(version.getTagName());
+    }
+
+    @Test
+    void testNearestReleaseTagIsUsed() throws Exception {
+        commit();
+        git("tag", "v1.0.0");
+        commit();
+        git("tag", "1.1.0");
+        commit();
+        git("tag", "latest");
+        git("tag", "v2.0.0-rc1");
+
+        final GitTagVersion version = GitTagVersion.resolve(new File(tempDir, "sub/project"));
+
+        assertEquals(SemanticVersion.of(1, 1, 0), version.getVersion());
+        assertEquals("1.1.0", version.getTagName());
+    }
+
+    @Test
+    void testAnnotatedTagInPackedRepository() throws Exception {
+        commit();
+        git("tag", "-a", "v1.2.3", "-m", "Release 1.2.3");
+        for (int i = 0; i < 5; i++) {
+            commit();
+        }
+        git("gc", "-q");
+
+        assertFalse(new File(tempDir, ".git/refs/tags/v1.2.3").exists());
+        assertEquals(SemanticVersion.of(1, 2, 3), GitTagVersion.resolve(tempDir).getVersion());
+    }
+
+    @Test
+    void testNewTagIsPickedUp() throws Exception {
+        commit();
+        git("tag", "v1.0.0");
+        commit();
+        assertEquals(SemanticVersion.of(1, 0, 0), GitTagVersion.resolve(tempDir).getVersion());
+
+        git("tag", "v1.0.1");
+
+        assertEquals(SemanticVersion.of(1, 0, 1), GitTagVersion.resolve(tempDir).getVersion());
+    }
+
+    @Test
+    void testHighestTagOnTheSameCommitWins() throws Exception {
+        commit();
+        git("tag", "v1.9.0");
+        git("tag", "v1.10.0");
+
+        assertEquals(SemanticVersion.of(1, 10, 0), GitTagVersion.resolve(tempDir).getVersion());
+    }
+
+    @Test
+    void testParseTag() {
+        assertEquals(SemanticVersion.of(1, 2, 3), GitTagVersion.parseTag("v1.2.3"));
+        assertEquals(SemanticVersion.of(1, 2, 3), GitTagVersion.parseTag("1.2.3"));
+        assertNull(GitTagVersion.parseTag("v1.2"));
+        assertNull(GitTagVersion.parseTag("v1.2.3-SNAPSHOT"));
+        assertNull(GitTagVersion.parseTag("release"));
+    }
+
+    private void commit() throws Exception {
+        commits++;
+        Files.write(new File(tempDir, "file.txt").toPath(), ("line " + commits + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        git("add", "file.txt");
+        git("commit", "-q", "-m", "Commit " + commits);
+    }
+
+    private void git(final String... args) throws Exception {
+        final List<String> command = new ArrayList<>(Arrays.asList("git", "-c", "user.name=Test", "-c",
+                "user.email=test@example.com", "-c", "commit.gpgsign=false", "-c", "tag.gpgsign=false"));
+        command.addAll(Arrays.asList(args));
+        final ProcessBuilder builder = new ProcessBuilder(command).directory(tempDir).redirectErrorStream(true);
+        // Strictly increasing commit times so the history walk order is deterministic
+        final String date = (1700000000L + commits * 60L) + " +0000";
+        builder.environment().put("GIT_AUTHOR_DATE", date);
+        builder.environment().put("GIT_COMMITTER_DATE", date);
+        final Process process = builder.start();
+        final byte[] output = readAll(process);
+
+        if (process.waitFor() != 0) {
+            throw new IOException(String.join(" ", command) + " failed: " + new String(output, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] readAll(final Process process) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = process.getInputStream().read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static boolean isGitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (final IOException | InterruptedException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.benrhine.plugins.v1.git;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * PackFileTest: Verify git deltas are applied to their base.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class PackFileTest {
+
+    @Test
+    void testApplyDeltaCopiesAndInserts() throws IOException {
+        final byte[] base = "hello world".getBytes(StandardCharsets.US_ASCII);
+        final byte[] delta = {
+                11, // base size
+                13, // result size
+                (byte) 0x91, 0, 6, // copy 6 bytes from offset 0: "hello "
+                2, 'g', 'r', // insert "gr"
+                (byte) 0x91, 6, 5 // copy 5 bytes from offset 6: "world"
+        };
+
+        assertArrayEquals("hello grworld".getBytes(StandardCharsets.US_ASCII), PackFile.applyDelta(base, delta));
+    }
+
+    @Test
+    void testApplyDeltaRejectsWrongBase() {
+        final byte[] delta = {5, 1, 1, 'x'};
+
+        assertThrows(IOException.class, () -> PackFile.applyDelta(new byte[4], delta));
+    }
+}
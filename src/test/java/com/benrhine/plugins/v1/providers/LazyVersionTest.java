@@ -0,0 +1,57 @@
+package com.benrhine.plugins.v1.providers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.gradle.api.provider.Provider;
+import org.junit.jupiter.api.Test;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * LazyVersionTest: Verify the version is only computed on first use and then remembered.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class LazyVersionTest {
+
+    @Test
+    void testVersionIsComputedOnceOnFirstUse() {
+        final AtomicInteger calls = new AtomicInteger();
+        final LazyVersion version = new LazyVersion(provider(() -> {
+            calls.incrementAndGet();
+            return "1.2.3-LOCAL";
+        }));
+
+        assertEquals(0, calls.get());
+        assertEquals("1.2.3-LOCAL", version.toString());
+        assertEquals("1.2.3-LOCAL", version.toString());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testSemanticVersionIsParsedOnce() {
+        final AtomicInteger calls = new AtomicInteger();
+        final LazyVersion version = new LazyVersion(provider(() -> {
+            calls.incrementAndGet();
+            return "1.2.3.45-RELEASE";
+        }));
+
+        final SemanticVersion parsed = version.getSemanticVersion();
+        assertSame(parsed, version.getSemanticVersion());
+        assertEquals(45, parsed.getBuildNumber());
+        assertEquals("RELEASE", parsed.getPreRelease());
+        assertEquals("1.2.3.45-RELEASE", version.toString());
+        assertEquals(1, calls.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Provider<String> provider(final java.util.function.Supplier<String> supplier) {
+        return (Provider<String>) Proxy.newProxyInstance(Provider.class.getClassLoader(), new Class<?>[] {Provider.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("get")) {
+                        return supplier.get();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,268 @@
+package com.benrhine.plugins.v1.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import com.benrhine.plugins.v1.buildnumber.BuildNumberProvider;
+import org.gradle.tooling.Failure;
+import org.gradle.tooling.events.FailureResult;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationDescriptor;
+import org.gradle.tooling.events.OperationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionFileServiceTest: Verify the version file is parsed once and changes are flushed when the service closes,
+ * unless a task failed.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionFileServiceTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testSnapshotIsParsedOnceAndReadOnly() throws IOException {
+        final File file = versionFile("major=1\nminor=2\npatch=3\nartifact-type=LOCAL\n");
+        final VersionFileService service = newService();
+
+        final Properties first = service.getSnapshot(file);
+        final Properties second = service.getSnapshot(file);
+
+        assertSame(first, second);
+        assertEquals("2", first.getProperty("minor"));
+        assertThrows(UnsupportedOperationException.class, () -> first.setProperty("minor", "3"));
+    }
+
+    @Test
+    void testModulesAreOrderedByPath() {
+        final VersionFileService service = newService();
+        service.registerModule(":b", new File(tempDir, "b.properties"));
+        service.registerModule(":", new File(tempDir, "gradle.properties"));
+        service.registerModule(":a", new File(tempDir, "a.properties"));
+
+        assertEquals(Arrays.asList(":", ":a", ":b"), new ArrayList<>(service.getModules().keySet()));
+        assertThrows(UnsupportedOperationException.class, () -> service.getModules().clear());
+    }
+
+    @Test
+    void testCloseFlushesChangesOnTopOfCurrentFile() throws IOException {
+        final File file = versionFile("major=1\nminor=2\npatch=3\nartifact-type=LOCAL\n");
+        final VersionFileService service = newService();
+        service.getSnapshot(file);
+        service.setProperty(file, "artifact-type", "SNAPSHOT");
+        // Simulate a task changing the file after the snapshot was taken
+        Files.write(file.toPath(), "major=1\nminor=2\npatch=4\nartifact-type=LOCAL\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        service.close();
+
+        final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        assertTrue(content.contains("patch=4"));
+        assertTrue(content.contains("artifact-type=SNAPSHOT"));
+    }
+
+    @Test
+    void testCloseWithoutChangesDoesNotWrite() throws IOException {
+        final File file = versionFile("major=1\nminor=2\npatch=3\n");
+        final long lastModified = file.lastModified() - 10_000;
+        file.setLastModified(lastModified);
+        final VersionFileService service = newService();
+        service.getSnapshot(file);
+
+        service.close();
+
+        assertEquals(lastModified, file.lastModified());
+    }
+
+    @Test
+    void testVersionChangesAreWrittenOnceOnClose() throws IOException {
+        final File file = versionFile("# version\nmajor=1\nminor=2\npatch=3\nartifact-type=LOCAL\n");
+        final long lastModified = file.lastModified() - 10_000;
+        file.setLastModified(lastModified);
+        final VersionFileService service = newService();
+        final boolean[] persisted = new boolean[1];
+
+        service.updateVersion(file, version -> version.withMinor(version.getMinor() + 1), 1_000);
+        final Properties pending = service.updateVersion(file, version -> version.withPatch(version.getPatch() + 1), 1_000);
+        service.whenVersionPersisted(file, () -> persisted[0] = true);
+
+        assertEquals("3", pending.getProperty("minor"));
+        assertEquals("4", service.getPendingProperties(file).getProperty("patch"));
+        assertEquals(lastModified, file.lastModified());
+        assertFalse(persisted[0]);
+
+        service.close();
+
+        assertEquals("# version\nmajor=1\nminor=3\npatch=4\nartifact-type=LOCAL\n", read(file));
+        assertTrue(persisted[0]);
+    }
+
+    @Test
+    void testVersionChangesAreAppliedOnTopOfAnotherBuild() throws IOException {
+        final File file = versionFile("major=1\nminor=2\npatch=3\n");
+        final VersionFileService service = newService();
+        service.updateVersion(file, version -> version.withPatch(version.getPatch() + 1), 1_000);
+        service.setProperty(file, "artifact-type", "SNAPSHOT");
+        // Simulate another build bumping the version in the meantime
+        Files.write(file.toPath(), "major=1\nminor=2\npatch=7\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        service.close();
+
+        assertEquals("major=1\nminor=2\npatch=8\nartifact-type=SNAPSHOT\n", read(file));
+    }
+
+    @Test
+    void testVersionChangesAreDiscardedWhenATaskFails() throws IOException {
+        final File file = versionFile("major=1\nminor=2\npatch=3\n");
+        final VersionFileService service = newService();
+        final boolean[] persisted = new boolean[1];
+        service.updateVersion(file, version -> version.withMajor(version.getMajor() + 1), 1_000);
+        service.whenVersionPersisted(file, () -> persisted[0] = true);
+
+        service.onFinish(failedTask());
+        service.close();
+
+        assertEquals("major=1\nminor=2\npatch=3\n", read(file));
+        assertFalse(persisted[0]);
+    }
+
+    @Test
+    void testVersionPropertiesAreWrittenAndDiscardedWithTheVersion() throws IOException {
+        final File file = versionFile("major=1\nminor=2\npatch=3\n");
+        final VersionFileService service = newService();
+        service.updateVersion(file, version -> version.withPatch(version.getPatch() + 1), 1_000);
+        service.setVersionProperty(file, "source-digest.app", "1.2.4 abc", 1_000);
+
+        assertEquals("1.2.4 abc", service.getPendingProperties(file).getProperty("source-digest.app"));
+
+        service.close();
+
+        assertEquals("major=1\nminor=2\npatch=4\nsource-digest.app=1.2.4 abc\n", read(file));
+
+        final VersionFileService failed = newService();
+        failed.updateVersion(file, version -> version.withPatch(version.getPatch() + 1), 1_000);
+        failed.setVersionProperty(file, "source-digest.app", "1.2.5 def", 1_000);
+        failed.onFinish(failedTask());
+        failed.close();
+
+        assertEquals("major=1\nminor=2\npatch=4\nsource-digest.app=1.2.4 abc\n", read(file));
+    }
+
+    @Test
+    void testVersionChangesOfEveryFileAreDiscardedWhenATaskFails() throws IOException {
+        // e.g. bumpVersions changing many modules before a later task fails
+        final File first = versionFile("a.properties", "major=1\nminor=2\npatch=3\n");
+        final File second = versionFile("b.properties", "major=4\nminor=5\npatch=6\n");
+        final VersionFileService service = newService();
+        service.updateVersion(first, version -> version.withMinor(version.getMinor() + 1), 1_000);
+        service.updateVersion(second, version -> version.withMinor(version.getMinor() + 1), 1_000);
+
+        service.onFinish(failedTask());
+        service.close();
+
+        assertEquals("major=1\nminor=2\npatch=3\n", read(first));
+        assertEquals("major=4\nminor=5\npatch=6\n", read(second));
+    }
+
+    @Test
+    void testBuildNumberIsAllocatedOncePerCounter() {
+        final VersionFileService service = newService();
+        final int[] next = new int[1];
+        final BuildNumberProvider counter = () -> ++next[0];
+
+        assertEquals(1, (int) service.allocateBuildNumber("local-counter|a", () -> counter));
+        assertEquals(1, (int) service.allocateBuildNumber("local-counter|a", () -> counter));
+        assertEquals(2, (int) service.allocateBuildNumber("local-counter|b", () -> counter));
+        assertEquals(2, next[0]);
+    }
+
+    @Test
+    void testFailedBuildNumberAllocationIsNotRetried() {
+        final VersionFileService service = newService();
+        final int[] attempts = new int[1];
+        final BuildNumberProvider unreachable = () -> {
+            attempts[0]++;
+            throw new IOException("Connection refused");
+        };
+
+        assertNull(service.allocateBuildNumber("server|a", () -> unreachable));
+        assertNull(service.allocateBuildNumber("server|a", () -> unreachable));
+        assertEquals(1, attempts[0]);
+    }
+
+    private static FinishEvent failedTask() {
+        final FailureResult result = new FailureResult() {
+            @Override
+            public List<? extends Failure> getFailures() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public long getStartTime() {
+                return 0;
+            }
+
+            @Override
+            public long getEndTime() {
+                return 0;
+            }
+        };
+        return new FinishEvent() {
+            @Override
+            public OperationResult getResult() {
+                return result;
+            }
+
+            @Override
+            public long getEventTime() {
+                return 0;
+            }
+
+            @Override
+            public String getDisplayName() {
+                return "Task :incrementMajorVersion FAILED";
+            }
+
+            @Override
+            public OperationDescriptor getDescriptor() {
+                return null;
+            }
+        };
+    }
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+    }
+
+    private File versionFile(final String content) throws IOException {
+        return versionFile("gradle.properties", content);
+    }
+
+    private File versionFile(final String name, final String content) throws IOException {
+        final File file = new File(tempDir, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    private static VersionFileService newService() {
+        return new VersionFileService() {
+            @Override
+            public Parameters getParameters() {
+                return null;
+            }
+        };
+    }
+}
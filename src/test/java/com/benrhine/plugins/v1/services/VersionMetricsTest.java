@@ -0,0 +1,94 @@
+package com.benrhine.plugins.v1.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.benrhine.plugins.v1.util.VersionFileLock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionMetricsTest: Verify phase timings are recorded per project and task, summed and reported.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionMetricsTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testPhasesAreRecordedAndSummed() {
+        final VersionMetrics metrics = new VersionMetrics();
+        assertTrue(metrics.isEmpty());
+
+        try (VersionMetrics.Timer timer = metrics.forProject(":a").start(VersionMetrics.Phase.GENERATE_VERSION)) {
+            metrics.forProject(":a").addBytesRead(10);
+        }
+        try (VersionMetrics.Timer timer = metrics.forProject(":b").start(VersionMetrics.Phase.GENERATE_VERSION)) {
+            metrics.forTask(":b:incrementPatchVersion").addBytesWritten(20);
+        }
+        metrics.forBuild().start(VersionMetrics.Phase.WRITE_LOCAL_PROPERTIES).close();
+
+        final VersionMetrics.Recorder total = metrics.total();
+        assertFalse(metrics.isEmpty());
+        assertEquals(2, total.getCount(VersionMetrics.Phase.GENERATE_VERSION));
+        assertEquals(1, total.getCount(VersionMetrics.Phase.WRITE_LOCAL_PROPERTIES));
+        assertEquals(0, total.getCount(VersionMetrics.Phase.GET_LOCAL_PROPERTIES));
+        assertEquals(10, total.getBytesRead());
+        assertEquals(20, total.getBytesWritten());
+    }
+
+    @Test
+    void testJsonReport() {
+        final VersionMetrics metrics = new VersionMetrics();
+        metrics.forProject(":\"quoted\"").start(VersionMetrics.Phase.GET_LOCAL_PROPERTIES).close();
+        metrics.forTask(":printVersion").addBytesRead(42);
+
+        final String json = metrics.toJson();
+
+        assertTrue(json.contains("\":\\\"quoted\\\"\": {"));
+        assertTrue(json.contains("\"getLocalProperties\": {\"count\": 1"));
+        assertTrue(json.contains("\"bytesRead\": 42"));
+        assertTrue(json.startsWith("{") && json.trim().endsWith("}"));
+    }
+
+    @Test
+    void testSummary() {
+        final VersionMetrics metrics = new VersionMetrics();
+        metrics.forProject(":").addBytesRead(100);
+
+        final String summary = metrics.toSummary();
+
+        assertTrue(summary.startsWith("Versioning: "));
+        assertTrue(summary.contains("1 project and 0 tasks"));
+        assertTrue(summary.contains("100 bytes read"));
+    }
+
+    @Test
+    void testLockWaitsAreReported() throws Exception {
+        final VersionMetrics metrics = new VersionMetrics();
+        final File file = new File(tempDir, "gradle.properties");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (VersionFileLock lock = metrics.forBuild().acquireLock(file, 1_000)) {
+            executor.submit(() -> assertThrows(VersionFileLock.LockTimeoutException.class,
+                    () -> metrics.forTask(":incrementPatchVersion").acquireLock(file, 50))).get();
+            assertFalse(lock.isContended());
+        } finally {
+            executor.shutdown();
+        }
+        metrics.forTask(":incrementPatchVersion").acquireLock(file, 1_000).close();
+
+        final VersionMetrics.Recorder total = metrics.total();
+        assertEquals(2, total.getLocksAcquired());
+        assertEquals(0, total.getLocksContended());
+        assertEquals(1, total.getLockTimeouts());
+        assertTrue(total.getLockWaitNanos() >= 50_000_000L);
+        assertTrue(metrics.toJson().contains("\"lock\": {\"acquired\": 1, \"contended\": 0, \"timeouts\": 1"));
+        assertTrue(metrics.toSummary().contains("waiting for 0 of 3 version file locks"));
+    }
+}
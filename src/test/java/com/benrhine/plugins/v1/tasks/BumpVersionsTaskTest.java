@@ -0,0 +1,70 @@
+package com.benrhine.plugins.v1.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * BumpVersionsTaskTest: Verify the modules of a multi-project build are bumped, also when the configuration cache entry
+ * is reused.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class BumpVersionsTaskTest {
+    private static final String VERSION = "major=1\nminor=2\npatch=3\nartifact-type=LOCAL\n";
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testModulesAreBumpedWhenTheConfigurationCacheIsReused() throws IOException {
+        write("settings.gradle", "rootProject.name = 'bump'\ninclude 'app', 'lib'\n");
+        write("build.gradle", "plugins { id 'com.benrhine.semantic-versioning-with-build-number' }\n" +
+                "subprojects {\n" +
+                "    apply plugin: 'com.benrhine.semantic-versioning-with-build-number'\n" +
+                "    versionConfig { customVersionPropertiesPath = \"$projectDir/version.properties\" }\n" +
+                "}\n");
+        write("gradle.properties", VERSION);
+        write("app/version.properties", VERSION);
+        write("lib/version.properties", VERSION);
+
+        final BuildResult first = bumpVersions();
+        assertTrue(first.getOutput().contains(":app 1.2.3-LOCAL -> 1.2.4-LOCAL"));
+        assertEquals(VERSION.replace("patch=3", "patch=4"), read("app/version.properties"));
+
+        // Restore the version files so the cache entry stored by the first run is reused
+        write("app/version.properties", VERSION);
+        write("lib/version.properties", VERSION);
+
+        final BuildResult second = bumpVersions();
+        assertTrue(second.getOutput().contains("Reusing configuration cache"));
+        assertTrue(second.getOutput().contains(":lib 1.2.3-LOCAL -> 1.2.4-LOCAL"));
+        assertEquals(VERSION.replace("patch=3", "patch=4"), read("app/version.properties"));
+        assertEquals(VERSION.replace("patch=3", "patch=4"), read("lib/version.properties"));
+        assertEquals(VERSION, read("gradle.properties"));
+    }
+
+    private BuildResult bumpVersions() {
+        return GradleRunner.create()
+                .withProjectDir(tempDir)
+                .withPluginClasspath()
+                .withArguments("bumpVersions", "--modules=:app,:lib", "--configuration-cache")
+                .build();
+    }
+
+    private void write(final String path, final String content) throws IOException {
+        final File file = new File(tempDir, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private String read(final String path) throws IOException {
+        return new String(Files.readAllBytes(new File(tempDir, path).toPath()), StandardCharsets.ISO_8859_1);
+    }
+}
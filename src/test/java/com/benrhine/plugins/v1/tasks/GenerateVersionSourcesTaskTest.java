@@ -0,0 +1,62 @@
+package com.benrhine.plugins.v1.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**  --------------------------------------------------------------------------------------------------------------------
+ * GenerateVersionSourcesTaskTest: Verify the generated version class compiles and holds the version.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class GenerateVersionSourcesTaskTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testRenderWithoutBuildNumberOrArtifactType() {
+        final String source = GenerateVersionSourcesTask.render(SemanticVersion.parse("1.2.3"), "", "BuildVersion");
+
+        assertTrue(source.startsWith("/**"));
+        assertTrue(source.contains("public static final String VERSION = \"1.2.3\";"));
+        assertTrue(source.contains("public static final int BUILD_NUMBER = -1;"));
+        assertTrue(source.contains("public static final String ARTIFACT_TYPE = \"\";"));
+    }
+
+    @Test
+    void testGeneratedClassCompiles() throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "No Java compiler available");
+
+        final File source = new File(tempDir, "com/example/BuildVersion.java");
+        source.getParentFile().mkdirs();
+        write(source, GenerateVersionSourcesTask.render(SemanticVersion.parse("1.2.3.45-RELEASE"), "com.example", "BuildVersion"));
+        assertEquals(0, compiler.run(null, null, null, "-d", tempDir.getPath(), source.getPath()));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{tempDir.toURI().toURL()}, null)) {
+            final Class<?> type = loader.loadClass("com.example.BuildVersion");
+            assertEquals("1.2.3.45-RELEASE", type.getField("VERSION").get(null));
+            assertEquals(1, type.getField("MAJOR").get(null));
+            assertEquals(2, type.getField("MINOR").get(null));
+            assertEquals(3, type.getField("PATCH").get(null));
+            assertEquals(45, type.getField("BUILD_NUMBER").get(null));
+            assertEquals("45", type.getField("BUILD").get(null));
+            assertEquals("RELEASE", type.getField("ARTIFACT_TYPE").get(null));
+        }
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,107 @@
+package com.benrhine.plugins.v1.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * AtomicFilesTest: Verify the target is either fully replaced or left untouched and no temporary files are left behind.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class AtomicFilesTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testWriteReplacesTarget() throws IOException {
+        final Path target = target("major=1\n");
+
+        AtomicFiles.write(target, "major=2\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertArrayEquals("major=2\n".getBytes(StandardCharsets.ISO_8859_1), Files.readAllBytes(target));
+        assertEquals(1, tempDir.list().length);
+    }
+
+    @Test
+    void testDiscardedContentLeavesTargetUntouched() throws IOException {
+        final Path target = target("major=1\n");
+
+        final boolean written = AtomicFiles.write(target, output -> {
+            output.write("major=2\n".getBytes(StandardCharsets.ISO_8859_1));
+            return false;
+        });
+
+        assertFalse(written);
+        assertArrayEquals("major=1\n".getBytes(StandardCharsets.ISO_8859_1), Files.readAllBytes(target));
+        assertEquals(1, tempDir.list().length);
+    }
+
+    @Test
+    void testFailedWriteLeavesTargetUntouched() throws IOException {
+        final Path target = target("major=1\n");
+
+        assertThrows(IOException.class, () -> AtomicFiles.write(target, output -> {
+            output.write("maj".getBytes(StandardCharsets.ISO_8859_1));
+            throw new IOException("interrupted");
+        }));
+
+        assertArrayEquals("major=1\n".getBytes(StandardCharsets.ISO_8859_1), Files.readAllBytes(target));
+        assertEquals(1, tempDir.list().length);
+    }
+
+    @Test
+    void testWriteCreatesMissingTarget() throws IOException {
+        final Path target = new File(tempDir, "version.properties").toPath();
+
+        assertTrue(AtomicFiles.write(target, output -> true));
+        assertTrue(Files.isRegularFile(target));
+    }
+
+    @Test
+    void testSameContentIsNotWritten() throws IOException {
+        final Path target = target("major=1\n");
+        final long lastModified = System.currentTimeMillis() - 60_000;
+        target.toFile().setLastModified(lastModified);
+        tempDir.setLastModified(lastModified);
+        final Object fileKey = Files.readAttributes(target, BasicFileAttributes.class).fileKey();
+
+        assertFalse(AtomicFiles.write(target, "major=1\n".getBytes(StandardCharsets.ISO_8859_1)));
+        assertFalse(AtomicFiles.write(target, output -> {
+            output.write("major=1\n".getBytes(StandardCharsets.ISO_8859_1));
+            return true;
+        }));
+
+        assertEquals(lastModified, target.toFile().lastModified());
+        assertEquals(fileKey, Files.readAttributes(target, BasicFileAttributes.class).fileKey());
+        // Not even a temporary file was created next to the target
+        assertEquals(lastModified, tempDir.lastModified());
+    }
+
+    @Test
+    void testIsSameContent() throws IOException {
+        final Path target = target("major=1\n");
+
+        assertTrue(AtomicFiles.isSameContent(target, "major=1\n".getBytes(StandardCharsets.ISO_8859_1)));
+        assertFalse(AtomicFiles.isSameContent(target, "major=2\n".getBytes(StandardCharsets.ISO_8859_1)));
+        assertFalse(AtomicFiles.isSameContent(target, "major=10\n".getBytes(StandardCharsets.ISO_8859_1)));
+        assertFalse(AtomicFiles.isSameContent(new File(tempDir, "missing").toPath(), new byte[0]));
+        assertFalse(AtomicFiles.isSameContent(tempDir.toPath(), new byte[0]));
+    }
+
+    private Path target(final String content) throws IOException {
+        final Path target = new File(tempDir, "gradle.properties").toPath();
+        Files.write(target, content.getBytes(StandardCharsets.ISO_8859_1));
+        return target;
+    }
+}
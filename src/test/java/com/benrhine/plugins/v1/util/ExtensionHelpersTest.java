@@ -1,7 +1,138 @@
 package com.benrhine.plugins.v1.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import com.benrhine.plugins.v1.SemanticVersion;
+import com.benrhine.plugins.v1.SemanticVersioningWithBuildNumberPluginExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
 /**  --------------------------------------------------------------------------------------------------------------------
- * ExtensionHelpersTest: TODO fill me in.
+ * ExtensionHelpersTest: Verify the version generated from the version properties.
  * ------------------------------------------------------------------------------------------------------------------ */
 public final class ExtensionHelpersTest {
+
+    @TempDir
+    File tempDir;
+
+    private static Properties versionProperties() {
+        final Properties prop = new OrderedProperties();
+        prop.setProperty("major", "1");
+        prop.setProperty("minor", "2");
+        prop.setProperty("patch", "3");
+        prop.setProperty("artifact-type", "LOCAL");
+        return prop;
+    }
+
+    @Test
+    void testLocalVersionUsesStoredArtifactType() {
+        assertEquals(SemanticVersion.parse("1.2.3-LOCAL"), ExtensionHelpers.getLocalVersion(versionProperties()));
+    }
+
+    @Test
+    void testExtensionArtifactTypeWins() {
+        assertEquals("1.2.3-SNAPSHOT",
+                ExtensionHelpers.generateVersion(versionProperties(), false, "SNAPSHOT", false, false, null).toString());
+    }
+
+    @Test
+    void testReleaseWithoutReleaseTag() {
+        assertEquals("1.2.3", ExtensionHelpers.generateVersion(versionProperties(), false, "RELEASE", false, false, null).toString());
+        assertEquals("1.2.3-RELEASE", ExtensionHelpers.generateVersion(versionProperties(), false, "RELEASE", true, false, null).toString());
+    }
+
+    @Test
+    void testFallbackBuildNumberWhenEnvVarIsNotSet() {
+        final SemanticVersion localVersion = ExtensionHelpers.getLocalVersion(versionProperties());
+
+        assertEquals("1.2.3.7-SNAPSHOT", ExtensionHelpers.generateVersion(localVersion, true, "SNAPSHOT", false, false,
+                null, () -> 7).toString());
+        assertEquals("1.2.3.7", ExtensionHelpers.generateVersion(localVersion, true, "RELEASE", false, true,
+                null, () -> 7).toString());
+        assertEquals("1.2.3-SNAPSHOT", ExtensionHelpers.generateVersion(localVersion, true, "SNAPSHOT", false, false,
+                null, () -> SemanticVersion.NO_BUILD_NUMBER).toString());
+    }
+
+    @Test
+    void testSetLocalVersion() {
+        final Properties prop = versionProperties();
+
+        ExtensionHelpers.setLocalVersion(prop, SemanticVersion.of(2, 0, 0));
+
+        assertEquals("2", prop.getProperty("major"));
+        assertEquals("0", prop.getProperty("minor"));
+        assertEquals("0", prop.getProperty("patch"));
+        assertEquals("LOCAL", prop.getProperty("artifact-type"));
+    }
+
+    @Test
+    void testMissingVersionNumberFails() {
+        final Properties prop = versionProperties();
+        prop.remove("major");
+
+        assertThrows(IllegalArgumentException.class, () -> ExtensionHelpers.getLocalVersion(prop));
+    }
+
+    @Test
+    void testVersionIsReadFromTheFile() throws IOException {
+        final File file = versionFile("# version\nmajor = 1\nminor:2\npatch= 3 \nartifact-type=SNAPSHOT\nother=value\n");
+
+        final Properties prop = ExtensionHelpers.getLocalProperties(file, null);
+
+        assertEquals(SemanticVersion.parse("1.2.3-SNAPSHOT"), ExtensionHelpers.getLocalVersion(prop));
+        assertEquals("1.2.3.7-SNAPSHOT", ExtensionHelpers.generateVersion(ExtensionHelpers.getLocalVersion(prop), true,
+                null, false, false, null, () -> 7).toString());
+    }
+
+    @Test
+    void testMissingKeyInTheFileFails() throws IOException {
+        final File file = versionFile("major=1\npatch=3\n");
+
+        final IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> ExtensionHelpers.getLocalVersion(ExtensionHelpers.getLocalProperties(file, null)));
+
+        assertTrue(ex.getMessage().contains("'minor' is not set"));
+    }
+
+    @Test
+    void testMalformedValueInTheFileFails() throws IOException {
+        final File file = versionFile("major=1\nminor=2\npatch=3a\n");
+
+        final IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> ExtensionHelpers.getLocalVersion(ExtensionHelpers.getLocalProperties(file, null)));
+
+        assertTrue(ex.getMessage().contains("'patch' is not a number: 3a"));
+    }
+
+    @Test
+    void testMissingFile() throws IOException {
+        final File file = new File(tempDir, "missing.properties");
+
+        assertThrows(IOException.class, () -> ExtensionHelpers.getLocalProperties(file, null));
+        assertTrue(ExtensionHelpers.getLocalProperties(file,
+                SemanticVersioningWithBuildNumberPluginExtension.VERSION_SOURCE_GIT_TAG).isEmpty());
+    }
+
+    @Test
+    void testVersionPropertiesAreReadOnly() throws IOException {
+        final Properties prop = ExtensionHelpers.getLocalVersionProperties(versionFile("major=1\nminor=2\npatch=3\n"), null);
+        final Properties missing = ExtensionHelpers.getLocalVersionProperties(new File(tempDir, "missing.properties"),
+                SemanticVersioningWithBuildNumberPluginExtension.VERSION_SOURCE_GIT_TAG);
+
+        assertThrows(UnsupportedOperationException.class, () -> prop.setProperty("patch", "4"));
+        assertThrows(UnsupportedOperationException.class, () -> missing.setProperty("patch", "4"));
+    }
+
+    private File versionFile(final String content) throws IOException {
+        final File file = new File(tempDir, "gradle.properties");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
 }
@@ -1,7 +1,53 @@
 package com.benrhine.plugins.v1.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
 /** * --------------------------------------------------------------------------------------------------------------------
- * OrderedPropertiesTest: TODO fill me in.
+ * OrderedPropertiesTest: Verify insertion order is kept and read only copies reject modification.
  * ------------------------------------------------------------------------------------------------------------------ */
 public final class OrderedPropertiesTest {
+
+    @Test
+    void testKeepsInsertionOrder() {
+        final OrderedProperties prop = new OrderedProperties();
+        prop.setProperty("patch", "3");
+        prop.setProperty("major", "1");
+        prop.setProperty("minor", "2");
+
+        assertEquals(Arrays.asList("patch", "major", "minor"), new ArrayList<Object>(prop.keySet()));
+    }
+
+    @Test
+    void testReadOnlyCopyRejectsModification() {
+        final OrderedProperties prop = new OrderedProperties();
+        prop.setProperty("major", "1");
+        final OrderedProperties readOnly = prop.asReadOnly();
+
+        assertTrue(readOnly.isReadOnly());
+        assertFalse(prop.isReadOnly());
+        assertEquals("1", readOnly.getProperty("major"));
+        assertThrows(UnsupportedOperationException.class, () -> readOnly.setProperty("major", "2"));
+        assertThrows(UnsupportedOperationException.class, () -> readOnly.remove("major"));
+        assertThrows(UnsupportedOperationException.class, readOnly::clear);
+        assertThrows(UnsupportedOperationException.class, () -> readOnly.keySet().clear());
+    }
+
+    @Test
+    void testReadOnlyCopyIsDetached() {
+        final OrderedProperties prop = new OrderedProperties();
+        prop.setProperty("major", "1");
+        final OrderedProperties readOnly = prop.asReadOnly();
+        prop.setProperty("major", "2");
+
+        final List<Object> values = new ArrayList<Object>(readOnly.values());
+        assertEquals(Arrays.asList("1"), values);
+    }
 }
@@ -0,0 +1,91 @@
+package com.benrhine.plugins.v1.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * PropertiesFileEditorTest: Verify only the requested values are rewritten and everything else is left untouched.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class PropertiesFileEditorTest {
+
+    @Test
+    void testOnlyRequestedValuesAreRewritten() throws IOException {
+        final String original = "# Version\r\nmajor = 1\r\nminor:2\r\n\r\n! other\r\nurl=https\\://example.com\r\npatch=3\r\n";
+
+        final String patched = patch(original, values("minor", "5", "patch", "3"));
+
+        assertEquals("# Version\r\nmajor = 1\r\nminor:5\r\n\r\n! other\r\nurl=https\\://example.com\r\npatch=3\r\n", patched);
+    }
+
+    @Test
+    void testUnchangedValuesReportNoChange() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final boolean changed = PropertiesFileEditor.patch(input("major=1\nminor=2\n"), output, values("major", "1"));
+
+        assertFalse(changed);
+        assertEquals("major=1\nminor=2\n", new String(output.toByteArray(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void testMissingKeysAreAppended() throws IOException {
+        assertEquals("major=1\nartifact-type=BETA\n", patch("major=1", values("artifact-type", "BETA")));
+        assertEquals("artifact-type=BETA\n", patch("", values("artifact-type", "BETA")));
+    }
+
+    @Test
+    void testContinuationLinesAreReplacedAndSkipped() throws IOException {
+        final String original = "list=a,\\\n  b\nmajor=1\\\n  2\n# comment \\\nminor=3\n";
+
+        final String patched = patch(original, values("major", "4", "minor", "5"));
+
+        assertEquals("list=a,\\\n  b\nmajor=4\n# comment \\\nminor=5\n", patched);
+        final Properties prop = new Properties();
+        prop.load(new StringReader(patched));
+        assertEquals("a,b", prop.getProperty("list"));
+    }
+
+    @Test
+    void testEveryOccurrenceOfAKeyIsRewritten() throws IOException {
+        assertEquals("patch=9\nother=1\npatch=9\n", patch("patch=1\nother=1\npatch=2\n", values("patch", "9")));
+    }
+
+    @Test
+    void testValuesAreEscaped() throws IOException {
+        final String patched = patch("artifact-type=LOCAL\n", values("artifact-type", " a=b\u00e9"));
+
+        assertTrue(patched.startsWith("artifact-type=\\ a\\=b\\u00E9"));
+        final Properties prop = new Properties();
+        prop.load(new StringReader(patched));
+        assertEquals(" a=b\u00e9", prop.getProperty("artifact-type"));
+    }
+
+    private static String patch(final String content, final Map<String, String> values) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PropertiesFileEditor.patch(input(content), output, values);
+        return new String(output.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static ByteArrayInputStream input(final String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static Map<String, String> values(final String... keyValues) {
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put(keyValues[i], keyValues[i + 1]);
+        }
+        return values;
+    }
+}
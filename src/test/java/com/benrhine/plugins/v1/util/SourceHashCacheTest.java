@@ -0,0 +1,89 @@
+package com.benrhine.plugins.v1.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * SourceHashCacheTest: Verify the digest follows the content and unchanged files are not hashed again.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class SourceHashCacheTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testUnchangedFilesAreNotHashedAgain() throws IOException {
+        final File cacheFile = new File(tempDir, "state/module.hashes");
+        final List<File> roots = Collections.singletonList(new File(tempDir, "src"));
+
+        for (int i = 0; i < 100; i++) {
+            write("src/pkg" + (i % 7) + "/File" + i + ".java", "class File" + i + " {}");
+        }
+        final SourceHashCache first = SourceHashCache.load(cacheFile);
+        final String digest = first.digest(roots);
+        first.save();
+        assertEquals(100, first.getHashedFiles());
+
+        final SourceHashCache second = SourceHashCache.load(cacheFile);
+        assertEquals(digest, second.digest(roots));
+        assertEquals(0, second.getHashedFiles());
+
+        write("src/pkg3/File3.java", "class File3 { int changed; }");
+        assertNotEquals(digest, second.digest(roots));
+        assertEquals(1, second.getHashedFiles());
+    }
+
+    @Test
+    void testDigestFollowsContentAndPaths() throws IOException {
+        final List<File> roots = Arrays.asList(new File(tempDir, "src/main"), new File(tempDir, "missing"));
+        write("src/main/a.txt", "a");
+        write("src/main/b.txt", "b");
+        final SourceHashCache cache = SourceHashCache.load(new File(tempDir, "module.hashes"));
+        final String digest = cache.digest(roots);
+
+        assertEquals(digest, cache.digest(roots));
+
+        Files.move(new File(tempDir, "src/main/b.txt").toPath(), new File(tempDir, "src/main/c.txt").toPath());
+        final String renamed = cache.digest(roots);
+        assertNotEquals(digest, renamed);
+
+        write("src/main/d.txt", "");
+        assertNotEquals(renamed, cache.digest(roots));
+
+        Files.delete(new File(tempDir, "src/main/d.txt").toPath());
+        assertEquals(renamed, cache.digest(roots));
+    }
+
+    @Test
+    void testUnreadableCacheStartsEmpty() throws IOException {
+        final File cacheFile = new File(tempDir, "module.hashes");
+        Files.write(cacheFile.toPath(), "garbage".getBytes(StandardCharsets.US_ASCII));
+        write("src/a.txt", "a");
+
+        final SourceHashCache cache = SourceHashCache.load(cacheFile);
+        cache.digest(Collections.singletonList(new File(tempDir, "src")));
+
+        assertEquals(1, cache.getHashedFiles());
+    }
+
+    /**
+     * write: Write a file dated in the past so it is not considered racily modified.
+     */
+    private void write(final String path, final String content) throws IOException {
+        final File file = new File(tempDir, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis() - 60_000 + content.length()));
+    }
+}
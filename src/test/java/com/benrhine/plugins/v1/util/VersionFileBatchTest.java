@@ -0,0 +1,91 @@
+package com.benrhine.plugins.v1.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import com.benrhine.plugins.v1.SemanticVersion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionFileBatchTest: Verify every version file is updated or none is.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionFileBatchTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testUpdatesEveryFile() throws IOException {
+        final List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            files.add(versionFile("module" + i, "# module " + i + "\nmajor=1\nminor=" + i + "\npatch=3\nartifact-type=SNAPSHOT\n"));
+        }
+        files.add(files.get(0));
+
+        final Map<File, VersionFileBatch.Result> results = VersionFileBatch.update(files,
+                current -> current.withPatch(current.getPatch() + 1), 4, 1000);
+
+        assertEquals(20, results.size());
+        assertEquals(SemanticVersion.parse("1.7.3-SNAPSHOT"), results.get(files.get(7)).getOldVersion());
+        assertEquals(SemanticVersion.parse("1.7.4-SNAPSHOT"), results.get(files.get(7)).getNewVersion());
+        assertEquals("# module 7\nmajor=1\nminor=7\npatch=4\nartifact-type=SNAPSHOT\n", read(files.get(7)));
+        assertEquals("# module 0\nmajor=1\nminor=0\npatch=4\nartifact-type=SNAPSHOT\n", read(files.get(0)));
+        assertEquals(0, countTempFiles());
+    }
+
+    @Test
+    void testMissingFileChangesNothing() throws IOException {
+        final File first = versionFile("a", "major=1\nminor=2\npatch=3\n");
+        final File last = versionFile("c", "major=1\nminor=2\npatch=3\n");
+        final File missing = new File(versionFile("b", "").getParentFile(), "missing.properties");
+
+        assertThrows(IOException.class, () -> VersionFileBatch.update(Arrays.asList(first, missing, last),
+                current -> current.withMinor(current.getMinor() + 1), 2, 1000));
+
+        assertEquals("major=1\nminor=2\npatch=3\n", read(first));
+        assertEquals("major=1\nminor=2\npatch=3\n", read(last));
+        assertEquals(0, countTempFiles());
+    }
+
+    @Test
+    void testFailedUpdateChangesNothing() throws IOException {
+        final File first = versionFile("a", "major=1\nminor=2\npatch=3\n");
+        final File second = versionFile("b", "major=9\nminor=2\npatch=3\n");
+
+        assertThrows(IOException.class, () -> VersionFileBatch.update(Arrays.asList(first, second), current -> {
+            if (current.getMajor() == 9) {
+                throw new IllegalStateException("major version 10 is not allowed");
+            }
+            return current.withMajor(current.getMajor() + 1);
+        }, 2, 1000));
+
+        assertEquals("major=1\nminor=2\npatch=3\n", read(first));
+        assertEquals("major=9\nminor=2\npatch=3\n", read(second));
+        assertEquals(0, countTempFiles());
+    }
+
+    private File versionFile(final String module, final String content) throws IOException {
+        final File file = new File(tempDir, module + "/gradle.properties");
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+    }
+
+    private long countTempFiles() throws IOException {
+        return Files.walk(tempDir.toPath()).filter(path -> path.toString().endsWith(".tmp")).count();
+    }
+}
@@ -0,0 +1,82 @@
+package com.benrhine.plugins.v1.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionFileLockTest: Verify concurrent updates are serialized and waiting for the lock is bounded.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionFileLockTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testConcurrentIncrementsAreNotLost() throws Exception {
+        final File file = new File(tempDir, "gradle.properties");
+        Files.write(file.toPath(), "patch=0\n".getBytes(StandardCharsets.ISO_8859_1));
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            futures.add(executor.submit(() -> {
+                try (VersionFileLock lock = VersionFileLock.acquire(file, 10_000)) {
+                    final Properties prop = ExtensionHelpers.getLocalProperties(file.getPath());
+                    final int patch = Integer.parseInt(prop.getProperty("patch"));
+                    PropertiesFileEditor.patch(file, Collections.singletonMap("patch", String.valueOf(patch + 1)));
+                }
+                return null;
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals("40", ExtensionHelpers.getLocalProperties(file.getPath()).getProperty("patch"));
+    }
+
+    @Test
+    void testAcquireTimesOut() throws Exception {
+        final File file = new File(tempDir, "gradle.properties");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (VersionFileLock lock = VersionFileLock.acquire(file, 1_000)) {
+            final Future<?> waiting = executor.submit(() -> {
+                assertThrows(VersionFileLock.LockTimeoutException.class, () -> VersionFileLock.acquire(file, 50));
+                return null;
+            });
+            waiting.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testLockIsReleasedOnClose() throws IOException {
+        final File file = new File(tempDir, "gradle.properties");
+
+        VersionFileLock.acquire(file, 1_000).close();
+
+        try (VersionFileLock lock = VersionFileLock.acquire(file, 50)) {
+            assertTrue(lock.getWaitNanos() >= 0);
+            assertFalse(lock.isContended());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.benrhine.plugins.v1.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** --------------------------------------------------------------------------------------------------------------------
+ * VersionPropertiesScannerTest: Verify the version keys are read exactly like {@link Properties#load} reads them.
+ * ------------------------------------------------------------------------------------------------------------------ */
+public final class VersionPropertiesScannerTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testSeparatorsAndWhitespace() throws IOException {
+        assertSameVersionKeys("major=1\nminor = 2\n  patch:3\nartifact-type\tSNAPSHOT \nremote-build  :  =true\n");
+        assertSameVersionKeys("major\nminor=\npatch =\t\f4");
+    }
+
+    @Test
+    void testCommentsAndLineEndings() throws IOException {
+        assertSameVersionKeys("# major=9\r\n! minor=9\r\nmajor=1\r\n\r\n  \t\r\nminor=2\rpatch=3\r\n# a comment \\\r\npatch=4\n");
+    }
+
+    @Test
+    void testOtherKeysAreSkipped() throws IOException {
+        assertSameVersionKeys("majority=9\nmajo=9\nmajor.x=9\nmajor=1\nminor-version=9\nartifact-types=9\n");
+    }
+
+    @Test
+    void testContinuationLinesOfOtherKeys() throws IOException {
+        assertSameVersionKeys("jvmargs=-Xmx1g \\\n  major=9\nmajor=1\nlist=a\\\r\n   minor=9\r\nminor=2\npath=c:\\\\\npatch=3\n");
+        assertSameVersionKeys("other=\\\n\nmajor=1\nkey\\\nmajor=9\nodd=\\\\\\\nminor=9\nminor=2\nend=\\");
+    }
+
+    @Test
+    void testLastValueWins() throws IOException {
+        assertSameVersionKeys("major=1\nminor=2\nmajor=3\n");
+    }
+
+    @Test
+    void testEscapedVersionKeysAreLoadedInFull() throws IOException {
+        final File file = file("major=1\nartifact-type=SNAP\\u0053HOT\nmin\\or=2\npatch=3\\\n  4\nother=x\n");
+
+        final Properties prop = VersionPropertiesScanner.scan(file);
+
+        assertEquals(load(file), prop);
+        assertNull(prop.getProperty("other"));
+        assertThrows(IOException.class, () -> VersionPropertiesScanner.scan(new ByteArrayInputStream("major=\\u0031".getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    @Test
+    void testLargeFileSpanningTheBuffer() throws IOException {
+        final StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < 2_000; i++) {
+            content.append("shared.property.").append(i).append(" = value ").append(i).append(" \\\n    major=").append(i).append('\n');
+        }
+        content.append("major=1\nminor=2\npatch=3\nartifact-type=RELEASE\nremote-build=false\n");
+
+        assertSameVersionKeys(content.toString());
+    }
+
+    @Test
+    void testResultIsReadOnly() throws IOException {
+        final Properties prop = VersionPropertiesScanner.scan(file("major=1\n"));
+
+        assertThrows(UnsupportedOperationException.class, () -> prop.setProperty("major", "2"));
+    }
+
+    private void assertSameVersionKeys(final String content) throws IOException {
+        final File file = file(content);
+
+        assertEquals(load(file), VersionPropertiesScanner.scan(file));
+    }
+
+    private static Properties load(final File file) throws IOException {
+        final Properties all = ExtensionHelpers.getLocalProperties(file.getPath());
+        final Properties prop = new Properties();
+
+        for (final String key : VersionPropertiesScanner.KEYS) {
+            if (all.getProperty(key) != null) {
+                prop.setProperty(key, all.getProperty(key));
+            }
+        }
+        return prop;
+    }
+
+    private File file(final String content) throws IOException {
+        final File file = new File(tempDir, "gradle.properties");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+}